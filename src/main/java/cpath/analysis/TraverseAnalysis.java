@@ -15,10 +15,23 @@ import cpath.service.jaxb.TraverseResponse;
 public final class TraverseAnalysis implements Analysis<Model> {
 	
 	private final TraverseResponse callback;
+	private final PathAccessor accessor;
 	private final String[] uris;
 	
 	public TraverseAnalysis(TraverseResponse callback, String... uris) {
+		this(callback, null, uris);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param callback the response with the property path to fill in with the values
+	 * @param accessor the parsed property path to reuse (null - parse the callback's path)
+	 * @param uris elements to start from
+	 */
+	public TraverseAnalysis(TraverseResponse callback, PathAccessor accessor, String... uris) {
 		this.callback = callback;
+		this.accessor = accessor;
 		this.uris = uris;
 	}
 
@@ -28,8 +41,8 @@ public final class TraverseAnalysis implements Analysis<Model> {
 		final String propertyPath = callback.getPropertyPath();
 		callback.getTraverseEntry().clear();
 		
-		PathAccessor pathAccessor = null; 
-		try {
+		PathAccessor pathAccessor = accessor;
+		if(pathAccessor == null) try {
 			pathAccessor = new PathAccessor(propertyPath, model.getLevel());
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Failed to parse " +
@@ -1,14 +1,22 @@
 package cpath.service;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+import cpath.service.api.DataWriter;
 import cpath.service.api.OutputFormat;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.biopax.paxtools.controller.EditorMap;
+import org.biopax.paxtools.controller.ObjectPropertyEditor;
+import org.biopax.paxtools.controller.PropertyEditor;
 import org.biopax.paxtools.io.gsea.GSEAConverter;
 import org.biopax.paxtools.io.jsonld.JsonldBiopaxConverter;
 import org.biopax.paxtools.io.jsonld.JsonldConverter;
@@ -39,7 +47,11 @@ import static cpath.service.api.Status.*;
 public class BiopaxConverter {
   private static final Logger log = LoggerFactory.getLogger(BiopaxConverter.class);
 
+  // smaller result files are not worth a gzipped copy
+  private static final long MIN_GZIP_SIZE = 2048;
+
   private final Blacklist blacklist;
+  private OutputCache cache;
 
   /**
    * Constructor.
@@ -51,6 +63,15 @@ public class BiopaxConverter {
     this.blacklist = (blacklist != null) ? blacklist : new Blacklist();
   }
 
+  /**
+   * Sets the on-disk cache of the converted results (null - no caching).
+   *
+   * @param cache output cache
+   */
+  public void setCache(OutputCache cache) {
+    this.cache = cache;
+  }
+
 
   /**
    * Converts the BioPAX data into the other format.
@@ -97,9 +118,10 @@ public class BiopaxConverter {
   }
 
   private void convertToJsonLd(Model m, OutputStream os) throws IOException {
-    DataResponse dr = (DataResponse) convert(m, OutputFormat.BIOPAX, null);
     JsonldConverter converter = new JsonldBiopaxConverter();
-    Path data = (Path) dr.getData();
+    Path data = Files.createTempFile("cpath2", OutputFormat.BIOPAX.getExt());
+    data.toFile().deleteOnExit();
+    convert(m, OutputFormat.BIOPAX, null, Files.newOutputStream(data));
     InputStream is = Files.newInputStream(data, StandardOpenOption.DELETE_ON_CLOSE);
     converter.convertToJsonld(is, os);
     is.close();
@@ -112,6 +134,8 @@ public class BiopaxConverter {
    * @param m       a sub-model (not too large), e.g., a get/graph query result
    * @param format  output format
    * @param options format options
+   * @return data response, where the data is a temporary or cached file {@link Path}
+   *         (a cached one is in use until {@link DataResponse#release()})
    */
   public ServiceResponse convert(Model m,
                                  OutputFormat format,
@@ -123,24 +147,30 @@ public class BiopaxConverter {
       return r;
     }
 
+    // serve the same result converted earlier, if it's cached
+    final String key = (cache != null) ? cache.key(m, format, options) : null;
+    if (key != null) {
+      Path cached = cache.get(key);
+      if (cached != null)
+        return cachedResponse(m, format, cached, key);
+    }
+
     // otherwise, convert, return a new DataResponse
     // (can contain up to ~ 1Gb unicode string data)
     // a TMP File is used instead of a byte array; set the file path as dataResponse.data value
     Path tmpPath = null;
     try {
-      tmpPath = Files.createTempFile("cpath2", format.getExt());
+      tmpPath = (cache != null) ? cache.createTempFile(format) : Files.createTempFile("cpath2", format.getExt());
       tmpPath.toFile().deleteOnExit();//to make sure...
-      convert(m, format, options, Files.newOutputStream(tmpPath)); //OS gets closed there for sure.
-      DataResponse dataResponse = new DataResponse();
-      dataResponse.setFormat(format);
-      dataResponse.setData(tmpPath);
-      // extract and save data provider names
-      dataResponse.setProviders(providers(m));
-      return dataResponse;
+      convert(m, format, options, output(tmpPath)); //OS gets closed there for sure.
+      dropSmallGzip(tmpPath);
+      Path cached = (key != null) ? cache.put(key, tmpPath) : null;
+      return (cached != null) ? cachedResponse(m, format, cached, key) : dataResponse(m, format, tmpPath, false);
     } catch (Exception e) {
       if(tmpPath != null) {
         try {
           Files.delete(tmpPath);
+          Files.deleteIfExists(CPathUtils.gzipped(tmpPath));
         } catch (Exception ex) {
           log.error(e.toString());
         }
@@ -149,6 +179,291 @@ public class BiopaxConverter {
     }
   }
 
+  /**
+   * Prepares to write a BioPAX sub-model (e.g., a get/graph query result) as RDF/XML
+   * directly to the output stream, without cloning the elements or a temporary file.
+   * The sub-model can share its elements with the larger (main) model: a property value
+   * that is not in the sub-model is not written, just like it would be dropped in a detached copy.
+   * If the cache is set, the RDF/XML is also saved there (or the cached file is returned).
+   *
+   * @param m       a sub-model (not too large), e.g., a get/graph query result
+   * @param options format options (for the cache key)
+   * @return data response, where the data is a {@link DataWriter} or a cached file {@link Path}
+   *         (in use until {@link DataResponse#release()})
+   */
+  public ServiceResponse stream(final Model m, Map<String, String> options) {
+    if (m == null || m.getObjects().isEmpty()) {
+      DataResponse r = new DataResponse();
+      r.setFormat(OutputFormat.BIOPAX);
+      return r;
+    }
+
+    final String key = (cache != null) ? cache.key(m, OutputFormat.BIOPAX, options) : null;
+    if (key != null) {
+      Path cached = cache.get(key);
+      if (cached != null)
+        return cachedResponse(m, OutputFormat.BIOPAX, cached, key);
+    }
+
+    DataWriter writer = os -> {
+      if (key == null) {
+        writeSubModel(m, new CloseShieldOutputStream(os));
+        return;
+      }
+      // write to the cache file at the same time
+      Path tmpPath = cache.createTempFile(OutputFormat.BIOPAX);
+      tmpPath.toFile().deleteOnExit();
+      try (OutputStream fos = output(tmpPath)) {
+        writeSubModel(m, new TeeOutputStream(new CloseShieldOutputStream(os), fos));
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(tmpPath);
+        Files.deleteIfExists(CPathUtils.gzipped(tmpPath));
+        throw e;
+      }
+      dropSmallGzip(tmpPath);
+      if (cache.put(key, tmpPath) == null) { //too large
+        Files.deleteIfExists(tmpPath);
+        Files.deleteIfExists(CPathUtils.gzipped(tmpPath));
+      } else {
+        cache.release(key); //it's been written to the response already
+      }
+    };
+
+    return dataResponse(m, OutputFormat.BIOPAX, writer, false);
+  }
+
+  /*
+   * Opens the result file for writing; the data also gets compressed
+   * to the gzipped copy of the file at the same time (see CPathUtils.gzipped).
+   */
+  private static OutputStream output(Path file) throws IOException {
+    Path gz = CPathUtils.gzipped(file);
+    gz.toFile().deleteOnExit();
+    return new TeeOutputStream(new BufferedOutputStream(Files.newOutputStream(file)),
+      new GZIPOutputStream(Files.newOutputStream(gz), 8192));
+  }
+
+  // deletes the gzipped copy of a small file
+  private static void dropSmallGzip(Path file) throws IOException {
+    if (Files.size(file) < MIN_GZIP_SIZE)
+      Files.deleteIfExists(CPathUtils.gzipped(file));
+  }
+
+  /*
+   * Writes the sub-model as RDF/XML, skipping object property values outside the sub-model
+   * (what Cloner would do), because its elements still belong to the main model.
+   * The handler is of the model's level, so that it won't reset the editor map.
+   */
+  private static void writeSubModel(final Model m, OutputStream os) {
+    SimpleIOHandler io = new SimpleIOHandler(m.getLevel());
+    io.setEditorMap(new SubModelEditorMap(io.getEditorMap(), m));
+    io.convertToOWL(m, os);
+  }
+
+  /*
+   * The editor map that makes SimpleIOHandler skip the object property values outside the sub-model.
+   * This depends on how paxtools (5.1) SimpleIOHandler.writeObject writes an element:
+   * it calls editorMap.getEditorsOf(bpe) and then, for each editor, getValueFromBean(bpe),
+   * skipping the values for which the editor's isUnknown(value) is true.
+   */
+  private static final class SubModelEditorMap implements EditorMap {
+    private final EditorMap editorMap;
+    private final Model model;
+    private final Map<PropertyEditor, PropertyEditor> editors = new HashMap<>();
+
+    private SubModelEditorMap(EditorMap editorMap, Model model) {
+      this.editorMap = editorMap;
+      this.model = model;
+    }
+
+    @Override
+    public Set<PropertyEditor> getEditorsOf(BioPAXElement bpe) {
+      Set<PropertyEditor> result = new LinkedHashSet<>();
+      for (PropertyEditor editor : editorMap.getEditorsOf(bpe)) {
+        result.add((editor instanceof ObjectPropertyEditor)
+          ? editors.computeIfAbsent(editor, e -> new SubModelPropertyEditor<>(e, model)) : editor);
+      }
+      return result;
+    }
+
+    @Override
+    public <D extends BioPAXElement> PropertyEditor<? super D, ?> getEditorForProperty(String property,
+                                                                                      Class<D> javaClass) {
+      return editorMap.getEditorForProperty(property, javaClass);
+    }
+
+    @Override
+    public Set<PropertyEditor> getEditorsForProperty(String property) {
+      return editorMap.getEditorsForProperty(property);
+    }
+
+    @Override
+    public <D extends BioPAXElement> Set<PropertyEditor<? extends D, ?>> getSubclassEditorsForProperty(
+      String property, Class<D> domain) {
+      return editorMap.getSubclassEditorsForProperty(property, domain);
+    }
+
+    @Override
+    public Set<ObjectPropertyEditor> getInverseEditorsOf(BioPAXElement bpe) {
+      return editorMap.getInverseEditorsOf(bpe);
+    }
+
+    @Override
+    public <E extends BioPAXElement> Set<? extends Class<E>> getKnownSubClassesOf(Class<E> javaClass) {
+      return editorMap.getKnownSubClassesOf(javaClass);
+    }
+
+    @Override
+    public BioPAXLevel getLevel() {
+      return editorMap.getLevel();
+    }
+
+    @Override
+    public Set<PropertyEditor> getEditorsOf(Class<? extends BioPAXElement> domain) {
+      return editorMap.getEditorsOf(domain);
+    }
+
+    @Override
+    public Set<ObjectPropertyEditor> getInverseEditorsOf(Class<? extends BioPAXElement> domain) {
+      return editorMap.getInverseEditorsOf(domain);
+    }
+
+    @Override
+    public Iterator<PropertyEditor> iterator() {
+      return editorMap.iterator();
+    }
+  }
+
+  /*
+   * The object property editor that tells a value outside the sub-model is unknown (not to write it).
+   */
+  private static final class SubModelPropertyEditor<D extends BioPAXElement, R> implements PropertyEditor<D, R> {
+    private final PropertyEditor<D, R> editor;
+    private final Model model;
+
+    private SubModelPropertyEditor(PropertyEditor<D, R> editor, Model model) {
+      this.editor = editor;
+      this.model = model;
+    }
+
+    @Override
+    public boolean isUnknown(Object value) {
+      return (value instanceof BioPAXElement && !model.contains((BioPAXElement) value)) || editor.isUnknown(value);
+    }
+
+    @Override
+    public Set<? extends R> getValueFromBean(D bean) {
+      return editor.getValueFromBean(bean);
+    }
+
+    @Override
+    public Set<? extends R> getValueFromBeans(Collection<? extends D> beans) {
+      return editor.getValueFromBeans(beans);
+    }
+
+    @Override
+    public Class<D> getDomain() {
+      return editor.getDomain();
+    }
+
+    @Override
+    public Class<R> getRange() {
+      return editor.getRange();
+    }
+
+    @Override
+    public boolean isMultipleCardinality() {
+      return editor.isMultipleCardinality();
+    }
+
+    @Override
+    public String getProperty() {
+      return editor.getProperty();
+    }
+
+    @Override
+    public Method getAddMethod() {
+      return editor.getAddMethod();
+    }
+
+    @Override
+    public Method getGetMethod() {
+      return editor.getGetMethod();
+    }
+
+    @Override
+    public Method getRemoveMethod() {
+      return editor.getRemoveMethod();
+    }
+
+    @Override
+    public Method getSetMethod() {
+      return editor.getSetMethod();
+    }
+
+    @Override
+    public Method getPrimarySetMethod() {
+      return editor.getPrimarySetMethod();
+    }
+
+    @Override
+    public void addMaxCardinalityRestriction(Class<? extends D> domain, int max) {
+      editor.addMaxCardinalityRestriction(domain, max);
+    }
+
+    @Override
+    public Integer getMaxCardinality(Class<? extends D> restrictedDomain) {
+      return editor.getMaxCardinality(restrictedDomain);
+    }
+
+    @Override
+    public R getUnknown() {
+      return editor.getUnknown();
+    }
+
+    @Override
+    public void removeValueFromBean(R value, D bean) {
+      editor.removeValueFromBean(value, bean);
+    }
+
+    @Override
+    public void removeValueFromBean(Set<R> values, D bean) {
+      editor.removeValueFromBean(values, bean);
+    }
+
+    @Override
+    public void setValueToBean(R value, D bean) {
+      editor.setValueToBean(value, bean);
+    }
+
+    @Override
+    public void setValueToBean(Set<R> values, D bean) {
+      editor.setValueToBean(values, bean);
+    }
+
+    @Override
+    public String toString() {
+      return editor.toString();
+    }
+  }
+
+  // the cached file is pinned until the response is released
+  private DataResponse cachedResponse(Model m, OutputFormat format, Path file, String key) {
+    DataResponse dataResponse = dataResponse(m, format, file, true);
+    dataResponse.setRelease(() -> cache.release(key));
+    return dataResponse;
+  }
+
+  private DataResponse dataResponse(Model m, OutputFormat format, Object data, boolean cached) {
+    DataResponse dataResponse = new DataResponse();
+    dataResponse.setFormat(format);
+    dataResponse.setData(data);
+    dataResponse.setCached(cached);
+    // extract and save data provider names
+    dataResponse.setProviders(providers(m));
+    return dataResponse;
+  }
+
 
   /**
    * Converts a BioPAX Model to SBGN format.
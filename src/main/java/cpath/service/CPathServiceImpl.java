@@ -6,6 +6,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -56,6 +59,7 @@ import static cpath.service.api.Status.*;
 public class CPathServiceImpl implements CPathService {
   private static final Logger log = LoggerFactory.getLogger(CPathServiceImpl.class);
   private static final Class<? extends BioPAXElement>[] DEFAULT_SEED_TYPES = new Class[]{PhysicalEntity.class, Gene.class};
+  public static final long DEFAULT_GRAPH_CACHE_SIZE = 1000000;
 
   private Searcher searcher;
 
@@ -77,6 +81,28 @@ public class CPathServiceImpl implements CPathService {
   //on first access when proxy model mode is enabled (so do not use the var. directly!)
   private Model paxtoolsModel;
 
+  //graph query (normalized) -> result elements' URIs (auto-completed); max. total no. URIs
+  private volatile LruCache<List<Object>, Set<String>> graphQueryResults =
+    new LruCache<>(DEFAULT_GRAPH_CACHE_SIZE, uris -> uris.size() + 1);
+
+  //converted get/graph query results on disk (null - disabled)
+  private volatile OutputCache outputCache;
+
+  //compact adjacency indices of the main model for the graph queries (null - build on first use);
+  //the directed one is built in init(), the undirected one (about the same size) - by the first UNDIRECTED query
+  private volatile GraphIndex graphIndex;
+  private volatile GraphIndex undirectedGraphIndex;
+
+  //shared by the graph queries to map the seeds and traverse from each seed group in parallel (null - don't)
+  private volatile ExecutorService graphExecutor;
+
+  //identifiers mapped to URIs ahead of the queries run in the current thread (null - look them up)
+  private final ThreadLocal<Map<String, Set<String>>> resolvedIds = new ThreadLocal<>();
+
+  //parsed property paths (traverse) and filters (graph queries) to share among the queries
+  private final LruCache<String, PathAccessor> pathAccessors = new LruCache<>(100);
+  private final LruCache<List<Object>, Filter[]> queryFilters = new LruCache<>(100);
+
   private final Pattern isoformIdPattern = Pattern.compile(MiriamLink.getDatatype("uniprot isoform").getPattern());
   private final Pattern refseqIdPattern = Pattern.compile(MiriamLink.getDatatype("refseq").getPattern());
   private final Pattern uniprotIdPattern = Pattern.compile(MiriamLink.getDatatype("uniprot knowledgebase").getPattern());
@@ -98,11 +124,49 @@ public class CPathServiceImpl implements CPathService {
       if (paxtoolsModel != null) {
         paxtoolsModel.setXmlBase(settings.getXmlBase());
         log.info("Main BioPAX model (in-memory) is now ready for queries.");
-        searcher = new SearchEngine(paxtoolsModel, settings.indexDir());
+        searcher = new SearchEngine(paxtoolsModel, settings.indexDir(),
+          (settings.getQueryCacheSize() != null) ? settings.getQueryCacheSize() : SearchEngine.DEFAULT_QUERY_CACHE_SIZE,
+          (settings.getQueryCacheRamMb() != null) ? settings.getQueryCacheRamMb() : SearchEngine.DEFAULT_QUERY_CACHE_RAM_MB);
         ((SearchEngine) searcher).setMaxHitsPerPage(settings.getMaxHitsPerPage());
+        if(settings.getIndexThreads() != null)
+          ((SearchEngine) searcher).setIndexThreads(settings.getIndexThreads());
+        if(settings.getExcerptTimeLimit() != null)
+          ((SearchEngine) searcher).setExcerptTimeLimit(settings.getExcerptTimeLimit());
+        if(settings.getSearchCacheSize() != null)
+          ((SearchEngine) searcher).setSearchCacheSize(settings.getSearchCacheSize());
+        if(settings.getSearchTimeLimit() != null)
+          ((SearchEngine) searcher).setSearchTimeLimit(settings.getSearchTimeLimit());
+        if(settings.getSearchMaxVisits() != null)
+          ((SearchEngine) searcher).setSearchMaxVisits(settings.getSearchMaxVisits());
+        if(settings.getIndexMaxSegments() != null)
+          ((SearchEngine) searcher).setIndexMaxSegments(settings.getIndexMaxSegments());
+        if(settings.getIndexCompoundFiles() != null)
+          ((SearchEngine) searcher).setIndexCompoundFiles(settings.getIndexCompoundFiles());
+        if(settings.getSearchThreads() != null)
+          ((SearchEngine) searcher).setSearchThreads(settings.getSearchThreads());
+        if(settings.getGraphCacheSize() != null)
+          graphQueryResults = new LruCache<>(settings.getGraphCacheSize(), uris -> uris.size() + 1);
+        if(settings.getGraphThreads() != null && settings.getGraphThreads() > 1)
+          graphExecutor = Executors.newFixedThreadPool(settings.getGraphThreads(), r -> {
+            Thread t = new Thread(r, "graph");
+            t.setDaemon(true);
+            return t;
+          });
+        if(settings.getOutputCacheSize() != null && settings.getOutputCacheSize() > 0) {
+          try {
+            outputCache = new OutputCache(settings.cacheDir(), settings.getOutputCacheSize() * 1024L * 1024L,
+              settings.getName() + " " + settings.getVersion() + " "
+                + new File(settings.mainModelFile()).lastModified());
+          } catch (IOException e) {
+            log.error("init, output cache is disabled", e);
+          }
+        }
       }
     }
     loadBlacklist();
+    if(paxtoolsModel != null) {
+      graphIndex(false); //the undirected one - for the rare UNDIRECTED neighborhood queries only, when first used
+    }
   }
 
   public Settings settings() {return settings;}
@@ -116,18 +180,37 @@ public class CPathServiceImpl implements CPathService {
   }
   public void setModel(Model paxtoolsModel) {
     this.paxtoolsModel = paxtoolsModel;
+    graphQueryResults.clear();
+    graphIndex = null;
+    undirectedGraphIndex = null;
+    if(outputCache != null)
+      outputCache.clear();
   }
 
   public ServiceResponse search(String queryStr,
                                 int page, Class<? extends BioPAXElement> biopaxClass,
                                 String[] dsources, String[] organisms)
+  {
+    return search(queryStr, page, null, biopaxClass, dsources, organisms, false, false);
+  }
+
+  public ServiceResponse searchAfter(String queryStr,
+                                     String cursor, Class<? extends BioPAXElement> biopaxClass,
+                                     String[] dsources, String[] organisms)
+  {
+    return search(queryStr, 0, cursor, biopaxClass, dsources, organisms, false, false);
+  }
+
+  public ServiceResponse search(String queryStr, int page, String cursor,
+                                Class<? extends BioPAXElement> biopaxClass, String[] dsources, String[] organisms,
+                                boolean facets, boolean excerpt)
   {
     if(modelNotReady() || searcher == null)
       return new ErrorResponse(MAINTENANCE,"Waiting for the initialization to complete (try later)...");
 
     try {
-      // do search
-      SearchResponse hits = searcher.search(queryStr, page, biopaxClass, dsources, organisms);
+      // do search (next page after the cursor, if it's set)
+      SearchResponse hits = searcher.search(queryStr, page, cursor, biopaxClass, dsources, organisms, facets, excerpt);
 
       hits.setComment("Search '" + queryStr  + "' in " +
         ((biopaxClass == null) ? "all types" : biopaxClass.getSimpleName())
@@ -135,6 +218,9 @@ public class CPathServiceImpl implements CPathService {
 
       return hits;
 
+    } catch (IllegalArgumentException e) {
+      log.error("search() failed - " + e);
+      return new ErrorResponse(BAD_REQUEST, e.getMessage());
     } catch (Exception e) {
       log.error("search() failed - " + e);
       return new ErrorResponse(INTERNAL_ERROR, e);
@@ -150,7 +236,7 @@ public class CPathServiceImpl implements CPathService {
     // extract/convert a sub-model
     try {
       Set<BioPAXElement> elements = seedBiopaxElements(uris);
-      Model m = autoCompleteAndClone(elements, subPathways);
+      Model m = autoComplete(elements, subPathways, format);
       //name the sub-model - can be useful when converted to GSEA, etc...
       if(m!= null && !m.getObjects().isEmpty()) {
         if(elements.size()==1) {
@@ -176,12 +262,27 @@ public class CPathServiceImpl implements CPathService {
 
 
   private Filter[] createFilters(String[] organisms, String[] datasources) {
+    return createFilters(true, organisms, datasources);
+  }
+
+  // ubique - whether to add the blacklist (ubiquitous molecules) filter
+  // (it's not needed with the graph index, where these are excluded already);
+  // the filters do not change once created, so the same ones are reused by the queries
+  private Filter[] createFilters(boolean ubique, String[] organisms, String[] datasources) {
+    final List<Object> key = Arrays.asList((ubique) ? blacklist : null, sortedValues(organisms),
+      sortedValues(datasources));
+    Filter[] cached = queryFilters.get(key);
+    if(cached != null)
+      return cached;
+
     List<Filter> filters = new ArrayList<>();
 
-    if(blacklist != null)
-      filters.add(new UbiqueFilter(blacklist.getListed()));
-    else
-      log.warn("createFilters: blacklist is NULL, why..."); //normally, it's not null here
+    if(ubique) {
+      if (blacklist != null)
+        filters.add(new UbiqueFilter(blacklist.getListed()));
+      else
+        log.warn("createFilters: blacklist is NULL, why..."); //normally, it's not null here
+    }
 
     if(organisms != null && organisms.length > 0)
       filters.add(new OrganismFilter(organisms));
@@ -189,21 +290,43 @@ public class CPathServiceImpl implements CPathService {
     if(datasources != null && datasources.length > 0)
       filters.add(new DataSourceFilter(datasources));
 
-    return filters.toArray(new Filter[]{});
+    Filter[] created = filters.toArray(new Filter[]{});
+    queryFilters.put(key, created);
+    return created;
   }
 
 
-  // auto-complete and clone - makes a reasonable size detached (copy) sub-model
-  private Model autoCompleteAndClone(final Set<BioPAXElement> elements, final boolean includeSubPathways)
+  // auto-complete and make a reasonable size sub-model (see subModel)
+  private Model autoComplete(final Set<BioPAXElement> elements, final boolean includeSubPathways,
+                             OutputFormat format)
   {
     if(elements == null || elements.isEmpty())
       return null;
 
     Completer completer = new Completer(simpleIO.getEditorMap());
-    Cloner cloner = new Cloner(this.simpleIO.getEditorMap(), this.simpleIO.getFactory());
-
     completer.setSkipSubPathways(!includeSubPathways); //mind NOT (!) here
-    Model m = cloner.clone(completer.complete(elements));
+    return subModel(completer.complete(elements), format);
+  }
+
+  /*
+   * BioPAX (RDF/XML) output is written right from the main model's objects (see BiopaxConverter.stream);
+   * other formats need a detached copy (Pathways get removed, and the converters traverse the properties).
+   */
+  private Model subModel(final Set<BioPAXElement> elements, OutputFormat format) {
+    if(format != OutputFormat.BIOPAX)
+      return cloneModel(elements);
+
+    Model m = simpleIO.getFactory().createModel();
+    m.setXmlBase(paxtoolsModel.getXmlBase());
+    for(BioPAXElement e : elements)
+      m.add(e);
+
+    return m;
+  }
+
+  private Model cloneModel(final Set<BioPAXElement> elements) {
+    Cloner cloner = new Cloner(this.simpleIO.getEditorMap(), this.simpleIO.getFactory());
+    Model m = cloner.clone(elements);
     if(m != null) {
       m.setXmlBase(paxtoolsModel.getXmlBase());
     }
@@ -211,6 +334,105 @@ public class CPathServiceImpl implements CPathService {
     return m;
   }
 
+  /*
+   * Runs the graph query (unless its result is cached), auto-completes the result
+   * and makes the sub-model for the output format.
+   * The query key is: kind, seed (and target) URI groups, limit, direction, organisms,
+   * datasources, sub-pathways; the main model does not change while serving.
+   */
+  private Model graphQuery(List<Object> key, Supplier<Set<BioPAXElement>> query, boolean includeSubPathways,
+                           OutputFormat format)
+  {
+    final LruCache<List<Object>, Set<String>> cache = graphQueryResults;
+    Set<String> uris = cache.get(key);
+    if(uris == null) {
+      Set<BioPAXElement> elements = query.get();
+      if(elements != null && !elements.isEmpty()) {
+        Completer completer = new Completer(simpleIO.getEditorMap());
+        completer.setSkipSubPathways(!includeSubPathways); //mind NOT (!) here
+        elements = completer.complete(elements);
+      }
+      uris = new HashSet<>();
+      if(elements != null) {
+        for(BioPAXElement e : elements)
+          uris.add(e.getUri());
+      }
+      cache.put(key, uris);
+    } else {
+      log.debug("graphQuery, cached result of " + key + "; cache " + cache);
+    }
+
+    return (uris.isEmpty()) ? null : subModel(getByUri(uris.toArray(new String[0])), format);
+  }
+
+  private static List<Object> graphQueryKey(GraphType kind, Set<Set<String>> sources, Set<Set<String>> targets,
+                                            Integer limit, Direction direction, String[] organisms,
+                                            String[] datasources, boolean subPathways)
+  {
+    return Arrays.asList(kind, sources, (targets != null) ? targets : Collections.emptySet(), limit, direction, sortedValues(organisms),
+      sortedValues(datasources), subPathways);
+  }
+
+  private static Set<String> sortedValues(String[] values) {
+    return (values != null) ? new TreeSet<>(Arrays.asList(values)) : Collections.emptySet();
+  }
+
+  /*
+   * Gets (builds on first use) the compact adjacency index of the main model, without the ubiquitous molecules,
+   * to run the graph queries on (instead of wrapping the BioPAX objects again for every query).
+   */
+  private GraphIndex graphIndex(boolean undirected) {
+    GraphIndex index = (undirected) ? undirectedGraphIndex : graphIndex;
+    if(index == null) {
+      synchronized (this) {
+        index = (undirected) ? undirectedGraphIndex : graphIndex;
+        if(index == null) {
+          final Model model = paxtoolsModel;
+          final Filter[] filters = (blacklist != null)
+            ? new Filter[]{new UbiqueFilter(blacklist.getListed())} : new Filter[0];
+          long start = System.currentTimeMillis();
+          index = (undirected) ? GraphIndex.undirected(model, filters) : GraphIndex.directed(model, filters);
+          if(graphExecutor != null)
+            index.setExecutor(graphExecutor, (settings.getGraphQueryParallelism() != null)
+              ? Math.max(1, settings.getGraphQueryParallelism()) : 1);
+          log.info("graphIndex, built the " + ((undirected) ? "undirected" : "directed") + " graph index ("
+            + index.numNodes() + " nodes, " + index.numEdges() + " edges) in "
+            + (System.currentTimeMillis() - start) + " ms");
+          if(undirected)
+            undirectedGraphIndex = index;
+          else
+            graphIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /*
+   * The full-text search engine (for its caches' metrics, see CacheMetrics), or null before init().
+   */
+  SearchEngine searchEngine() {
+    return (searcher instanceof SearchEngine) ? (SearchEngine) searcher : null;
+  }
+
+  /**
+   * The graph query results cache (see its hit ratio, evictions, total size (no. URIs));
+   * these metrics are published via JMX by {@link CacheMetrics}.
+   * @return
+   */
+  public LruCache<List<Object>, Set<String>> getGraphQueryCache() {
+    return graphQueryResults;
+  }
+
+  /**
+   * The converted results on-disk cache (see its hits, evictions, total bytes;
+   * also published via JMX by {@link CacheMetrics}).
+   * @return the cache or null when it's disabled
+   */
+  public OutputCache getOutputCache() {
+    return outputCache;
+  }
+
   public ServiceResponse getNeighborhood(final OutputFormat format,
                                          Map<String, String> formatOptions,
                                          final String[] sources,
@@ -227,13 +449,13 @@ public class CPathServiceImpl implements CPathService {
       direction = Direction.UNDIRECTED; //TODO: use BOTHSTREAM (less data as it ignores MIs)?
     }
 
-    // execute the paxtools graph query
+    // execute the paxtools graph query (or get the cached result)
     try {
-      Set<Set<BioPAXElement>> elements = seedBiopaxElementGroups(sources);
-      // Execute the query, get result elements
-      Set<BioPAXElement> nhood = QueryExecuter.runNeighborhoodMultiSet(elements, paxtoolsModel,
-        limit, direction, createFilters(organisms, datasources));
-      Model m = autoCompleteAndClone(nhood, subPathways);
+      final Set<Set<String>> seeds = mapToSeeds(sources);
+      final Direction dir = direction;
+      Model m = graphQuery(graphQueryKey(GraphType.NEIGHBORHOOD, seeds, null, limit, dir, organisms, datasources,
+        subPathways), () -> graphIndex(dir == Direction.UNDIRECTED).neighborhood(seedBiopaxElementGroups(seeds),
+        limit, dir, createFilters(false, organisms, datasources)), subPathways, format);
       if( m != null) {
         String desc = Arrays.toString(sources);
         m.setUri("PC_graph_neighborhood_" + desc.hashCode());
@@ -255,11 +477,11 @@ public class CPathServiceImpl implements CPathService {
     // execute the paxtools graph query
     try {
       // init source elements
-      Set<Set<BioPAXElement>> elements = seedBiopaxElementGroups(sources);
-      // Execute the query, get result elements
-      Set<BioPAXElement> result = QueryExecuter.runPathsBetweenMultiSet(elements, paxtoolsModel, limit,
-        createFilters(organisms, datasources));
-      Model m = autoCompleteAndClone(result,subPathways);
+      final Set<Set<String>> seeds = mapToSeeds(sources);
+      // Execute the query (or get the cached result)
+      Model m = graphQuery(graphQueryKey(GraphType.PATHSBETWEEN, seeds, null, limit, null, organisms, datasources,
+        subPathways), () -> graphIndex(false).pathsBetween(seedBiopaxElementGroups(seeds),
+        limit, createFilters(false, organisms, datasources)), subPathways, format);
       if(m != null) {
         String desc = Arrays.toString(sources);
         m.setUri("PC_graph_pathsbetween_" + desc.hashCode());
@@ -281,20 +503,19 @@ public class CPathServiceImpl implements CPathService {
     // execute the paxtools graph query
     try {
       // init source and target elements
-      Set<Set<BioPAXElement>> source = seedBiopaxElementGroups(sources);
-      Set<Set<BioPAXElement>> target = seedBiopaxElementGroups(targets);
+      final Set<Set<String>> source = mapToSeeds(sources);
+      final Set<Set<String>> target = mapToSeeds(targets);
 
       Model m = null;
       if(!source.isEmpty())
       {
-        // Execute the query
-        Set<BioPAXElement> elements = (target == null || target.isEmpty())
-          ? QueryExecuter.runPathsBetweenMultiSet(source, paxtoolsModel, limit,
-          createFilters(organisms, datasources))
-          : QueryExecuter.runPathsFromToMultiSet(source, target, paxtoolsModel, LimitType.NORMAL, limit,
-          createFilters(organisms, datasources));
-
-        m = autoCompleteAndClone(elements,subPathways);
+        // Execute the query (or get the cached result)
+        m = graphQuery(graphQueryKey(GraphType.PATHSFROMTO, source, target, limit, null, organisms, datasources,
+          subPathways), () -> (target.isEmpty())
+          ? graphIndex(false).pathsBetween(seedBiopaxElementGroups(source), limit,
+          createFilters(false, organisms, datasources))
+          : QueryExecuter.runPathsFromToMultiSet(seedBiopaxElementGroups(source), seedBiopaxElementGroups(target),
+          paxtoolsModel, LimitType.NORMAL, limit, createFilters(organisms, datasources)), subPathways, format);
 
         if(m != null) {
           String desc = Arrays.toString(sources) + "-to-" + Arrays.toString(targets);
@@ -312,11 +533,17 @@ public class CPathServiceImpl implements CPathService {
 
   private ServiceResponse convert(Model m, OutputFormat format, Map<String, String> options) {
     BiopaxConverter biopaxConverter = new BiopaxConverter(blacklist);
+    biopaxConverter.setCache(outputCache);
 
     if(options == null)
       options = new HashMap<>();
 
-    if(format != OutputFormat.BIOPAX && m != null) {
+    if(format == OutputFormat.BIOPAX) {
+      // write RDF/XML directly to the response (or get the cached file)
+      return biopaxConverter.stream(m, options);
+    }
+
+    if(m != null) {
       // remove all Pathway objects from the result model (TODO: keep pathway name,uri somehow)
       // (- pathways become incomplete after detaching from main PC model;
       // these look confusing after converting to other format.)
@@ -355,12 +582,12 @@ public class CPathServiceImpl implements CPathService {
     // execute the paxtools graph query
     try {
       // init source elements
-      Set<Set<BioPAXElement>> elements = seedBiopaxElementGroups(sources);
-      // Execute the query, get result elements
-      Set<BioPAXElement> result = QueryExecuter
-        .runCommonStreamWithPOIMultiSet(elements, paxtoolsModel, direction, limit,
-          createFilters(organisms, datasources));
-      Model m = autoCompleteAndClone(result, subPathways);
+      final Set<Set<String>> seeds = mapToSeeds(sources);
+      final Direction dir = direction;
+      // Execute the query (or get the cached result)
+      Model m = graphQuery(graphQueryKey(GraphType.COMMONSTREAM, seeds, null, limit, dir, organisms, datasources,
+        subPathways), () -> graphIndex(false).commonStream(seedBiopaxElementGroups(seeds),
+        dir, limit, createFilters(false, organisms, datasources)), subPathways, format);
       if(m != null) {
         String desc = Arrays.toString(sources);
         m.setUri("PC_graph_commonstream_" + desc.hashCode());
@@ -390,9 +617,20 @@ public class CPathServiceImpl implements CPathService {
   {
     Set<Set<String>> sets = new HashSet<>();
 
-    if(identifiers != null)
-      for(String identifier: identifiers)
-        sets.add(findUrisById(identifier));
+    if(identifiers != null) {
+      //map all the IDs at once
+      Map<String, Set<String>> urisById = findUrisByIds(Arrays.asList(identifiers), Arrays.asList(DEFAULT_SEED_TYPES));
+      for (String identifier : identifiers) {
+        if (identifier == null)
+          continue;
+        if (identifier.startsWith("http://")) {
+          // must be valid URI of some existing BioPAX object in our model
+          sets.add(Collections.singleton(identifier));
+        } else {
+          sets.add(urisById.getOrDefault(identifier, Collections.emptySet()));
+        }
+      }
+    }
 
     return sets;
   }
@@ -414,76 +652,75 @@ public class CPathServiceImpl implements CPathService {
       return identifiers; //empty array
 
     Set<String> uris = new TreeSet<>();
-
-    StringBuilder q = new StringBuilder();
+    List<String> ids = new ArrayList<>();
     for (String identifier : identifiers)
     {
       if(identifier.startsWith("http://")) {
         // must be valid URI of some existing BioPAX object in our model
         uris.add(identifier);
       } else {
-        //Build a Lucene query (eq. to xrefid:"A" OR xrefid:"B" OR ...);
-        //let's sanitize the ID by simply using double quotes around each identifier:
-        if (!q.toString().contains(identifier)) {
-          q.append("xrefid:\"").append(identifier).append("\" ");
-        }
+        ids.add(identifier);
       }
     }
 
-    if (q.length() > 0) {
-      //find all entity URIs by IDs using a specific full-text search
-      final String query = q.toString().trim();
-
-      if(types.length==0) types = DEFAULT_SEED_TYPES; //BioPAX types to search in
-
-      for(Class<? extends BioPAXElement> type : types) {
-        findAllUris(uris, query, type);
-      }
-    }
+    if(types.length==0) types = DEFAULT_SEED_TYPES; //BioPAX types to search in
+    findUrisByIds(ids, Arrays.asList(types)).values().forEach(uris::addAll);
 
     return uris.toArray(new String[]{});
   }
 
-  /**
-   * Mapping some ID to the BioPAX entity URI(s).
-   *
-   * @param idOrUri - a genes/protein or molecule identifier or uri.
-   * @return URIs of matching Xrefs
-   *
-   * See also: issue #296
+  /*
+   * Maps the IDs (not URIs) to entity URIs, all at once,
+   * using the in-memory identifiers index (exact or lowercase 'xrefid' values).
    */
-  private Set<String> findUrisById(String idOrUri)
+  private Map<String, Set<String>> findUrisByIds(Collection<String> ids,
+                                                 Collection<Class<? extends BioPAXElement>> types)
   {
-    if (idOrUri == null)
-      return Collections.emptySet();
-
-    Set<String> uris = new TreeSet<>();
-
-    if(idOrUri.startsWith("http://")) {
-      // must be valid URI of some existing BioPAX object in our model
-      uris.add(idOrUri);
-    } else {
-      //Find all entity URIs by ID and specific Lucene query (eq. to xrefid:"A" OR xrefid:"B" OR ...
-      //sanitize the ID by simply using double quotes around each id):
-      String query = "xrefid:\""+idOrUri+"\"";
-      for(Class<? extends BioPAXElement> type : DEFAULT_SEED_TYPES) {
-        findAllUris(uris, query, type);
+    if(ids.isEmpty())
+      return Collections.emptyMap();
+    final Map<String, Set<String>> resolved = resolvedIds.get();
+    if(resolved != null) {
+      //mapped to any type URIs ahead (batch); keep only the given types
+      Map<String, Set<String>> result = new HashMap<>();
+      for(String id : ids) {
+        Set<String> uris = new TreeSet<>();
+        for(String uri : resolved.getOrDefault(id, Collections.emptySet())) {
+          BioPAXElement e = paxtoolsModel.getByID(uri);
+          if(e != null && (types.isEmpty() || types.stream().anyMatch(t -> t.isInstance(e))))
+            uris.add(uri);
+        }
+        if(!uris.isEmpty())
+          result.put(id, uris);
       }
+      return result;
+    }
+    if(modelNotReady() || searcher == null) {
+      log.warn("findUrisByIds, waiting for the initialization to complete...");
+      return Collections.emptyMap();
     }
+    log.debug("findUrisByIds, resolve " + ids.size() + " IDs in " + types);
+    return searcher.resolve(ids, types);
+  }
 
-    return uris;
+  public Map<String, Set<String>> resolve(Collection<String> identifiers) {
+    List<String> ids = new ArrayList<>();
+    for(String identifier : identifiers) {
+      if(identifier != null && !identifier.startsWith("http://"))
+        ids.add(identifier);
+    }
+    return findUrisByIds(ids, Collections.emptyList());
   }
 
-  private void findAllUris(Set<String> collectedUris, String query, Class<? extends BioPAXElement> biopaxTypeFilter) {
-    log.debug("findAllUris, search in " + biopaxTypeFilter.getSimpleName() + " using query: " + query);
-    int page = 0; // will use search pagination; collect all hits from all result pages
-    SearchResponse resp = (SearchResponse) search(query, page, biopaxTypeFilter, null, null);
-    while (!resp.isEmpty())
-    {
-      for (SearchHit h : resp.getSearchHit())
-        collectedUris.add(h.getUri());
-      // go to next page
-      resp = (SearchResponse) search(query, ++page, biopaxTypeFilter, null, null);
+  public <T> T withResolved(Map<String, Set<String>> uris, Supplier<T> query) {
+    final Map<String, Set<String>> outer = resolvedIds.get();
+    resolvedIds.set(uris);
+    try {
+      return query.get();
+    } finally {
+      if(outer != null)
+        resolvedIds.set(outer);
+      else
+        resolvedIds.remove();
     }
   }
 
@@ -504,7 +741,7 @@ public class CPathServiceImpl implements CPathService {
       Class<? extends BioPAXElement> type = BioPAXLevel.L3.getInterfaceForName(propertyPath.substring(0, idx));
       //Not only absolute URIs but also IDs (to search for biopax type objects) now work!
       String[] sourceUris =  findUrisByIds(uris, type);
-      new TraverseAnalysis(res, sourceUris).execute(paxtoolsModel);
+      new TraverseAnalysis(res, pathAccessor(propertyPath), sourceUris).execute(paxtoolsModel);
       return res;
     } catch (IllegalArgumentException e) { //- catches IllegalBioPAXArgumentException too
       log.error("traverse() failed to init path accessor. " + e);
@@ -517,6 +754,45 @@ public class CPathServiceImpl implements CPathService {
   }
 
 
+  /*
+   * Gets the parsed property path (the same path accessor is reused by the traverse queries).
+   */
+  private PathAccessor pathAccessor(String propertyPath) {
+    PathAccessor pathAccessor = pathAccessors.get(propertyPath);
+    if(pathAccessor == null) {
+      try {
+        pathAccessor = new PathAccessor(propertyPath, paxtoolsModel.getLevel());
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Failed to parse the BioPAX property path: " + propertyPath, e);
+      }
+      pathAccessors.put(propertyPath, pathAccessor);
+    }
+    return pathAccessor;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Looks up the names and gene symbols in the index's suggester (weighted FST), not the full-text index.
+   */
+  public ServiceResponse suggest(String prefix, String organism) {
+    if(modelNotReady() || searcher == null)
+      return new ErrorResponse(MAINTENANCE,"Waiting for the initialization to complete (try later)...");
+
+    if(prefix==null || prefix.trim().isEmpty())
+      return new ErrorResponse(BAD_REQUEST,"Prefix was empty.");
+
+    try {
+      SuggestResponse suggestions = new SuggestResponse();
+      suggestions.setPrefix(prefix);
+      suggestions.getSuggestion().addAll(searcher.suggest(prefix, organism));
+      return suggestions;
+    } catch (Exception e) {
+      log.error("suggest() failed - " + e);
+      return new ErrorResponse(INTERNAL_ERROR, e);
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -534,11 +810,11 @@ public class CPathServiceImpl implements CPathService {
 
     SearchResponse topPathways = new SearchResponse();
     final List<SearchHit> hits = topPathways.getSearchHit(); //empty list
-    int page = 0; // will use search pagination
+    int page = 0; // will use search pagination (cursor)
 
     SearchResponse r;
     try {
-      r = searcher.search(q, page, Pathway.class, datasources, organisms);
+      r = searcher.searchAfter(q, null, Pathway.class, datasources, organisms);
     } catch(Exception e) {
       log.error("topPathways() failed", e);
       return new ErrorResponse(INTERNAL_ERROR, e);
@@ -574,12 +850,13 @@ public class CPathServiceImpl implements CPathService {
         processed++;
       }
 
-      if(processed >= numPathways)
+      if(processed >= numPathways || r.getCursor() == null)
         break; //may save us one uselss query
 
       // go next page
       try {
-        r = searcher.search(q, ++page, Pathway.class, datasources, organisms);
+        ++page;
+        r = searcher.searchAfter(q, r.getCursor(), Pathway.class, datasources, organisms);
       } catch(Exception e) {
         log.error("topPathways() failed", e);
         return new ErrorResponse(INTERNAL_ERROR, e);
@@ -610,13 +887,12 @@ public class CPathServiceImpl implements CPathService {
   /**
    * Prepares the sets of seed objects for a BioPAX graph query.
    *
-   * @param ids an array of IDs to map
+   * @param uris groups of seed URIs (see {@link #mapToSeeds(String[])})
    * @return groups of seed biopax elements (- one group per input id/uri)
    */
-  private Set<Set<BioPAXElement>> seedBiopaxElementGroups(String[] ids)
+  private Set<Set<BioPAXElement>> seedBiopaxElementGroups(Set<Set<String>> uris)
   {
     Set<Set<BioPAXElement>> ret = new HashSet<>();
-    Set<Set<String>> uris = mapToSeeds(ids);
     for(Set<String> set : uris) {
       ret.add(getByUri(set.toArray(new String[0])));
     }
@@ -724,13 +1000,27 @@ public class CPathServiceImpl implements CPathService {
     init(); //very important - loads the model
 
     log.info("Associating bio IDs with BioPAX objects using nested Xrefs and id-mapping...");
-    addIdsAsBiopaxAnnotations();
+    addIdsAsBiopaxAnnotations(getModel().getObjects());
 
     ((Indexer)searcher).index();
 
     log.info("index(), all done.");
   }
 
+  public void reindex(Metadata metadata)
+  {
+    init(); //very important - loads the model
+
+    //the same objects that get re-indexed (the provider's, their ERs and the ones that had its docs)
+    ((Indexer)searcher).reindex(metadata, objects -> {
+      log.info("Associating bio IDs with " + objects.size() + " " + metadata.getIdentifier()
+        + " BioPAX objects using nested Xrefs and id-mapping...");
+      addIdsAsBiopaxAnnotations(objects);
+    });
+
+    log.info("reindex(), done: " + metadata.getIdentifier());
+  }
+
   public void clear(Metadata metadata) {
     CPathUtils.cleanupDirectory(intermediateDataDir(metadata), true);
     metadata.setNumInteractions(null);
@@ -739,9 +1029,9 @@ public class CPathServiceImpl implements CPathService {
     metadata.getFiles().clear();
   }
 
-  private void addIdsAsBiopaxAnnotations()
+  private void addIdsAsBiopaxAnnotations(Collection<BioPAXElement> objects)
   {
-    for(final BioPAXElement bpe : getModel().getObjects()) {
+    for(final BioPAXElement bpe : objects) {
       if(!(bpe instanceof Entity || bpe instanceof EntityReference))
         continue; //skip for UtilityClass but EntityReference
 
@@ -178,6 +178,17 @@ public final class CPathUtils {
     os.close();
   }
 
+  /**
+   * The gzip-compressed copy of a query result file (may not exist):
+   * the same file name plus ".gz", in the same directory.
+   *
+   * @param file result file
+   * @return path to the compressed copy
+   */
+  public static Path gzipped(Path file) {
+    return file.resolveSibling(file.getFileName() + ".gz");
+  }
+
   /**
    * For a warehouse (normalized) EntityReference's or CV's URI
    * gets the corresponding identifier (e.g., UniProt or ChEBI primary ID).
@@ -0,0 +1,95 @@
+package cpath.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.search.LRUQueryCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * The web service caches' hit/miss/eviction counters and sizes, available via JMX:
+ * the full-text search filters, results pages and parsed queries (see {@link SearchEngine}),
+ * the graph query results and the converted results on disk (see {@link CPathServiceImpl}).
+ * A cache that is disabled or not created yet (before the service init) has no values.
+ */
+@Component
+@Profile("web")
+@ManagedResource(description = "Web service caches")
+public class CacheMetrics {
+
+  private final CPathServiceImpl service;
+
+  @Autowired
+  public CacheMetrics(CPathServiceImpl service) {
+    this.service = service;
+  }
+
+  @ManagedAttribute(description = "Full-text search filters (Lucene query cache)")
+  public Map<String, Number> getSearchFilterCache() {
+    Map<String, Number> m = new TreeMap<>();
+    SearchEngine searchEngine = service.searchEngine();
+    if(searchEngine != null) {
+      LRUQueryCache cache = searchEngine.getQueryCache();
+      m.put("hits", cache.getHitCount());
+      m.put("misses", cache.getMissCount());
+      m.put("hitRatio", ratio(cache.getHitCount(), cache.getMissCount()));
+      m.put("evictions", cache.getEvictionCount());
+      m.put("size", cache.getCacheSize());
+      m.put("ramBytes", cache.ramBytesUsed());
+    }
+    return m;
+  }
+
+  @ManagedAttribute(description = "Full-text search results pages")
+  public Map<String, Number> getSearchResultsCache() {
+    SearchEngine searchEngine = service.searchEngine();
+    return (searchEngine != null) ? stats(searchEngine.getSearchResultsCache()) : new TreeMap<>();
+  }
+
+  @ManagedAttribute(description = "Parsed full-text search queries")
+  public Map<String, Number> getParsedQueriesCache() {
+    SearchEngine searchEngine = service.searchEngine();
+    return (searchEngine != null) ? stats(searchEngine.getParsedQueriesCache()) : new TreeMap<>();
+  }
+
+  @ManagedAttribute(description = "Graph query results (weight - total no. URIs)")
+  public Map<String, Number> getGraphQueryCache() {
+    return stats(service.getGraphQueryCache());
+  }
+
+  @ManagedAttribute(description = "Converted get/graph query results on disk (weight - total bytes)")
+  public Map<String, Number> getOutputCache() {
+    Map<String, Number> m = new TreeMap<>();
+    OutputCache cache = service.getOutputCache();
+    if(cache != null) {
+      m.put("hits", cache.getHitCount());
+      m.put("misses", cache.getMissCount());
+      m.put("hitRatio", ratio(cache.getHitCount(), cache.getMissCount()));
+      m.put("evictions", cache.getEvictionCount());
+      m.put("size", cache.size());
+      m.put("weight", cache.getBytes());
+      m.put("maxWeight", cache.getMaxBytes());
+    }
+    return m;
+  }
+
+  private static Map<String, Number> stats(LruCache<?, ?> cache) {
+    Map<String, Number> m = new TreeMap<>();
+    m.put("hits", cache.getHitCount());
+    m.put("misses", cache.getMissCount());
+    m.put("hitRatio", cache.getHitRatio());
+    m.put("evictions", cache.getEvictionCount());
+    m.put("size", cache.size());
+    m.put("weight", cache.getWeight());
+    m.put("maxWeight", cache.getMaxWeight());
+    return m;
+  }
+
+  private static double ratio(long hits, long misses) {
+    return (hits + misses > 0) ? (double) hits / (hits + misses) : 0.0;
+  }
+}
@@ -3,14 +3,14 @@ package cpath.service;
 import cpath.service.api.Analysis;
 import cpath.service.api.CPathService;
 import cpath.service.api.Searcher;
-import cpath.service.jaxb.SearchHit;
-import cpath.service.jaxb.SearchResponse;
 import cpath.service.jpa.Metadata;
 import cpath.service.jpa.Metadata.METADATA_TYPE;
 
 import org.apache.commons.cli.*;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
 import org.biopax.paxtools.controller.SimpleEditorMap;
 import org.biopax.paxtools.io.*;
 import org.biopax.paxtools.model.BioPAXElement;
@@ -115,8 +115,7 @@ public class ConsoleApplication implements CommandLineRunner {
         case PREMERGE:
           premerge();
         case MERGE:
-          new Merger(service).merge();
-          index();
+          index(new Merger(service).merge());
         case POSTMERGE:
           postmerge();
       }
@@ -176,20 +175,38 @@ public class ConsoleApplication implements CommandLineRunner {
   }
 
   /*
-   * Builds a new BioPAX full-text index,creates the black list or ubiquitous molecules,
+   * Builds a new BioPAX full-text index (or re-indexes only the rebuilt data sources
+   * if the index already exists), creates the black list or ubiquitous molecules,
    * and calculates/updates the total no. of pathways, interactions, physical entities in the main db.
    */
-  private void index() throws IOException {
-    LOG.info("index: indexing...");
-    service.index();
-
-    // Updates counts of pathways, etc. and saves in the Metadata table.
-    // This depends on the full-text index, which must have been created already (otherwise, results will be wrong).
-    LOG.info("Updating pathway/interaction/participant counts per data source...");
+  private void index(Collection<Metadata> rebuilt) throws IOException {
     List<Metadata> pathwayMetadata = new ArrayList<>();
     for (Metadata md : service.metadata().findAll())
       if (!md.isNotPathwayData())
         pathwayMetadata.add(md);
+
+    final Set<String> rebuiltIds = new HashSet<>();
+    rebuilt.forEach(md -> rebuiltIds.add(md.getIdentifier()));
+    if(rebuiltIds.size() < pathwayMetadata.size() && indexExists())
+    {
+      if (rebuilt.isEmpty()) {
+        LOG.info("index: no data sources were rebuilt; nothing to re-index, no counts to update");
+      } else {
+        LOG.info("index: re-indexing the rebuilt data sources only: " + rebuiltIds);
+        service.init(); //loads the main model
+        for (Metadata md : rebuilt)
+          service.reindex(md);
+      }
+      //update the counts below for these data sources only
+      pathwayMetadata.removeIf(md -> !rebuiltIds.contains(md.getIdentifier()));
+    } else {
+      LOG.info("index: indexing...");
+      service.index();
+    }
+
+    // Updates counts of pathways, etc. and saves in the Metadata table.
+    // This depends on the full-text index, which must have been created already (otherwise, results will be wrong).
+    LOG.info("Updating pathway/interaction/participant counts per data source...");
     // update counts for each non-warehouse metadata entry
     for (Metadata md : pathwayMetadata) {
       Model m = service.loadBiopaxModelByDatasource(md); //to count objects, by type
@@ -217,6 +234,12 @@ public class ConsoleApplication implements CommandLineRunner {
     LOG.info("index: all done.");
   }
 
+  private boolean indexExists() throws IOException {
+    try (FSDirectory dir = FSDirectory.open(Paths.get(service.settings().indexDir()))) {
+      return DirectoryReader.indexExists(dir);
+    }
+  }
+
   /*
    * Executes the premerge stage:
    * organize, clean, convert, validate, normalize pathway/interaction data,
@@ -454,14 +477,7 @@ public class ConsoleApplication implements CommandLineRunner {
                                          Class<? extends BioPAXElement> type, String[] ds, String[] org) {
     Collection<String> uris = new ArrayList<>();
 
-    SearchResponse resp = searcher.search("*", 0, type, ds, org);
-    int page = 0;
-    while (!resp.isEmpty()) {
-      for (SearchHit h : resp.getSearchHit())
-        uris.add(h.getUri());
-      //next page
-      resp = searcher.search("*", ++page, type, ds, org);
-    }
+    searcher.collectUris("*", type, ds, org, uris::add);
 
     LOG.info("findAllUris(in " + type.getSimpleName() + ", ds: " + Arrays.toString(ds) + ", org: " + Arrays.toString(org) + ") "
       + "collected " + uris.size());
@@ -0,0 +1,790 @@
+package cpath.service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.biopax.paxtools.query.QueryExecuter;
+import org.biopax.paxtools.query.algorithm.BFS;
+import org.biopax.paxtools.query.algorithm.CycleBreaker;
+import org.biopax.paxtools.query.algorithm.Direction;
+import org.biopax.paxtools.query.algorithm.LimitType;
+import org.biopax.paxtools.query.algorithm.NeighborhoodQuery;
+import org.biopax.paxtools.query.algorithm.PathsFromToQuery;
+import org.biopax.paxtools.query.algorithm.Prune;
+import org.biopax.paxtools.query.model.AbstractGraph;
+import org.biopax.paxtools.query.model.AbstractNode;
+import org.biopax.paxtools.query.model.Edge;
+import org.biopax.paxtools.query.model.Graph;
+import org.biopax.paxtools.query.model.GraphObject;
+import org.biopax.paxtools.query.model.Node;
+import org.biopax.paxtools.query.wrapperL3.Filter;
+import org.biopax.paxtools.query.wrapperL3.GraphL3;
+import org.biopax.paxtools.query.wrapperL3undirected.GraphL3Undirected;
+
+/**
+ * Read-only compact (CSR) adjacency index of the main model's query graph,
+ * for the neighborhood, paths-between and common-stream graph queries.
+ *
+ * It is built once from the paxtools query graph (GraphL3 or GraphL3Undirected, fully initialized),
+ * so that a query does not wrap the BioPAX objects and collect their interactions via reflection again.
+ * Nodes are numbers (a reversible conversion has two nodes, one per direction);
+ * edges of node n are at outTargets[outOffsets[n]] .. outTargets[outOffsets[n+1]-1] (edge number - the position),
+ * incoming edges - at inEdges[inOffsets[n]] .. inEdges[inOffsets[n+1]-1];
+ * the same for the upper (generic, complex) and lower (member) equivalents.
+ *
+ * A query runs the paxtools algorithms over a per-query {@link View}, which applies the query filters
+ * (organism, datasource) lazily, caching the results in bit sets, and maps the result nodes
+ * to the BioPAX elements at the end (so the results are the same as of {@link QueryExecuter}).
+ * The paxtools wrappers also add some edges to their neighbors' collections when initialized
+ * (e.g., a control of a reversible conversion is upstream of the reverse conversion node only after
+ * that node's upstream is visited); so the index keeps which node's initialization makes an edge,
+ * and a view shows the edge only after it has visited that node in the same direction.
+ * The paths-between and common-stream traversals run in the order of the seed groups
+ * (QueryExecuter - in the order of a hash set of node sets, which can change the result from run to run).
+ *
+ * With an executor set, the seed groups are mapped to the nodes, and the per-group traversals of the
+ * paths-between and common-stream queries run, in parallel (up to the parallelism tasks per query);
+ * then those order-dependent edges are there as the traversals happen to visit their nodes.
+ *
+ * @author rodche
+ */
+final class GraphIndex {
+
+	private final boolean undirected;
+	private final BioPAXElement[] elements; //node -> wrapped BioPAX object
+	private final int[] byUri; //nodes (the primary ones, not the reverse conversions) sorted by URI
+	private final BitSet breadth = new BitSet();
+	private final BitSet ubique = new BitSet();
+	private final BitSet transcription = new BitSet();
+	private final byte[] signs;
+	private final int[] outOffsets;
+	private final int[] outTargets;
+	private final int[] edgeSources;
+	private final BitSet edgeTranscription = new BitSet();
+	private final byte[] edgeSigns;
+	private final BitSet bySource = new BitSet(); //made when the source node's downstream is initialized
+	private final BitSet byTarget = new BitSet(); //made when the target node's upstream is initialized
+	private final int[] inOffsets;
+	private final int[] inEdges;
+	private final int[] upperOffsets;
+	private final int[] upper;
+	private final int[] lowerOffsets;
+	private final int[] lower;
+	private volatile Executor executor; //null - run the per-group tasks on the query thread
+	private volatile int parallelism = 1;
+
+	/**
+	 * Builds the index of the directed query graph (used for all but the undirected neighborhood queries).
+	 *
+	 * @param model BioPAX L3 model
+	 * @param filters global filters (e.g., ubiquitous molecules), if any
+	 * @return new index
+	 */
+	static GraphIndex directed(Model model, Filter... filters) {
+		return new GraphIndex(new GraphL3(model, filters), model, false,
+			PhysicalEntity.class, Conversion.class, TemplateReaction.class, Control.class);
+	}
+
+	/**
+	 * Builds the index of the undirected query graph (for the UNDIRECTED neighborhood queries).
+	 *
+	 * @param model BioPAX L3 model
+	 * @param filters global filters (e.g., ubiquitous molecules), if any
+	 * @return new index
+	 */
+	static GraphIndex undirected(Model model, Filter... filters) {
+		return new GraphIndex(new GraphL3Undirected(model, filters), model, true,
+			PhysicalEntity.class, Interaction.class);
+	}
+
+	@SafeVarargs
+	private GraphIndex(AbstractGraph graph, Model model, boolean undirected,
+										 Class<? extends BioPAXElement>... types)
+	{
+		this.undirected = undirected;
+		final Map<Node, Integer> ids = new IdentityHashMap<>();
+		final List<Node> nodes = new ArrayList<>();
+		for(Class<? extends BioPAXElement> type : types) {
+			for(BioPAXElement e : model.getObjects(type)) {
+				Node n = (Node) graph.getGraphObject(e);
+				if(n != null && !ids.containsKey(n)) {
+					ids.put(n, nodes.size());
+					nodes.add(n);
+				}
+			}
+		}
+		final int numPrimary = nodes.size();
+
+		//initialize all the nodes (wrappers add edges to their neighbors lazily);
+		//the reverse conversions are found only via the edges
+		for(int i = 0; i < nodes.size(); i++) {
+			Node n = nodes.get(i);
+			for(Edge e : n.getUpstream())
+				add(e.getSourceNode(), ids, nodes);
+			for(Edge e : n.getDownstream())
+				add(e.getTargetNode(), ids, nodes);
+			for(Node eq : n.getUpperEquivalent())
+				add(eq, ids, nodes);
+			for(Node eq : n.getLowerEquivalent())
+				add(eq, ids, nodes);
+		}
+
+		final int size = nodes.size();
+		elements = new BioPAXElement[size];
+		signs = new byte[size];
+		Pairs down = new Pairs();
+		Pairs up = new Pairs();
+		Set<Long> transcriptionPairs = new HashSet<>();
+		Map<Long, Integer> pairSigns = new HashMap<>(); //other than 1
+		int[][] uppers = new int[size][];
+		int[][] lowers = new int[size][];
+		for(int i = 0; i < size; i++) {
+			AbstractNode n = (AbstractNode) nodes.get(i);
+			for(Object o : graph.getWrappedSet(Collections.singleton(n)))
+				elements[i] = (BioPAXElement) o;
+			if(n.isBreadthNode())
+				breadth.set(i);
+			if(n.isUbique())
+				ubique.set(i);
+			if(n.isTranscription())
+				transcription.set(i);
+			signs[i] = (byte) n.getSign();
+			//the edges this node makes itself (without those its neighbors have added)
+			n.getUpstreamNoInit().clear();
+			n.initUpstream();
+			record(n.getUpstreamNoInit(), ids, up, transcriptionPairs, pairSigns);
+			n.getDownstreamNoInit().clear();
+			n.initDownstream();
+			record(n.getDownstreamNoInit(), ids, down, transcriptionPairs, pairSigns);
+			uppers[i] = toIds(n.getUpperEquivalent(), ids);
+			lowers[i] = toIds(n.getLowerEquivalent(), ids);
+		}
+
+		//edges (each is in both its source's downstream and target's upstream collections)
+		down.sort();
+		up.sort();
+		Pairs all = new Pairs();
+		all.addAll(down);
+		all.addAll(up);
+		all.sort();
+		final int numEdges = all.size;
+		final long[] pairs = all.pairs;
+		outOffsets = new int[size + 1];
+		outTargets = new int[numEdges];
+		edgeSources = new int[numEdges];
+		edgeSigns = new byte[numEdges];
+		inOffsets = new int[size + 1];
+		for(int e = 0; e < numEdges; e++) {
+			edgeSources[e] = (int) (pairs[e] >>> 32);
+			outTargets[e] = (int) pairs[e];
+			outOffsets[edgeSources[e] + 1]++;
+			inOffsets[outTargets[e] + 1]++;
+			if(transcriptionPairs.contains(pairs[e]))
+				edgeTranscription.set(e);
+			edgeSigns[e] = (byte) pairSigns.getOrDefault(pairs[e], 1).intValue();
+			if(down.contains(pairs[e]))
+				bySource.set(e);
+			if(up.contains(pairs[e]))
+				byTarget.set(e);
+		}
+		for(int i = 0; i < size; i++) {
+			outOffsets[i + 1] += outOffsets[i];
+			inOffsets[i + 1] += inOffsets[i];
+		}
+		inEdges = new int[numEdges];
+		int[] next = Arrays.copyOf(inOffsets, size);
+		for(int e = 0; e < numEdges; e++)
+			inEdges[next[outTargets[e]]++] = e;
+
+		upperOffsets = new int[size + 1];
+		upper = flatten(uppers, upperOffsets);
+		lowerOffsets = new int[size + 1];
+		lower = flatten(lowers, lowerOffsets);
+
+		byUri = new int[numPrimary];
+		Integer[] sorted = new Integer[numPrimary];
+		for(int i = 0; i < numPrimary; i++)
+			sorted[i] = i;
+		Arrays.sort(sorted, Comparator.comparing(i -> elements[i].getUri()));
+		for(int i = 0; i < numPrimary; i++)
+			byUri[i] = sorted[i];
+
+		graph.clear();
+	}
+
+	private static void record(Collection<Edge> edges, Map<Node, Integer> ids, Pairs pairs,
+														 Set<Long> transcriptionPairs, Map<Long, Integer> pairSigns)
+	{
+		for(Edge e : edges) {
+			Integer s = ids.get(e.getSourceNode());
+			Integer t = ids.get(e.getTargetNode());
+			if(s == null || t == null)
+				continue;
+			long pair = ((long) s << 32) | t;
+			pairs.add(pair);
+			if(e.isTranscription())
+				transcriptionPairs.add(pair);
+			if(e.getSign() != 1)
+				pairSigns.put(pair, e.getSign());
+		}
+	}
+
+	/*
+	 * Growing array of edges as (source << 32 | target) numbers; sort() also removes duplicates.
+	 */
+	private static final class Pairs {
+		private long[] pairs = new long[1024];
+		private int size;
+
+		void add(long pair) {
+			if(size == pairs.length)
+				pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+			pairs[size++] = pair;
+		}
+
+		void addAll(Pairs other) {
+			for(int i = 0; i < other.size; i++)
+				add(other.pairs[i]);
+		}
+
+		void sort() {
+			Arrays.sort(pairs, 0, size);
+			int distinct = 0;
+			for(int i = 0; i < size; i++) {
+				if(i == 0 || pairs[i] != pairs[i - 1])
+					pairs[distinct++] = pairs[i];
+			}
+			size = distinct;
+		}
+
+		boolean contains(long pair) {
+			return Arrays.binarySearch(pairs, 0, size, pair) >= 0;
+		}
+	}
+
+	private static void add(Node n, Map<Node, Integer> ids, List<Node> nodes) {
+		if(n != null && !ids.containsKey(n)) {
+			ids.put(n, nodes.size());
+			nodes.add(n);
+		}
+	}
+
+	private static int[] toIds(Collection<Node> nodes, Map<Node, Integer> ids) {
+		return nodes.stream().map(ids::get).filter(Objects::nonNull).mapToInt(Integer::intValue).distinct().toArray();
+	}
+
+	private static int[] flatten(int[][] lists, int[] offsets) {
+		for(int i = 0; i < lists.length; i++)
+			offsets[i + 1] = offsets[i] + lists[i].length;
+		int[] flat = new int[offsets[lists.length]];
+		for(int i = 0; i < lists.length; i++)
+			System.arraycopy(lists[i], 0, flat, offsets[i], lists[i].length);
+		return flat;
+	}
+
+	int numNodes() {
+		return elements.length;
+	}
+
+	int numEdges() {
+		return outTargets.length;
+	}
+
+	/**
+	 * Sets the executor to run the per-seed-group tasks of a query in parallel.
+	 *
+	 * @param executor shared (bounded) executor or null - run all on the query thread
+	 * @param parallelism max. number of tasks per query (1 - run all on the query thread)
+	 */
+	void setExecutor(Executor executor, int parallelism) {
+		if(parallelism < 1)
+			throw new IllegalArgumentException("parallelism < 1");
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/*
+	 * Applies the function to each item; splits the items into up to 'parallelism' chunks,
+	 * runs the chunks on the executor (the first one - on this thread) and waits for all.
+	 * Returns the results in the same order.
+	 */
+	private <T, R> List<R> map(List<T> items, Function<T, R> function) {
+		final Executor exec = executor;
+		final int chunks = Math.min(parallelism, items.size());
+		if(exec == null || chunks < 2)
+			return apply(items, function);
+		final int chunkSize = (items.size() + chunks - 1) / chunks;
+		List<CompletableFuture<List<R>>> futures = new ArrayList<>();
+		for(int from = chunkSize; from < items.size(); from += chunkSize) {
+			List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+			futures.add(CompletableFuture.supplyAsync(() -> apply(chunk, function), exec));
+		}
+		List<R> results = apply(items.subList(0, chunkSize), function);
+		try {
+			for(CompletableFuture<List<R>> f : futures)
+				results.addAll(f.join());
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+		return results;
+	}
+
+	private static <T, R> List<R> apply(List<T> items, Function<T, R> function) {
+		List<R> results = new ArrayList<>(items.size());
+		for(T item : items)
+			results.add(function.apply(item));
+		return results;
+	}
+
+	/**
+	 * Neighborhood query (see {@link QueryExecuter#runNeighborhoodMultiSet}).
+	 *
+	 * @param sources groups of seed elements
+	 * @param limit max. distance
+	 * @param direction UNDIRECTED (- requires the undirected graph index), UPSTREAM, DOWNSTREAM or BOTHSTREAM
+	 * @param filters query filters
+	 * @return result BioPAX elements
+	 */
+	Set<BioPAXElement> neighborhood(Set<Set<BioPAXElement>> sources, int limit, Direction direction,
+																	Filter... filters)
+	{
+		if((direction == Direction.UNDIRECTED) != undirected)
+			throw new IllegalArgumentException("Use the " + ((undirected) ? "directed" : "undirected") + " index");
+		if(sources.isEmpty())
+			return Collections.emptySet();
+		View view = new View(filters);
+		Set<Node> source = new HashSet<>();
+		for(Set<Node> set : map(new ArrayList<>(sources), view::nodeSet))
+			source.addAll(set);
+		return view.result(new NeighborhoodQuery(source,
+			(undirected) ? Direction.BOTHSTREAM : direction, limit).run());
+	}
+
+	/**
+	 * Paths-between query (see {@link QueryExecuter#runPathsBetweenMultiSet}).
+	 *
+	 * @param sources groups of seed elements
+	 * @param limit max. path length
+	 * @param filters query filters
+	 * @return result BioPAX elements
+	 */
+	Set<BioPAXElement> pathsBetween(Set<Set<BioPAXElement>> sources, int limit, Filter... filters) {
+		View view = new View(filters);
+		List<Set<Node>> sourceSets = view.nodeSets(sources);
+		if(sourceSets.size() < 2)
+			return Collections.emptySet();
+
+		// same as the PathsBetweenQuery does, but the BFS from each source set run in parallel:
+		// an object is on a result path when it's reachable downstream from one set and upstream from another,
+		// within the limit (in total)
+		List<List<Map<GraphObject, Integer>>> labels = map(sourceSets, set -> Arrays.asList(
+			new BFS(set, null, Direction.DOWNSTREAM, limit).run(),
+			new BFS(set, null, Direction.UPSTREAM, limit).run()));
+		Map<GraphObject, int[]> fwd = minLabels(labels, 0);
+		Map<GraphObject, int[]> bwd = minLabels(labels, 1);
+		Set<GraphObject> result = new HashSet<>();
+		for(Map.Entry<GraphObject, int[]> e : fwd.entrySet()) {
+			int[] f = e.getValue();
+			int[] b = bwd.get(e.getKey());
+			if(b == null)
+				continue;
+			int min = (f[1] != b[1]) ? f[0] + b[0] : Math.min(f[0] + b[2], f[2] + b[0]);
+			if(min <= limit)
+				result.add(e.getKey());
+		}
+		Set<Node> source = new HashSet<>();
+		for(Set<Node> set : sourceSets)
+			source.addAll(set);
+		new CycleBreaker(result, source, limit).breakCycles();
+		return view.result(new Prune(result, source).run());
+	}
+
+	/*
+	 * For each labeled object, the min. label among the source sets, that set's number,
+	 * and the min. label among the other sets (or a large number if there are none).
+	 */
+	private static Map<GraphObject, int[]> minLabels(List<List<Map<GraphObject, Integer>>> labels, int direction) {
+		Map<GraphObject, int[]> mins = new HashMap<>();
+		for(int set = 0; set < labels.size(); set++) {
+			for(Map.Entry<GraphObject, Integer> e : labels.get(set).get(direction).entrySet()) {
+				int label = e.getValue();
+				int[] m = mins.computeIfAbsent(e.getKey(), k -> new int[]{Integer.MAX_VALUE / 2, -1, Integer.MAX_VALUE / 2});
+				if(label < m[0]) {
+					m[2] = m[0];
+					m[0] = label;
+					m[1] = set;
+				} else if(label < m[2]) {
+					m[2] = label;
+				}
+			}
+		}
+		return mins;
+	}
+
+	/**
+	 * Common stream query with paths of interest (see {@link QueryExecuter#runCommonStreamWithPOIMultiSet}).
+	 *
+	 * @param sources groups of seed elements
+	 * @param direction UPSTREAM or DOWNSTREAM
+	 * @param limit max. distance
+	 * @param filters query filters
+	 * @return result BioPAX elements
+	 */
+	Set<BioPAXElement> commonStream(Set<Set<BioPAXElement>> sources, Direction direction, int limit,
+																	Filter... filters)
+	{
+		if(direction != Direction.UPSTREAM && direction != Direction.DOWNSTREAM)
+			throw new IllegalArgumentException("Direction has to be either upstream or downstream");
+		View view = new View(filters);
+		List<Set<Node>> sourceSets = view.nodeSets(sources);
+		if(sourceSets.size() < 2)
+			return Collections.emptySet();
+
+		// same as the CommonStreamQuery does, but the BFS from each source set run in parallel:
+		// the common stream nodes are reachable from every source set
+		Map<GraphObject, Integer> reached = new HashMap<>();
+		for(Map<GraphObject, Integer> labels : map(sourceSets, set -> new BFS(set, null, direction, limit).run())) {
+			for(GraphObject go : labels.keySet())
+				reached.merge(go, 1, Integer::sum);
+		}
+		Set<Node> target = new HashSet<>();
+		for(Map.Entry<GraphObject, Integer> e : reached.entrySet()) {
+			if(e.getValue() == sourceSets.size() && e.getKey() instanceof Node)
+				target.add((Node) e.getKey());
+		}
+		if(target.isEmpty())
+			return Collections.emptySet();
+		Set<Node> source = new HashSet<>();
+		for(Set<Node> set : sourceSets)
+			source.addAll(set);
+		PathsFromToQuery query = (direction == Direction.DOWNSTREAM)
+			? new PathsFromToQuery(source, target, LimitType.NORMAL, limit, true)
+			: new PathsFromToQuery(target, source, LimitType.NORMAL, limit, true);
+		return view.result(query.run());
+	}
+
+	/*
+	 * Query graph view over the index, with the query filters applied
+	 * (a node is not there when its BioPAX object does not pass the filters).
+	 * There is one node (edge) object per index node (edge) in a view, for the paxtools algorithms
+	 * compare them by reference too. One per query; can be used by several threads (traversals) at once.
+	 */
+	final class View implements Graph {
+		private final Filter[] filters;
+		private final AtomicLongArray checked; //filter results cache, bit per node
+		private final AtomicLongArray passed;
+		private final AtomicLongArray upInited; //nodes whose upstream (downstream) has been visited
+		private final AtomicLongArray downInited;
+		private final Map<Integer, IndexNode> nodes = new ConcurrentHashMap<>();
+		private final Map<Integer, IndexEdge> edges = new ConcurrentHashMap<>();
+
+		private View(Filter[] filters) {
+			this.filters = (filters != null) ? filters : new Filter[0];
+			int words = (this.filters.length > 0) ? (elements.length + 63) / 64 : 0;
+			this.checked = new AtomicLongArray(words);
+			this.passed = new AtomicLongArray(words);
+			this.upInited = new AtomicLongArray((elements.length + 63) / 64);
+			this.downInited = new AtomicLongArray((elements.length + 63) / 64);
+		}
+
+		boolean allowed(int n) {
+			if(filters.length == 0)
+				return true;
+			final int word = n >>> 6;
+			final long bit = 1L << n;
+			if((checked.get(word) & bit) == 0) {
+				final Level3Element e = (Level3Element) elements[n];
+				final boolean ok = Arrays.stream(filters).allMatch(f -> f.okToTraverse(e));
+				if(ok)
+					setBit(passed, word, bit);
+				setBit(checked, word, bit); //after 'passed'
+				return ok;
+			}
+			return (passed.get(word) & bit) != 0;
+		}
+
+		// whether paxtools would have made the edge by now (see the class doc)
+		private boolean made(int e) {
+			return (bySource.get(e) && isSet(downInited, edgeSources[e]))
+				|| (byTarget.get(e) && isSet(upInited, outTargets[e]));
+		}
+
+		private boolean isSet(AtomicLongArray bits, int n) {
+			return (bits.get(n >>> 6) & (1L << n)) != 0;
+		}
+
+		private void setBit(AtomicLongArray bits, int word, long bit) {
+			long w;
+			do {
+				w = bits.get(word);
+			} while((w & bit) == 0 && !bits.compareAndSet(word, w, w | bit));
+		}
+
+		// the seed group's nodes (see QueryExecuter.prepareSingleNodeSet; it may change the set, so a copy is used)
+		Set<Node> nodeSet(Set<BioPAXElement> group) {
+			return QueryExecuter.prepareSingleNodeSet(new HashSet<>(group), this);
+		}
+
+		// per group of seed elements, distinct non-empty node sets (see QueryExecuter.prepareNodeSetsFromSets)
+		List<Set<Node>> nodeSets(Set<Set<BioPAXElement>> sources) {
+			Set<Set<Node>> sets = new LinkedHashSet<>();
+			for(Set<Node> nodes : map(new ArrayList<>(sources), this::nodeSet)) {
+				if(!nodes.isEmpty())
+					sets.add(nodes);
+			}
+			return new ArrayList<>(sets);
+		}
+
+		// maps the result nodes back to the BioPAX elements; removes disconnected simple entities
+		// (same as the QueryExecuter does)
+		Set<BioPAXElement> result(Set<GraphObject> result) {
+			Set<BioPAXElement> set = new HashSet<>();
+			for(Object o : getWrappedSet(result))
+				set.add((BioPAXElement) o);
+			set.removeIf(e -> e instanceof SimplePhysicalEntity && isDisconnected((SimplePhysicalEntity) e, set));
+			return set;
+		}
+
+		private boolean isDisconnected(SimplePhysicalEntity spe, Set<BioPAXElement> set) {
+			return spe.getParticipantOf().stream().noneMatch(set::contains)
+				&& spe.getComponentOf().stream().noneMatch(set::contains)
+				&& spe.getMemberPhysicalEntityOf().stream().noneMatch(set::contains)
+				&& spe.getMemberPhysicalEntity().stream().noneMatch(set::contains);
+		}
+
+		@Override
+		public GraphObject getGraphObject(Object o) {
+			if(!(o instanceof BioPAXElement))
+				return null;
+			final String uri = ((BioPAXElement) o).getUri();
+			int lo = 0;
+			int hi = byUri.length - 1;
+			while(lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int c = elements[byUri[mid]].getUri().compareTo(uri);
+				if(c < 0)
+					lo = mid + 1;
+				else if(c > 0)
+					hi = mid - 1;
+				else
+					return (allowed(byUri[mid])) ? node(byUri[mid]) : null;
+			}
+			return null;
+		}
+
+		private IndexNode node(int id) {
+			return nodes.computeIfAbsent(id, IndexNode::new);
+		}
+
+		private IndexEdge edge(int id) {
+			return edges.computeIfAbsent(id, IndexEdge::new);
+		}
+
+		@Override
+		public Set<Node> getWrapperSet(Set<?> objects) {
+			Set<Node> nodes = new HashSet<>();
+			for(Object o : objects) {
+				Node n = (Node) getGraphObject(o);
+				if(n != null)
+					nodes.add(n);
+			}
+			return nodes;
+		}
+
+		@Override
+		public Map<Object, Node> getWrapperMap(Set<?> objects) {
+			Map<Object, Node> map = new HashMap<>();
+			for(Object o : objects) {
+				Node n = (Node) getGraphObject(o);
+				if(n != null)
+					map.put(o, n);
+			}
+			return map;
+		}
+
+		@Override
+		public Set<Object> getWrappedSet(Set<? extends GraphObject> objects) {
+			Set<Object> set = new HashSet<>();
+			for(GraphObject go : objects) {
+				if(go instanceof IndexNode)
+					set.add(elements[((IndexNode) go).id]);
+			}
+			return set;
+		}
+
+		@Override
+		public void clear() {
+		}
+
+		private final class IndexNode implements Node {
+			private final int id;
+
+			private IndexNode(int id) {
+				this.id = id;
+			}
+
+			@Override
+			public Collection<Edge> getUpstream() {
+				setBit(upInited, id >>> 6, 1L << id);
+				List<Edge> upstream = new ArrayList<>(inOffsets[id + 1] - inOffsets[id]);
+				for(int i = inOffsets[id]; i < inOffsets[id + 1]; i++) {
+					if(allowed(edgeSources[inEdges[i]]) && made(inEdges[i]))
+						upstream.add(edge(inEdges[i]));
+				}
+				return upstream;
+			}
+
+			@Override
+			public Collection<Edge> getDownstream() {
+				setBit(downInited, id >>> 6, 1L << id);
+				List<Edge> downstream = new ArrayList<>(outOffsets[id + 1] - outOffsets[id]);
+				for(int e = outOffsets[id]; e < outOffsets[id + 1]; e++) {
+					if(allowed(outTargets[e]) && made(e))
+						downstream.add(edge(e));
+				}
+				return downstream;
+			}
+
+			@Override
+			public Collection<Node> getUpperEquivalent() {
+				return equivalents(upper, upperOffsets[id], upperOffsets[id + 1]);
+			}
+
+			@Override
+			public Collection<Node> getLowerEquivalent() {
+				return equivalents(lower, lowerOffsets[id], lowerOffsets[id + 1]);
+			}
+
+			private Collection<Node> equivalents(int[] targets, int from, int to) {
+				if(from == to)
+					return Collections.emptySet();
+				List<Node> equivalents = new ArrayList<>(to - from);
+				for(int i = from; i < to; i++) {
+					if(allowed(targets[i]))
+						equivalents.add(node(targets[i]));
+				}
+				return equivalents;
+			}
+
+			@Override
+			public boolean isBreadthNode() {
+				return breadth.get(id);
+			}
+
+			@Override
+			public int getSign() {
+				return signs[id];
+			}
+
+			@Override
+			public boolean isUbique() {
+				return ubique.get(id);
+			}
+
+			@Override
+			public boolean isTranscription() {
+				return transcription.get(id);
+			}
+
+			@Override
+			public void init() {
+			}
+
+			@Override
+			public Graph getGraph() {
+				return View.this;
+			}
+
+			@Override
+			public String getKey() {
+				return elements[id].getUri() + "|" + id;
+			}
+
+			@Override
+			public void clear() {
+			}
+
+			@Override
+			public int hashCode() {
+				return id;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				return o instanceof IndexNode && ((IndexNode) o).id == id;
+			}
+
+			@Override
+			public String toString() {
+				return getKey();
+			}
+		}
+
+		private final class IndexEdge implements Edge {
+			private final int id;
+
+			private IndexEdge(int id) {
+				this.id = id;
+			}
+
+			@Override
+			public Node getTargetNode() {
+				return node(outTargets[id]);
+			}
+
+			@Override
+			public Node getSourceNode() {
+				return node(edgeSources[id]);
+			}
+
+			@Override
+			public int getSign() {
+				return edgeSigns[id];
+			}
+
+			@Override
+			public boolean isTranscription() {
+				return edgeTranscription.get(id);
+			}
+
+			@Override
+			public Graph getGraph() {
+				return View.this;
+			}
+
+			@Override
+			public String getKey() {
+				return edgeSources[id] + "->" + outTargets[id];
+			}
+
+			@Override
+			public void clear() {
+			}
+
+			@Override
+			public int hashCode() {
+				return id;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				return o instanceof IndexEdge && ((IndexEdge) o).id == id;
+			}
+
+			@Override
+			public String toString() {
+				return getKey();
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package cpath.service;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+
+/**
+ * In-memory identifier (the 'xrefid' index field terms) to BioPAX elements lookup,
+ * for mapping many graph query seeds at once without parsing/running a search query per ID.
+ *
+ * The terms are in an FST, which output is the term's number; the term's elements
+ * are in the compact (CSR) arrays: element numbers of term t are
+ * at targets[offsets[t]] .. targets[offsets[t+1]-1] (element number - the top-level doc id).
+ *
+ * @author rodche
+ */
+final class IdIndex {
+
+	private final FST<Long> fst; //id -> term no.
+	private final int[] offsets; //term no. -> start in targets
+	private final int[] targets; //doc ids
+	private final BioPAXElement[] elements; //doc id -> BioPAX object
+
+	/**
+	 * Builds the lookup from the index (a point-in-time reader)
+	 * and the model that was indexed.
+	 *
+	 * @param reader index reader
+	 * @param model BioPAX model
+	 * @throws IOException when cannot read the index
+	 */
+	IdIndex(IndexReader reader, Model model) throws IOException {
+		//doc id -> BioPAX object (via the URI doc values)
+		elements = new BioPAXElement[reader.maxDoc()];
+		for(LeafReaderContext leaf : reader.leaves()) {
+			SortedDocValues uris = DocValues.getSorted(leaf.reader(), SearchEngine.FIELD_URI);
+			for(int doc = uris.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = uris.nextDoc()) {
+				elements[leaf.docBase + doc] = model.getByID(uris.binaryValue().utf8ToString());
+			}
+		}
+
+		final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+		final IntsRefBuilder scratch = new IntsRefBuilder();
+		final Bits liveDocs = MultiFields.getLiveDocs(reader);
+		int[] offs = new int[1024];
+		int[] docs = new int[1024];
+		int numTerms = 0;
+		int numDocs = 0;
+		Terms terms = MultiFields.getTerms(reader, SearchEngine.FIELD_XREFID);
+		if(terms != null) {
+			TermsEnum termsEnum = terms.iterator(); //sorted
+			PostingsEnum postings = null;
+			for(BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+				final int start = numDocs;
+				postings = termsEnum.postings(postings, PostingsEnum.NONE);
+				for(int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+					if((liveDocs == null || liveDocs.get(doc)) && elements[doc] != null) {
+						if(numDocs == docs.length)
+							docs = Arrays.copyOf(docs, 2 * docs.length);
+						docs[numDocs++] = doc;
+					}
+				}
+				if(numDocs > start) {
+					if(numTerms + 1 == offs.length)
+						offs = Arrays.copyOf(offs, 2 * offs.length);
+					offs[numTerms] = start;
+					builder.add(Util.toIntsRef(term, scratch), (long) numTerms);
+					numTerms++;
+				}
+			}
+		}
+		offs[numTerms] = numDocs;
+		fst = builder.finish(); //null if there are no terms
+		offsets = Arrays.copyOf(offs, numTerms + 1);
+		targets = Arrays.copyOf(docs, numDocs);
+	}
+
+	/**
+	 * Finds the BioPAX elements by identifiers
+	 * (exact match of a standard ID, such as HGNC symbol, UniProt, ChEBI ID, or its lowercase form).
+	 *
+	 * @param ids identifiers
+	 * @param types BioPAX types (and sub-types) to keep; if empty - all
+	 * @return URIs by ID (only for the IDs that matched)
+	 * @throws IOException when the FST lookup fails
+	 */
+	Map<String, Set<String>> resolve(Collection<String> ids, Collection<Class<? extends BioPAXElement>> types)
+		throws IOException
+	{
+		final Map<String, Set<String>> result = new HashMap<>();
+		if(fst == null)
+			return result;
+
+		for(String id : ids) {
+			if(id == null || result.containsKey(id))
+				continue;
+			Long t = Util.get(fst, new BytesRef(id));
+			if(t == null)
+				continue;
+			final Set<String> uris = new TreeSet<>();
+			for(int i = offsets[t.intValue()]; i < offsets[t.intValue() + 1]; i++) {
+				BioPAXElement e = elements[targets[i]];
+				if(types.isEmpty() || types.stream().anyMatch(type -> type.isInstance(e)))
+					uris.add(e.getUri());
+			}
+			if(!uris.isEmpty())
+				result.put(id, uris);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,487 @@
+package cpath.service;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import org.biopax.paxtools.controller.Fetcher;
+import org.biopax.paxtools.controller.ModelUtils;
+import org.biopax.paxtools.controller.ObjectPropertyEditor;
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.biopax.paxtools.model.level3.Process;
+
+/**
+ * Parent pathways and data sources of every Entity and EntityReference in a model,
+ * computed once for the entire model (for the full-text indexer) -
+ * same sets as ModelUtils.getParentPathways and ModelUtils.getDatasources return,
+ * which would otherwise walk up the model graph again for each element.
+ *
+ * Pathway membership is propagated top-down: from each pathway,
+ * once, to all the elements it contains (via pathway components, steps,
+ * interaction participants, complex components, members, entity references).
+ * The results are stored as int (pathway, provenance) ids per element row.
+ *
+ * Also counts child processes and participants of each Process and Complex -
+ * same numbers as Fetcher.fetch(bpe, Process.class) etc. get (Fetcher.nextStepFilter) -
+ * memoizing the child elements of each (strongly connected) set of elements,
+ * so that nested complexes, interactions, sub-pathways are not traversed again from every parent.
+ *
+ * For a small part of a large model (e.g., to update the index for one data source),
+ * the values can be computed for the given elements only, using ModelUtils
+ * for the parent pathways and data sources.
+ *
+ * @author rodche
+ */
+final class InferredValues {
+
+	private final Map<BioPAXElement, Integer> rows; //element -> row no.
+	private final Pathway[] pathways; //by pathway id
+	private final Provenance[] provenances; //by provenance id
+	private final int[][] pathwaysOf; //row -> pathway ids
+	private final int[][] datasourcesOf; //row -> provenance ids
+	private final int[] numProcesses; //row -> no. child processes
+	private final int[] numParticipants; //row -> no. child physical entities and genes
+
+	/**
+	 * Computes the parent pathways, data sources, no. child processes and participants
+	 * of all the Entity and EntityReference objects in the model.
+	 *
+	 * @param model BioPAX model
+	 * @param skipSubPathways whether not to count child elements of sub-pathways
+	 *                        (as when using {@link Fetcher#setSkipSubPathways(boolean)})
+	 */
+	InferredValues(Model model, boolean skipSubPathways) {
+		rows = new IdentityHashMap<>();
+		List<BioPAXElement> elements = new ArrayList<>();
+		for(BioPAXElement e : model.getObjects()) {
+			if(e instanceof Entity || e instanceof EntityReference || e instanceof PathwayStep) {
+				rows.put(e, elements.size());
+				elements.add(e);
+			}
+		}
+		pathways = model.getObjects(Pathway.class).toArray(new Pathway[0]);
+		provenances = model.getObjects(Provenance.class).toArray(new Provenance[0]);
+		pathwaysOf = new int[elements.size()][];
+		datasourcesOf = new int[elements.size()][];
+		numProcesses = new int[elements.size()];
+		numParticipants = new int[elements.size()];
+
+		inferPathways();
+		inferDatasources(elements);
+		new ChildCounter(skipSubPathways).count(elements);
+	}
+
+	/**
+	 * Computes the parent pathways, data sources, no. child processes and participants
+	 * of the given Entity and EntityReference objects only (walking up the model graph from each
+	 * for the parent pathways and data sources, and down - for the child elements).
+	 *
+	 * @param objects some of the model's objects (other than Entity and EntityReference are ignored)
+	 * @param skipSubPathways whether not to count child elements of sub-pathways
+	 */
+	InferredValues(Collection<? extends BioPAXElement> objects, boolean skipSubPathways) {
+		rows = new IdentityHashMap<>();
+		List<BioPAXElement> elements = new ArrayList<>();
+		for(BioPAXElement e : objects) {
+			if((e instanceof Entity || e instanceof EntityReference) && !rows.containsKey(e)) {
+				rows.put(e, elements.size());
+				elements.add(e);
+			}
+		}
+		pathwaysOf = new int[elements.size()][];
+		datasourcesOf = new int[elements.size()][];
+		numProcesses = new int[elements.size()];
+		numParticipants = new int[elements.size()];
+
+		final Map<BioPAXElement, Integer> pathwayIds = new IdentityHashMap<>();
+		final Map<BioPAXElement, Integer> provenanceIds = new IdentityHashMap<>();
+		for(int row = 0; row < elements.size(); row++) {
+			pathwaysOf[row] = ids(ModelUtils.getParentPathways(elements.get(row)), pathwayIds);
+			datasourcesOf[row] = ids(ModelUtils.getDatasources(elements.get(row)), provenanceIds);
+		}
+		pathways = new Pathway[pathwayIds.size()];
+		pathwayIds.forEach((p, id) -> pathways[id] = (Pathway) p);
+		provenances = new Provenance[provenanceIds.size()];
+		provenanceIds.forEach((p, id) -> provenances[id] = (Provenance) p);
+
+		new ChildCounter(skipSubPathways).count(elements);
+	}
+
+	private static int[] ids(Collection<? extends BioPAXElement> elements, Map<BioPAXElement, Integer> ids) {
+		int[] a = new int[elements.size()];
+		int i = 0;
+		for(BioPAXElement e : elements)
+			a[i++] = ids.computeIfAbsent(e, k -> ids.size());
+		return a;
+	}
+
+	/**
+	 * Parent pathways of the element (incl. itself if it's a pathway).
+	 *
+	 * @param element Entity or EntityReference
+	 * @return pathways
+	 */
+	List<Pathway> getParentPathways(BioPAXElement element) {
+		Integer row = rows.get(element);
+		List<Pathway> list = new ArrayList<>();
+		if(row != null && pathwaysOf[row] != null) {
+			for(int id : pathwaysOf[row])
+				list.add(pathways[id]);
+		}
+		return list;
+	}
+
+	/**
+	 * Data sources of the element (Provenance itself, an entity's dataSource,
+	 * or all data sources of the entities that refer to the entity reference).
+	 *
+	 * @param element Provenance, Entity or EntityReference
+	 * @return data sources
+	 */
+	List<Provenance> getDatasources(BioPAXElement element) {
+		if(element instanceof Provenance)
+			return Collections.singletonList((Provenance) element);
+		Integer row = rows.get(element);
+		List<Provenance> list = new ArrayList<>();
+		if(row != null && datasourcesOf[row] != null) {
+			for(int id : datasourcesOf[row])
+				list.add(provenances[id]);
+		}
+		return list;
+	}
+
+	/**
+	 * No. child processes (interactions, pathways) of a process.
+	 *
+	 * @param element Process
+	 * @return the number or 0
+	 */
+	int getNumProcesses(BioPAXElement element) {
+		Integer row = rows.get(element);
+		return (row != null) ? numProcesses[row] : 0;
+	}
+
+	/**
+	 * No. child participants - physical entities and genes of a process,
+	 * or physical entities of a complex.
+	 *
+	 * @param element Process or Complex
+	 * @return the number or 0
+	 */
+	int getNumParticipants(BioPAXElement element) {
+		Integer row = rows.get(element);
+		return (row != null) ? numParticipants[row] : 0;
+	}
+
+	private void inferPathways() {
+		final int[] sizes = new int[pathwaysOf.length];
+		final int[] visitedBy = new int[pathwaysOf.length]; //last pathway id (+1) that reached the row
+		final Deque<BioPAXElement> queue = new ArrayDeque<>();
+
+		for(int id = 0; id < pathways.length; id++) {
+			final int mark = id + 1;
+			queue.add(pathways[id]);
+			visitedBy[rows.get(pathways[id])] = mark;
+			while(!queue.isEmpty()) {
+				BioPAXElement e = queue.poll();
+				int row = rows.get(e);
+				if(!(e instanceof PathwayStep)) {
+					int[] ids = pathwaysOf[row];
+					if(ids == null)
+						pathwaysOf[row] = ids = new int[2];
+					else if(sizes[row] == ids.length)
+						pathwaysOf[row] = ids = Arrays.copyOf(ids, 2 * ids.length);
+					ids[sizes[row]++] = id;
+				}
+				children(e, child -> {
+					Integer r = rows.get(child);
+					if(r != null && visitedBy[r] != mark) {
+						visitedBy[r] = mark;
+						queue.add(child);
+					}
+				});
+			}
+		}
+
+		for(int row = 0; row < pathwaysOf.length; row++) {
+			if(pathwaysOf[row] != null && sizes[row] < pathwaysOf[row].length)
+				pathwaysOf[row] = Arrays.copyOf(pathwaysOf[row], sizes[row]);
+		}
+	}
+
+	/*
+	 * Passes the element's child elements that can have the same parent pathways
+	 * (i.e., those, from which ModelUtils.getParentPathways walks up to this element).
+	 */
+	private static void children(BioPAXElement e, Consumer<BioPAXElement> action) {
+		if(e instanceof Pathway) {
+			((Pathway) e).getPathwayComponent().forEach(action);
+			((Pathway) e).getPathwayOrder().forEach(action);
+		} else if(e instanceof Interaction) {
+			((Interaction) e).getParticipant().forEach(action);
+		} else if(e instanceof PathwayStep) {
+			((PathwayStep) e).getStepProcess().forEach(action);
+		} else if(e instanceof PhysicalEntity) {
+			((PhysicalEntity) e).getMemberPhysicalEntity().forEach(action);
+			if(e instanceof Complex)
+				((Complex) e).getComponent().forEach(action);
+			if(e instanceof SimplePhysicalEntity && ((SimplePhysicalEntity) e).getEntityReference() != null)
+				action.accept(((SimplePhysicalEntity) e).getEntityReference());
+		} else if(e instanceof EntityReference) {
+			((EntityReference) e).getMemberEntityReference().forEach(action);
+		}
+	}
+
+	private void inferDatasources(List<BioPAXElement> elements) {
+		final Map<Provenance, Integer> ids = new IdentityHashMap<>();
+		for(int id = 0; id < provenances.length; id++)
+			ids.put(provenances[id], id);
+
+		//entities first (entity references depend on them)
+		for(int row = 0; row < elements.size(); row++) {
+			BioPAXElement e = elements.get(row);
+			if(e instanceof Entity) {
+				Set<Provenance> ds = ((Entity) e).getDataSource();
+				int[] a = new int[ds.size()];
+				int i = 0;
+				for(Provenance p : ds)
+					a[i++] = ids.get(p);
+				datasourcesOf[row] = a;
+			}
+		}
+		for(int row = 0; row < elements.size(); row++) {
+			BioPAXElement e = elements.get(row);
+			if(e instanceof EntityReference)
+				datasourcesOf(row, (EntityReference) e);
+		}
+	}
+
+	//data sources of the entities that use this ER or any ER that has this one as a member
+	//(iterative, parents first; an ER in progress has none yet, which breaks cycles)
+	private void datasourcesOf(int row, EntityReference er) {
+		if(datasourcesOf[row] != null)
+			return;
+		final Deque<EntityReference> stack = new ArrayDeque<>();
+		final Deque<Iterator<EntityReference>> parents = new ArrayDeque<>();
+		datasourcesOf[row] = EMPTY; //in progress
+		stack.push(er);
+		parents.push(er.getMemberEntityReferenceOf().iterator());
+		while(!stack.isEmpty()) {
+			Iterator<EntityReference> it = parents.peek();
+			if(it.hasNext()) {
+				EntityReference parent = it.next();
+				int r = rows.get(parent);
+				if(datasourcesOf[r] == null) {
+					datasourcesOf[r] = EMPTY;
+					stack.push(parent);
+					parents.push(parent.getMemberEntityReferenceOf().iterator());
+				}
+			} else {
+				parents.pop();
+				EntityReference e = stack.pop();
+				BitSet bits = new BitSet(provenances.length);
+				for(SimplePhysicalEntity spe : e.getEntityReferenceOf()) {
+					for(int id : datasourcesOf[rows.get(spe)])
+						bits.set(id);
+				}
+				for(EntityReference parent : e.getMemberEntityReferenceOf()) {
+					for(int id : datasourcesOf[rows.get(parent)])
+						bits.set(id);
+				}
+				datasourcesOf[rows.get(e)] = bits.stream().toArray();
+			}
+		}
+	}
+
+	/*
+	 * Finds child elements (only the counted ones: processes, physical entities and genes)
+	 * of every element reachable via object properties, except for 'nextStep', from
+	 * the processes and complexes (Tarjan's algorithm; all elements in a cycle share the same children).
+	 * Sub-pathways are not expanded when skipSubPathways is true (except for the one being counted).
+	 */
+	private final class ChildCounter {
+		private final boolean skipSubPathways;
+		private final Map<BioPAXElement, Node> nodes = new IdentityHashMap<>();
+		private final List<Node> byIndex = new ArrayList<>();
+		private final Deque<Node> stack = new ArrayDeque<>();
+
+		ChildCounter(boolean skipSubPathways) {
+			this.skipSubPathways = skipSubPathways;
+		}
+
+		void count(List<BioPAXElement> elements) {
+			for(int row = 0; row < elements.size(); row++) {
+				BioPAXElement e = elements.get(row);
+				if(!(e instanceof Process || e instanceof Complex))
+					continue;
+
+				final int[] children;
+				if(skipSubPathways && e instanceof Pathway) {
+					//the pathway itself is expanded (but its sub-pathways are not)
+					List<Node> list = new ArrayList<>();
+					for(BioPAXElement c : children(e))
+						list.add(node(c));
+					children = union(list);
+				} else {
+					children = node(e).descendants;
+				}
+
+				int n = 0, m = 0;
+				for(int i : children) {
+					BioPAXElement c = byIndex.get(i).element;
+					if(c instanceof Process)
+						n++;
+					else if(c instanceof PhysicalEntity || (c instanceof Gene && e instanceof Process))
+						m++;
+				}
+				numProcesses[row] = n;
+				numParticipants[row] = m;
+			}
+		}
+
+		private Node node(BioPAXElement e) {
+			Node n = nodes.get(e);
+			return (n != null) ? n : strongConnect(e);
+		}
+
+		//iterative (a deep model, e.g., a long chain of nested complexes, must not overflow the thread stack)
+		private Node strongConnect(BioPAXElement e) {
+			final Node root = open(e);
+			final Deque<Frame> frames = new ArrayDeque<>();
+			frames.push(new Frame(root));
+			while(!frames.isEmpty()) {
+				Frame f = frames.peek();
+				Node n = f.node;
+				if(f.child != null) {
+					//back from the child's frame
+					n.low = Math.min(n.low, f.child.low);
+					n.children.add(f.child);
+					f.child = null;
+				}
+				if(f.next.hasNext()) {
+					BioPAXElement c = f.next.next();
+					Node m = nodes.get(c);
+					if(m == null) {
+						f.child = open(c);
+						frames.push(new Frame(f.child));
+					} else {
+						if(m.onStack)
+							n.low = Math.min(n.low, m.index);
+						n.children.add(m);
+					}
+				} else {
+					frames.pop();
+					if(n.low == n.index)
+						close(n);
+				}
+			}
+			return root;
+		}
+
+		private Node open(BioPAXElement e) {
+			final Node n = new Node(e, byIndex.size());
+			nodes.put(e, n);
+			byIndex.add(n);
+			stack.push(n);
+			n.onStack = true;
+			return n;
+		}
+
+		//n is the root of a strongly connected set of nodes
+		private void close(Node n) {
+			List<Node> members = new ArrayList<>();
+			Node m;
+			do {
+				m = stack.pop();
+				m.onStack = false;
+				members.add(m);
+			} while (m != n);
+			List<Node> children = new ArrayList<>();
+			for(Node member : members)
+				children.addAll(member.children);
+			int[] descendants = union(children);
+			for(Node member : members) {
+				member.descendants = descendants;
+				member.children = null; //not needed anymore
+			}
+		}
+
+		//a node being visited and its child elements left to visit
+		private final class Frame {
+			final Node node;
+			final Iterator<BioPAXElement> next;
+			Node child; //being visited
+
+			Frame(Node node) {
+				this.node = node;
+				this.next = (skipSubPathways && node.element instanceof Pathway)
+					? Collections.emptyIterator() : children(node.element).iterator();
+			}
+		}
+
+		//child nodes (if counted) and their descendants (except for those still in progress, i.e. in the same cycle)
+		private int[] union(List<Node> children) {
+			int size = 0;
+			for(Node c : children)
+				size += 1 + ((c.descendants != null) ? c.descendants.length : 0);
+			if(size == 0)
+				return EMPTY;
+			int[] a = new int[size];
+			size = 0;
+			for(Node c : children) {
+				if(counted(c.element))
+					a[size++] = c.index;
+				if(c.descendants != null) {
+					System.arraycopy(c.descendants, 0, a, size, c.descendants.length);
+					size += c.descendants.length;
+				}
+			}
+			Arrays.sort(a, 0, size);
+			int k = 0;
+			for(int i = 0; i < size; i++) {
+				if(k == 0 || a[i] != a[k - 1])
+					a[k++] = a[i];
+			}
+			return (k == 0) ? EMPTY : Arrays.copyOf(a, k);
+		}
+
+		private boolean counted(BioPAXElement e) {
+			return e instanceof Process || e instanceof PhysicalEntity || e instanceof Gene;
+		}
+
+		//same object properties the Fetcher traverses
+		@SuppressWarnings("unchecked")
+		private Collection<BioPAXElement> children(BioPAXElement e) {
+			List<BioPAXElement> list = new ArrayList<>();
+			for(PropertyEditor editor : SimpleEditorMap.L3.getEditorsOf(e)) {
+				if(editor instanceof ObjectPropertyEditor && Fetcher.nextStepFilter.filter(editor)) {
+					for(Object o : editor.getValueFromBean(e)) {
+						if(o instanceof BioPAXElement)
+							list.add((BioPAXElement) o);
+					}
+				}
+			}
+			return list;
+		}
+	}
+
+	private static final int[] EMPTY = new int[0];
+
+	private static final class Node {
+		final BioPAXElement element;
+		final int index;
+		int low;
+		boolean onStack;
+		List<Node> children = new ArrayList<>();
+		int[] descendants; //indices of counted child nodes (when done)
+
+		Node(BioPAXElement element, int index) {
+			this.element = element;
+			this.index = index;
+			this.low = index;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package cpath.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A simple thread-safe LRU cache, bounded by the number of entries
+ * or by their total weight (e.g., size of the cached collections),
+ * with the hit, miss and eviction counters.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ *
+ * @author rodche
+ */
+public final class LruCache<K, V> {
+
+	private final long maxWeight;
+	private final ToLongFunction<? super V> weigher;
+	private final Map<K, V> map; //access order
+	private long weight;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize max. number of entries (0 - caching is disabled)
+	 */
+	LruCache(int maxSize) {
+		this(maxSize, value -> 1);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxWeight max. total weight of the entries (0 - caching is disabled)
+	 * @param weigher the weight of a value (positive number)
+	 */
+	LruCache(long maxWeight, ToLongFunction<? super V> weigher) {
+		if(maxWeight < 0)
+			throw new IllegalArgumentException("maxWeight < 0");
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.map = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	V get(K key) {
+		V value;
+		synchronized (map) {
+			value = map.get(key);
+		}
+		if(value != null)
+			hits.increment();
+		else
+			misses.increment();
+		return value;
+	}
+
+	/*
+	 * Adds the entry (unless it alone weighs more than the max.)
+	 * and then evicts the least recently used ones while over the max. weight.
+	 */
+	void put(K key, V value) {
+		final long w = weigher.applyAsLong(value);
+		if(w > maxWeight)
+			return;
+		synchronized (map) {
+			V previous = map.put(key, value);
+			weight += (previous != null) ? w - weigher.applyAsLong(previous) : w;
+			for(Iterator<V> it = map.values().iterator(); weight > maxWeight && it.hasNext();) {
+				weight -= weigher.applyAsLong(it.next());
+				it.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	void clear() {
+		synchronized (map) {
+			map.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Max. total weight (the number of entries, if the values are not weighted).
+	 * @return
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public long getWeight() {
+		synchronized (map) {
+			return weight;
+		}
+	}
+
+	public int size() {
+		synchronized (map) {
+			return map.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Hits / (hits + misses) since the cache was created.
+	 * @return the hit ratio or 0 when there were no lookups
+	 */
+	public double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return (total > 0) ? (double) h / total : 0.0;
+	}
+
+	@Override
+	public String toString() {
+		return "size: " + size() + ", weight: " + getWeight() + " (max " + maxWeight + "), hits: "
+			+ getHitCount() + ", misses: " + getMissCount() + ", evictions: " + getEvictionCount();
+	}
+}
@@ -69,7 +69,15 @@ public final class Merger {
 		return mainModel;
 	}
 	
-	public void merge() {
+	/**
+	 * Builds (or loads previously built) by-datasource models
+	 * and merges them into the main BioPAX model, which is then saved.
+	 *
+	 * @return metadata of the data sources whose BioPAX models (archives) were rebuilt
+	 */
+	public Collection<Metadata> merge() {
+		Collection<Metadata> rebuilt = new ArrayList<>();
+
 		//using a SimpleMerger with Filter (ERs,Pathways) here (to merge ent. features, xrefs, comments;
 		//i.e., copy mul. cardinality obj. props of matching by uri elements
 		SimpleMerger simpleMerger = new SimpleMerger(SimpleEditorMap.L3, object -> true);
@@ -104,6 +112,7 @@ public final class Merger {
 
 				//export to the biopax archive in the batch downloads dir.
 				save(providerModel, metadata);
+				rebuilt.add(metadata);
 			} else {
 				log.warn("merge(), loaded previously created " + metadata.getIdentifier() +
 						" BioPAX model (delete it if you want to start over).");
@@ -122,6 +131,7 @@ public final class Merger {
 		save();
 		
 		log.info("Complete.");
+		return rebuilt;
 	}
 
 	//remove bad unif. and rel. xrefs
@@ -0,0 +1,347 @@
+package cpath.service;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import cpath.service.api.OutputFormat;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content-addressed on-disk cache of the converted query results
+ * (BioPAX, SIF, GSEA, SBGN, JSON-LD files), LRU-bounded by the total file size.
+ *
+ * A file name is the hash of the result object URIs (sorted), format, format options and the data version.
+ * Files are written to a temporary file in the same directory and then atomically renamed,
+ * so that a reader never sees incomplete data; an evicted file that is already open
+ * can still be read to the end (POSIX file systems).
+ * A file's gzipped copy (see {@link CPathUtils#gzipped(Path)}), if any, belongs to the same entry.
+ *
+ * The files returned by {@link #get(String)} and {@link #put(String, Path)} are pinned
+ * until {@link #release(String)}: an evicted pinned file is deleted later, by a next put,
+ * after it is released and the grace period is over (a servlet container's sendfile
+ * opens the file by name only after the controller has returned and released it).
+ *
+ * @author rodche
+ */
+public final class OutputCache {
+  private static final Logger log = LoggerFactory.getLogger(OutputCache.class);
+
+  private static final String TMP_PREFIX = ".tmp";
+  private static final long GRACE_MILLIS = 60000L;
+
+  private final Path dir;
+  private final long maxBytes;
+  private final String version;
+  private final Map<String, Long> files; //file name -> size; access order
+  private long bytes;
+  private final long graceMillis;
+  private final Map<String, Pin> pins = new HashMap<>(); //file name -> the file users (or recently released)
+  private final Set<String> evicted = new HashSet<>(); //pinned files to delete when released
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Constructor.
+   * Picks up the files cached before (the least recently used are evicted first)
+   * and deletes the incomplete ones.
+   *
+   * @param directory cache directory
+   * @param maxBytes max. total size of the files
+   * @param version data version (e.g., the main model's name, version and timestamp)
+   * @throws IOException when cannot list the directory
+   */
+  public OutputCache(String directory, long maxBytes, String version) throws IOException {
+    this(directory, maxBytes, version, GRACE_MILLIS);
+  }
+
+  OutputCache(String directory, long maxBytes, String version, long graceMillis) throws IOException {
+    this.dir = Paths.get(directory);
+    this.maxBytes = maxBytes;
+    this.version = version;
+    this.graceMillis = graceMillis;
+    this.files = new LinkedHashMap<>(16, 0.75f, true);
+
+    List<Path> paths;
+    try (Stream<Path> s = Files.list(dir)) {
+      paths = s.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    Map<Path, FileTime> times = new HashMap<>();
+    for(Path p : paths) {
+      String name = p.getFileName().toString();
+      if(name.startsWith(TMP_PREFIX)) {
+        Files.deleteIfExists(p);
+      } else if(name.endsWith(".gz")) {
+        if(!Files.exists(p.resolveSibling(name.substring(0, name.length() - 3))))
+          Files.deleteIfExists(p); //the data file was deleted
+      } else {
+        times.put(p, Files.getLastModifiedTime(p));
+      }
+    }
+    synchronized (files) {
+      times.keySet().stream().sorted(Comparator.comparing(times::get)).forEach(p -> {
+        try {
+          long size = size(p);
+          files.put(p.getFileName().toString(), size);
+          bytes += size;
+        } catch (IOException e) {
+          log.warn("OutputCache, skip " + p + ": " + e);
+        }
+      });
+      evict();
+    }
+    log.info("OutputCache, " + dir + ": " + this);
+  }
+
+  /**
+   * The cache key (file name) of the model converted to the format using the options.
+   *
+   * @param m result model
+   * @param format output format
+   * @param options format options
+   * @return the key
+   */
+  String key(Model m, OutputFormat format, Map<String, String> options) {
+    final MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    update(md, version);
+    update(md, format.name());
+    update(md, (options != null) ? new TreeMap<>(options).toString() : "");
+    update(md, m.getXmlBase());
+    update(md, m.getUri());
+    update(md, m.getName());
+    m.getObjects().stream().map(BioPAXElement::getUri).sorted().forEach(uri -> update(md, uri));
+    return String.format("%064x", new BigInteger(1, md.digest())) + format.getExt();
+  }
+
+  private static void update(MessageDigest md, String s) {
+    if(s != null)
+      md.update(s.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) '\n');
+  }
+
+  /**
+   * Gets and pins the cached file (then {@link #release(String)} it).
+   *
+   * @param key see {@link #key(Model, OutputFormat, Map)}
+   * @return the file path or null when not cached
+   */
+  Path get(String key) {
+    final Path p = dir.resolve(key);
+    boolean found;
+    synchronized (files) {
+      found = files.containsKey(key);
+      if(found && !Files.exists(p)) { //deleted by someone
+        bytes -= files.remove(key);
+        found = false;
+      }
+      if(found)
+        pin(key);
+    }
+    if(!found) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    touch(p); //the recently used ones survive restarts
+    return p;
+  }
+
+  // sets the last modified time using the same clock for new and recently used files
+  // (the file system's own timestamps can be a few ms behind)
+  private static void touch(Path p) {
+    try {
+      Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      log.debug("OutputCache, cannot touch " + p + ": " + e);
+    }
+  }
+
+  /**
+   * Creates a temporary file in the cache directory
+   * to write the converted data to (and then {@link #put(String, Path)}).
+   *
+   * @param format output format
+   * @return new empty file
+   * @throws IOException when cannot create the file
+   */
+  Path createTempFile(OutputFormat format) throws IOException {
+    return Files.createTempFile(dir, TMP_PREFIX, format.getExt());
+  }
+
+  /**
+   * Moves the file and its gzipped copy into the cache (unless these are larger than the cache),
+   * pins it (then {@link #release(String)} it) and evicts the least recently used files
+   * while over the max. total size.
+   *
+   * @param key see {@link #key(Model, OutputFormat, Map)}
+   * @param tmpFile complete data file created by {@link #createTempFile(OutputFormat)}
+   * @return the cached file path or null when the file was not cached (then it is not moved)
+   * @throws IOException when cannot move the file
+   */
+  Path put(String key, Path tmpFile) throws IOException {
+    final long size = size(tmpFile);
+    if(size > maxBytes)
+      return null;
+    final Path p = dir.resolve(key);
+    final Path gz = CPathUtils.gzipped(tmpFile);
+    if(Files.exists(gz)) //move it first, so that it's there as soon as the data file is
+      Files.move(gz, CPathUtils.gzipped(p), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    else
+      Files.deleteIfExists(CPathUtils.gzipped(p)); //a stale one
+    Files.move(tmpFile, p, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    touch(p);
+    synchronized (files) {
+      Long previous = files.put(key, size);
+      bytes += (previous != null) ? size - previous : size;
+      evicted.remove(key); //the same data again
+      pin(key);
+      evict();
+      purge();
+    }
+    return p;
+  }
+
+  /**
+   * Unpins the file got from {@link #get(String)} or {@link #put(String, Path)}.
+   *
+   * @param key see {@link #key(Model, OutputFormat, Map)}
+   */
+  void release(String key) {
+    synchronized (files) {
+      Pin pin = pins.get(key);
+      if(pin != null && pin.count > 0) {
+        pin.count--;
+        pin.released = System.currentTimeMillis();
+      }
+    }
+  }
+
+  private void pin(String key) {
+    pins.computeIfAbsent(key, k -> new Pin()).count++;
+  }
+
+  // whether the file is in use or was released within the grace period
+  private boolean isPinned(String key, long now) {
+    Pin pin = pins.get(key);
+    return pin != null && (pin.count > 0 || now - pin.released < graceMillis);
+  }
+
+  // deletes the evicted files that are no longer pinned and forgets the old released pins
+  private void purge() {
+    final long now = System.currentTimeMillis();
+    for(Iterator<String> it = evicted.iterator(); it.hasNext();) {
+      String key = it.next();
+      if(!isPinned(key, now)) {
+        delete(dir.resolve(key));
+        it.remove();
+      }
+    }
+    pins.keySet().removeIf(key -> !isPinned(key, now));
+  }
+
+  // removes the least recently used files while over the max. size
+  private void evict() {
+    final long now = System.currentTimeMillis();
+    for(Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator(); bytes > maxBytes && it.hasNext();) {
+      Map.Entry<String, Long> e = it.next();
+      remove(e.getKey(), now);
+      bytes -= e.getValue();
+      it.remove();
+      evictions.increment();
+    }
+  }
+
+  // deletes the file now or, if it's pinned, later
+  private void remove(String key, long now) {
+    if(isPinned(key, now))
+      evicted.add(key);
+    else
+      delete(dir.resolve(key));
+  }
+
+  // the file and its gzipped copy size
+  private static long size(Path p) throws IOException {
+    Path gz = CPathUtils.gzipped(p);
+    return Files.size(p) + (Files.exists(gz) ? Files.size(gz) : 0);
+  }
+
+  // deletes the file and its gzipped copy
+  private static void delete(Path p) {
+    try {
+      Files.deleteIfExists(p);
+      Files.deleteIfExists(CPathUtils.gzipped(p));
+    } catch (IOException e) {
+      log.warn("OutputCache, cannot delete " + p + ": " + e);
+    }
+  }
+
+  /**
+   * Deletes all the cached files (e.g., when the data has changed).
+   */
+  void clear() {
+    synchronized (files) {
+      final long now = System.currentTimeMillis();
+      files.keySet().forEach(key -> remove(key, now));
+      files.clear();
+      bytes = 0;
+      purge();
+    }
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getBytes() {
+    synchronized (files) {
+      return bytes;
+    }
+  }
+
+  public int size() {
+    synchronized (files) {
+      return files.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  // the number of the file users and when it was last released
+  private static final class Pin {
+    private int count;
+    private long released;
+  }
+
+  @Override
+  public String toString() {
+    return "files: " + size() + ", bytes: " + getBytes() + " (max " + maxBytes + "), hits: "
+      + getHitCount() + ", misses: " + getMissCount() + ", evictions: " + getEvictionCount();
+  }
+}
@@ -4,22 +4,37 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import cpath.service.api.Indexer;
 import cpath.service.api.Searcher;
+import cpath.service.jpa.Metadata;
 import org.apache.commons.collections.map.HashedMap;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.reverse.ReverseStringFilter;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
@@ -28,9 +43,13 @@ import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.highlight.*;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.biopax.paxtools.controller.*;
 import org.biopax.paxtools.model.BioPAXElement;
 import org.biopax.paxtools.model.Model;
@@ -40,6 +59,8 @@ import org.biopax.paxtools.util.ClassFilterSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cpath.service.jaxb.Facet;
+import cpath.service.jaxb.FacetValue;
 import cpath.service.jaxb.SearchHit;
 import cpath.service.jaxb.SearchResponse;
 
@@ -63,11 +84,13 @@ public class SearchEngine implements Indexer, Searcher {
 	public static final String FIELD_N_PROCESSES = "processes"; // is same as 'size' used to be before cPath2 v7
 
 	// Full-text search/filter fields (case sensitive) -
-	//index organism names, cell/tissue type (term), taxonomy id, but only store BioSource URIs	
+	//index organism names, cell/tissue type (term), taxonomy id, but only keep BioSource URIs (doc values)	
 	public static final String FIELD_ORGANISM = "organism";
-	//index data source names, but only URIs are stored in the index
+	//index data source names, but only URIs are kept in the doc values
 	public static final String FIELD_DATASOURCE = "datasource";
 	public static final String FIELD_TYPE = "type";
+	//auto-completion entries (to re-build the suggester from the index)
+	static final String FIELD_SUGGEST = "suggest";
 	
 	//Default fields to use with the MultiFieldQueryParser;
 	//one can still search in other fields directly, like - pathway:some_keywords datasource:"pid"
@@ -78,13 +101,70 @@ public class SearchEngine implements Indexer, Searcher {
 			FIELD_NAME
 	};
 
+	//companion fields that have the reversed terms (tokens) of the field:
+	//leading wildcard queries (e.g., *ase) are run on these as prefix queries (esa*)
+	final static Map<String, String> REVERSED_FIELDS;
+	static {
+		Map<String, String> fields = new HashMap<>();
+		fields.put(FIELD_KEYWORD, "keyword_reversed");
+		fields.put(FIELD_NAME, "name_reversed");
+		fields.put(FIELD_XREFID, "xrefid_reversed");
+		REVERSED_FIELDS = Collections.unmodifiableMap(fields);
+	}
+
 	private final Model model;
 	private int maxHitsPerPage;
 	private final Analyzer analyzer;
 	private final Path indexFile;
-	private SearcherManager searcherManager;
+	private volatile SearcherManager searcherManager; //replaced when the index is re-built
+	private int indexThreads;
+	private int indexMaxSegments;
+	private boolean indexCompoundFiles;
+	private volatile ExecutorService searchExecutor; //null - search the segments sequentially
+	private long excerptTimeLimit;
+	private long searchTimeLimit;
+	private long searchMaxVisits;
+	private volatile Suggester suggester;
+	private volatile IdIndex idIndex; //built on first use (for the current index)
+	private final LRUQueryCache queryCache;
+	private final QueryCachingPolicy queryCachingPolicy;
+	private final Map<Class<? extends BioPAXElement>, Query> typeQueries;
+	private volatile LruCache<String, Query> parsedQueries;
+	private volatile LruCache<List<Object>, SearchResponse> searchResults;
 
 	public final static int DEFAULT_MAX_HITS_PER_PAGE = 100;
+	public final static int DEFAULT_QUERY_CACHE_SIZE = 1000;
+	public final static int DEFAULT_QUERY_CACHE_RAM_MB = 64;
+	public final static long DEFAULT_EXCERPT_TIME_LIMIT_MS = 200;
+	public final static int DEFAULT_SEARCH_CACHE_SIZE = 1000;
+	public final static long DEFAULT_SEARCH_TIME_LIMIT_MS = 5000;
+	public final static int DEFAULT_INDEX_MAX_SEGMENTS = 1;
+	//no. objects per indexing task (and IndexWriter.addDocuments call)
+	final static int INDEX_BATCH_SIZE = 500;
+	//no. hits to highlight at once (the time limit is checked between the batches)
+	final static int EXCERPT_BATCH_SIZE = 10;
+	final static int EXCERPT_MAX_PASSAGES = 3;
+	final static int MAX_SUGGESTIONS = 10;
+
+	//'keyword' field: analyzed, stored and with offsets in the postings - for the UnifiedHighlighter
+	final static FieldType KEYWORD_FIELD_TYPE = new FieldType(TextField.TYPE_STORED);
+	static {
+		KEYWORD_FIELD_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+		KEYWORD_FIELD_TYPE.freeze();
+	}
+
+	//reversed 'keyword' tokens: indexed only (no scoring needed for the prefix queries)
+	final static FieldType REVERSED_KEYWORD_FIELD_TYPE = new FieldType();
+	static {
+		REVERSED_KEYWORD_FIELD_TYPE.setIndexOptions(IndexOptions.DOCS);
+		REVERSED_KEYWORD_FIELD_TYPE.setTokenized(true);
+		REVERSED_KEYWORD_FIELD_TYPE.setOmitNorms(true);
+		REVERSED_KEYWORD_FIELD_TYPE.freeze();
+	}
+
+	//types, for which the q=* (all objects of a type) doc id sets get cached as soon as the index is open
+	private final static List<Class<? extends BioPAXElement>> PRECACHED_TYPES = Arrays.asList(
+		Pathway.class, Interaction.class, Complex.class, PhysicalEntity.class, EntityReference.class);
 
 	/**
 	 * Constructor.
@@ -93,10 +173,33 @@ public class SearchEngine implements Indexer, Searcher {
 	 * @param indexLocation index directory location
 	 */
 	public SearchEngine(Model model, String indexLocation) {
+		this(model, indexLocation, DEFAULT_QUERY_CACHE_SIZE, DEFAULT_QUERY_CACHE_RAM_MB);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param model the BioPAX Model to index or search
+	 * @param indexLocation index directory location
+	 * @param queryCacheSize max number of filter queries to cache
+	 * @param queryCacheRamMb max RAM (MB) the cached filters may use
+	 */
+	public SearchEngine(Model model, String indexLocation, int queryCacheSize, int queryCacheRamMb) {
 		this.model = model;
 		this.indexFile = Paths.get(indexLocation);
+		//cache on all the segments (the index is built once and then read-only)
+		this.queryCache = new LRUQueryCache(queryCacheSize, queryCacheRamMb * 1024L * 1024L, leaf -> true);
+		this.queryCachingPolicy = new FilterCachingPolicy();
+		this.typeQueries = new ConcurrentHashMap<>();
+		this.parsedQueries = new LruCache<>(DEFAULT_SEARCH_CACHE_SIZE);
+		this.searchResults = new LruCache<>(DEFAULT_SEARCH_CACHE_SIZE);
 		initSearcherManager();
 		this.maxHitsPerPage = DEFAULT_MAX_HITS_PER_PAGE;
+		this.indexThreads = Runtime.getRuntime().availableProcessors();
+		this.indexMaxSegments = DEFAULT_INDEX_MAX_SEGMENTS;
+		this.excerptTimeLimit = DEFAULT_EXCERPT_TIME_LIMIT_MS;
+		this.searchTimeLimit = DEFAULT_SEARCH_TIME_LIMIT_MS;
+		this.searchMaxVisits = 0; //no limit
 
 		//refs issue #269
 		Map<String,Analyzer> analyzersPerField = new HashedMap();
@@ -104,25 +207,174 @@ public class SearchEngine implements Indexer, Searcher {
 		analyzersPerField.put(FIELD_XREFID, new KeywordAnalyzer());
 		analyzersPerField.put(FIELD_URI, new KeywordAnalyzer());
 		analyzersPerField.put(FIELD_PATHWAY, new KeywordAnalyzer());
+		analyzersPerField.put(REVERSED_FIELDS.get(FIELD_KEYWORD), new ReversedTokensAnalyzer());
 		this.analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(), analyzersPerField);
 	}
 
 	private void initSearcherManager() {
 		try {
 			if(Files.exists(indexFile))
-				this.searcherManager = 
-					new SearcherManager(MMapDirectory.open(indexFile), new SearcherFactory());
-			else 
+				openIndex();
+			else
 				LOG.info(indexFile + " does not exist.");
 		} catch (IOException e) {
 			LOG.warn("Could not create a searcher: " + e);
 		}
 	}
+
+	/*
+	 * Opens the index directory: a new searcher manager and suggester replace the current ones;
+	 * returns the previous searcher manager (or null), which the caller should close.
+	 */
+	private synchronized SearcherManager openIndex() throws IOException {
+		SearcherManager sm = new SearcherManager(MMapDirectory.open(indexFile), new CachingSearcherFactory());
+		sm.addListener(new ResultsCacheCleaner());
+		Suggester s = Suggester.load(indexFile.resolve(Suggester.FILE_NAME));
+		SearcherManager previous = searcherManager;
+		searcherManager = sm;
+		suggester = s;
+		idIndex = null;
+		searchResults.clear(); //the index is new (reader versions may repeat)
+		return previous;
+	}
+
+	/*
+	 * Gets a searcher from the current searcher manager;
+	 * retries if that's just been replaced and closed (see index()).
+	 */
+	private IndexSearcher acquire() throws IOException {
+		while(true) {
+			SearcherManager sm = searcherManager;
+			if(sm == null)
+				throw new IllegalStateException("There is no index: " + indexFile);
+			try {
+				return sm.acquire();
+			} catch (AlreadyClosedException e) {
+				if(sm == searcherManager)
+					throw e;
+			}
+		}
+	}
+
+	/*
+	 * Releases the searcher acquired from any (current or previous) searcher manager
+	 * (same as SearcherManager.release does); the old index reader gets closed
+	 * when its last searcher is released.
+	 */
+	private static void release(IndexSearcher searcher) {
+		try {
+			if(searcher != null)
+				searcher.getIndexReader().decRef();
+		} catch (IOException e) {
+			LOG.warn("Failed to release a searcher: " + e);
+		}
+	}
 	
 	public void setMaxHitsPerPage(int maxHitsPerPage) {
 		this.maxHitsPerPage = maxHitsPerPage;
 	}
 
+	/**
+	 * Sets the number of worker threads to build the index documents
+	 * (default is the number of available processors).
+	 * @param indexThreads no. threads
+	 */
+	public void setIndexThreads(int indexThreads) {
+		if(indexThreads < 1)
+			throw new IllegalArgumentException("indexThreads < 1");
+		this.indexThreads = indexThreads;
+	}
+
+	/**
+	 * Sets the max. number of segments to merge the new index into, when it's complete
+	 * (default - {@link #DEFAULT_INDEX_MAX_SEGMENTS}, fastest to search on a single thread;
+	 * a few segments make sense when the search threads are used).
+	 * @param indexMaxSegments no. segments (0 - do not merge)
+	 */
+	public void setIndexMaxSegments(int indexMaxSegments) {
+		if(indexMaxSegments < 0)
+			throw new IllegalArgumentException("indexMaxSegments < 0");
+		this.indexMaxSegments = indexMaxSegments;
+	}
+
+	/**
+	 * Whether to pack each index segment's files into a compound file
+	 * (fewer open files but slower to read; default is false).
+	 * @param indexCompoundFiles
+	 */
+	public void setIndexCompoundFiles(boolean indexCompoundFiles) {
+		this.indexCompoundFiles = indexCompoundFiles;
+	}
+
+	/**
+	 * Sets the number of threads to search the index segments in parallel
+	 * (default is 0 - one segment after another, on the request thread);
+	 * re-opens the index searcher.
+	 * @param searchThreads no. threads (0 or 1 - no parallel search)
+	 */
+	public synchronized void setSearchThreads(int searchThreads) {
+		if(searchThreads < 0)
+			throw new IllegalArgumentException("searchThreads < 0");
+		final ExecutorService previous = searchExecutor;
+		searchExecutor = (searchThreads > 1) ? Executors.newFixedThreadPool(searchThreads, r -> {
+			Thread t = new Thread(r, "search");
+			t.setDaemon(true);
+			return t;
+		}) : null;
+		try {
+			if(searcherManager != null)
+				openIndex().close(); //new searchers use the new executor
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to re-open the index searcher", e);
+		}
+		if(previous != null)
+			previous.shutdown();
+	}
+
+	/**
+	 * Sets the max. time to spend on making excerpts for one search response
+	 * (the hits that do not get highlighted in time go without excerpt).
+	 * @param excerptTimeLimit milliseconds
+	 */
+	public void setExcerptTimeLimit(long excerptTimeLimit) {
+		if(excerptTimeLimit < 0)
+			throw new IllegalArgumentException("excerptTimeLimit < 0");
+		this.excerptTimeLimit = excerptTimeLimit;
+	}
+
+	/**
+	 * Sets the max. time to spend on one search request, including the query terms expansion
+	 * (e.g., wildcards) and collecting the hits; when it's over, the hits found so far
+	 * are returned (marked as partial results).
+	 * @param searchTimeLimit milliseconds (0 - no limit)
+	 */
+	public void setSearchTimeLimit(long searchTimeLimit) {
+		if(searchTimeLimit < 0)
+			throw new IllegalArgumentException("searchTimeLimit < 0");
+		this.searchTimeLimit = searchTimeLimit;
+	}
+
+	/**
+	 * Sets the max. number of matching docs to visit per search request
+	 * (then, the hits found so far are returned, marked as partial results).
+	 * @param searchMaxVisits no. docs (0 - no limit)
+	 */
+	public void setSearchMaxVisits(long searchMaxVisits) {
+		if(searchMaxVisits < 0)
+			throw new IllegalArgumentException("searchMaxVisits < 0");
+		this.searchMaxVisits = searchMaxVisits;
+	}
+
+	/**
+	 * Sets the max. number of parsed queries and of search results pages to cache
+	 * (0 - do not cache); replaces the caches.
+	 * @param searchCacheSize max. no. entries in each cache
+	 */
+	public void setSearchCacheSize(int searchCacheSize) {
+		this.parsedQueries = new LruCache<>(searchCacheSize);
+		this.searchResults = new LruCache<>(searchCacheSize);
+	}
+
 	/**
 	 * The max no. hits to return per results page (pagination).
 	 * @return
@@ -131,13 +383,140 @@ public class SearchEngine implements Indexer, Searcher {
 		return maxHitsPerPage;
 	}
 
+	/**
+	 * The filter query cache shared by all the index searchers of this engine
+	 * (see its hit/miss counters, size, RAM used; published via JMX by {@link CacheMetrics}).
+	 * @return
+	 */
+	public LRUQueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * The search results pages cache (see its hit ratio, evictions);
+	 * it's cleared every time the index searcher is refreshed (metrics: {@link CacheMetrics}).
+	 * @return
+	 */
+	public LruCache<List<Object>, SearchResponse> getSearchResultsCache() {
+		return searchResults;
+	}
+
+	/**
+	 * The parsed user queries cache (see its hit ratio, evictions; metrics: {@link CacheMetrics}).
+	 * @return
+	 */
+	public LruCache<String, Query> getParsedQueriesCache() {
+		return parsedQueries;
+	}
+
+	/*
+	 * Drops the cached search results when the index searcher is refreshed
+	 * (those of the previous index reader version would not be used anyway).
+	 */
+	private final class ResultsCacheCleaner implements ReferenceManager.RefreshListener {
+		@Override
+		public void beforeRefresh() {
+		}
+
+		@Override
+		public void afterRefresh(boolean didRefresh) {
+			if(didRefresh)
+				searchResults.clear();
+		}
+	}
+
+	/*
+	 * Sets up the query cache (and the executor, if any) for every new searcher and
+	 * precomputes the doc id sets for the most used types (q=* queries).
+	 */
+	private final class CachingSearcherFactory extends SearcherFactory {
+		@Override
+		public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+			IndexSearcher searcher = new IndexSearcher(reader, searchExecutor);
+			searcher.setQueryCache(queryCache);
+			searcher.setQueryCachingPolicy(queryCachingPolicy);
+			for(Class<? extends BioPAXElement> type : PRECACHED_TYPES) {
+				searcher.count(typeQuery(type));
+			}
+			return searcher;
+		}
+	}
+
+	/*
+	 * Caches our type, datasource and organism filter clauses on first use
+	 * (the same few are in nearly every request);
+	 * other queries - only when the default usage tracking policy says so.
+	 */
+	private static final class FilterCachingPolicy implements QueryCachingPolicy {
+		private final QueryCachingPolicy defaultPolicy = new UsageTrackingQueryCachingPolicy();
+
+		@Override
+		public void onUse(Query query) {
+			defaultPolicy.onUse(query);
+		}
+
+		@Override
+		public boolean shouldCache(Query query) throws IOException {
+			return isFilter(query) || defaultPolicy.shouldCache(query);
+		}
+
+		private static boolean isFilter(Query query) {
+			if(query instanceof TermQuery) {
+				String field = ((TermQuery) query).getTerm().field();
+				return FIELD_TYPE.equals(field) || FIELD_DATASOURCE.equals(field) || FIELD_ORGANISM.equals(field);
+			} else if(query instanceof BooleanQuery) {
+				List<BooleanClause> clauses = ((BooleanQuery) query).clauses();
+				return !clauses.isEmpty() && clauses.stream().allMatch(c -> isFilter(c.getQuery()));
+			}
+			return false;
+		}
+	}
+
 	public SearchResponse search(String query, int page,
 			Class<? extends BioPAXElement> filterByType, String[] datasources,
 			String[] organisms) 
+	{
+		SearchResponse response = search(query, page, (ScoreDoc) null, filterByType, datasources, organisms, false, false);
+		response.setPageNo(page);
+		return response;
+	}
+
+	public SearchResponse searchAfter(String query, String cursor,
+			Class<? extends BioPAXElement> filterByType, String[] datasources,
+			String[] organisms)
+	{
+		return search(query, 0, decodeCursor(cursor), filterByType, datasources, organisms, false, false);
+	}
+
+	public SearchResponse search(String query, int page, String cursor,
+			Class<? extends BioPAXElement> filterByType, String[] datasources,
+			String[] organisms, boolean facets, boolean excerpt)
+	{
+		ScoreDoc after = decodeCursor(cursor);
+		SearchResponse response = search(query, page, after, filterByType, datasources, organisms, facets, excerpt);
+		if(after == null)
+			response.setPageNo(page);
+		return response;
+	}
+
+	/*
+	 * Gets the hits page either by number (re-collects all the top docs up to that page)
+	 * or, when 'after' is not null, the next page after that hit using IndexSearcher.searchAfter,
+	 * which costs the same as getting the first page.
+	 * Optionally, counts all the hits by datasource, organism, type in the same pass,
+	 * and highlights the matching keywords.
+	 * Result pages are cached by the index reader version and all the search parameters;
+	 * a copy is returned (the caller may modify it).
+	 * The search is time (and visits) limited, and so are the excerpts;
+	 * partial results (incl. when some excerpts are missing) are not cached.
+	 */
+	private SearchResponse search(String query, int page, ScoreDoc after,
+			Class<? extends BioPAXElement> filterByType, String[] datasources,
+			String[] organisms, boolean facets, boolean excerpt)
 	{
 		SearchResponse response;
 		
-		LOG.debug("search: '" + query + "', page: " + page
+		LOG.debug("search: '" + query + "', page: " + page + ", after: " + after
 			+ ", filterBy: " + ((filterByType!=null)?filterByType.getSimpleName():"N/A")
 			+ "; extra filters: ds in (" + Arrays.toString(datasources)
 			+ "), org. in (" + Arrays.toString(organisms) + ")");
@@ -145,80 +524,517 @@ public class SearchEngine implements Indexer, Searcher {
 		IndexSearcher searcher = null;
 	
 		try {	
-			QueryParser queryParser = new MultiFieldQueryParser(DEFAULT_FIELDS, analyzer);
-			queryParser.setAllowLeadingWildcard(true);//we want leading wildcards enabled (e.g. *sulin)
-//			queryParser.setAutoGeneratePhraseQueries(false); //TODO: try it
-			searcher = searcherManager.acquire();
-			
-			//find and transform top docs to search hits (beans), considering pagination...
-			if(!query.trim().equals("*")) { //if not "*" query, which is not supported out-of-the-box, then
-				//create the lucene query
-				Query userQuery = queryParser.parse(query);
-				//do NOT rewrite (Lucene 4.1), or scoring/highlighting won't work for wildcard queries...
-				//luceneQuery = searcher.rewrite(luceneQuery);
-				LOG.debug("parsed lucene query is " + userQuery.getClass().getSimpleName());
-				//create filter: type AND (d OR d...) AND (o OR o...)
-				Query filter = createFilter(filterByType, datasources, organisms);
-				//final query with filter
-				Query q = (filter!=null)
-					? new BooleanQuery.Builder().add(userQuery,Occur.MUST).add(filter,Occur.FILTER).build()
-						: userQuery;
-				//get the first page of top hits
-				TopDocs topDocs = searcher.search(q, maxHitsPerPage);
-
-				//get the required hits page if page>0
-				if(page>0) {
-					TopScoreDocCollector collector = TopScoreDocCollector.create(maxHitsPerPage*(page+1));
-					searcher.search(q, collector);
-					topDocs = collector.topDocs(page * maxHitsPerPage, maxHitsPerPage);
-				}
-				
-				//transform docs to hits (optionally use a highlighter, e.g., if debugging...)
-				response = transform(userQuery, searcher, topDocs);
-	
-			} else { //find ALL objects of a particular BioPAX class (+ filters by organism, datasource)
-				if(filterByType==null) 
-					filterByType = Level3Element.class;
-
-				//replace q="*" with a search for the class or its sub-class name in the TYPE field
-				BooleanQuery.Builder starQuery = new BooleanQuery.Builder();
-				for(Class<? extends BioPAXElement> subType : SimpleEditorMap.L3.getKnownSubClassesOf(filterByType)) {
-					starQuery.add(new TermQuery(new Term(FIELD_TYPE, subType.getSimpleName().toLowerCase())), Occur.SHOULD);
-				}
-				Query filter = createFilter(null, datasources, organisms);
-				//combine star and filter queries into one special boolean
-				Query q = (filter!=null)
-						? new BooleanQuery.Builder().add(starQuery.build(),Occur.MUST).add(filter,Occur.FILTER).build()
-							: starQuery.build();
-				//get the first page of top hits
-				TopDocs topDocs = searcher.search(q, maxHitsPerPage);
-				//get the required hits page if page>0
-				if(page>0) {
-					TopScoreDocCollector collector = TopScoreDocCollector.create(maxHitsPerPage*(page+1));
-					searcher.search(q, collector);
-					topDocs = collector.topDocs(page * maxHitsPerPage, maxHitsPerPage);	
-				}
-				
-				//convert
-				response = transform(q, searcher, topDocs);
+			searcher = acquire();
+			final LruCache<List<Object>, SearchResponse> cache = searchResults;
+			final List<Object> key = Arrays.asList(((DirectoryReader) searcher.getIndexReader()).getVersion(),
+				query.trim(), page, (after != null) ? after.doc + "," + after.score : null,
+				(filterByType != null) ? filterByType.getName() : null,
+				sortedValues(datasources), sortedValues(organisms), maxHitsPerPage, facets,
+				(excerpt) ? excerptTimeLimit : null);
+			SearchResponse cached = cache.get(key);
+			if(cached != null)
+				return copy(cached);
+			//create the lucene query (null for the "*" query, which is not supported out-of-the-box)
+			Query userQuery = parseQuery(query);
+			//final query: (user query, with leading wildcards on the reversed terms, or the type query) AND filters
+			Query q = createQuery(reverseLeadingWildcards(userQuery), filterByType, datasources, organisms);
+			//get the required page of top hits (and facet counts)
+			FacetCountsCollector facetCounts = (facets) ? new FacetCountsCollector() : null;
+			SearchBudget budget = new SearchBudget(searchTimeLimit, searchMaxVisits);
+			TopDocs topDocs = topDocs(searcher, q, page, after, facetCounts, budget);
+			//transform docs to hits
+			response = transform((userQuery != null) ? userQuery : q, searcher, topDocs);
+			boolean excerpts = true;
+			if(excerpt && userQuery != null)
+				excerpts = addExcerpts(userQuery, searcher, topDocs, response.getSearchHit());
+			if(facetCounts != null)
+				response.getFacet().addAll(facetCounts.facets());
+			if(budget.isExceeded()) {
+				LOG.info("search: '" + query + "' is over the time or visits limit; returning partial results");
+				response.setPartial(true);
+			} else if(!excerpts) {
+				LOG.info("search: '" + query + "', excerpts are over the time limit; returning partial results");
+				response.setPartial(true);
+			} else {
+				cache.put(key, response);
 			}
+			response = copy(response);
 		} catch (ParseException e) {
 			throw new RuntimeException("getTopDocs: failed to parse the search query: " + e);
 		} catch (IOException e) {
 			throw new RuntimeException("getTopDocs: failed: " + e);
 		} finally {
-			try {
-				if(searcher!=null) {
-					searcherManager.release(searcher);
-				}
-			} catch (IOException e) {}	
+			release(searcher);
 		}
-	
-		response.setPageNo(page);
-		
+
 		return response;
 	}
 
+	private static List<String> sortedValues(String[] values) {
+		if(values == null || values.length == 0)
+			return Collections.emptyList();
+		List<String> list = new ArrayList<>(Arrays.asList(values));
+		Collections.sort(list);
+		return list;
+	}
+
+	private static SearchResponse copy(SearchResponse response) {
+		SearchResponse r = new SearchResponse();
+		r.setNumHits(response.getNumHits());
+		r.setMaxHitsPerPage(response.getMaxHitsPerPage());
+		r.setSearchHit(new ArrayList<>(response.getSearchHit()));
+		r.setFacet(new ArrayList<>(response.getFacet()));
+		if(response.getPageNo() != null)
+			r.setPageNo(response.getPageNo());
+		r.setCursor(response.getCursor());
+		r.setComment(response.getComment());
+		r.setVersion(response.getVersion());
+		r.setPartial(response.getPartial());
+		r.setProviders(new HashSet<>(response.getProviders()));
+		return r;
+	}
+
+	public List<String> suggest(String prefix, String organism) {
+		final Suggester s = suggester;
+		if(s == null || prefix == null || prefix.trim().isEmpty())
+			return Collections.emptyList();
+		try {
+			return s.lookup(prefix, organism, MAX_SUGGESTIONS);
+		} catch (IOException e) {
+			throw new RuntimeException("suggest: failed: " + e);
+		}
+	}
+
+	public Map<String, Set<String>> resolve(Collection<String> ids, Collection<Class<? extends BioPAXElement>> types) {
+		if(searcherManager == null || ids.isEmpty())
+			return Collections.emptyMap();
+		try {
+			return idIndex().resolve(ids, types);
+		} catch (IOException e) {
+			throw new RuntimeException("resolve: failed: " + e);
+		}
+	}
+
+	/*
+	 * Gets or builds the identifier to elements lookup from the current index.
+	 */
+	private IdIndex idIndex() throws IOException {
+		IdIndex ix = idIndex;
+		if(ix == null) {
+			synchronized (this) {
+				ix = idIndex;
+				if(ix == null) {
+					IndexSearcher searcher = acquire();
+					try {
+						ix = new IdIndex(searcher.getIndexReader(), model);
+					} finally {
+						release(searcher);
+					}
+					idIndex = ix;
+				}
+			}
+		}
+		return ix;
+	}
+
+	public void collectUris(String query, Class<? extends BioPAXElement> filterByType,
+			String[] datasources, String[] organisms, Consumer<String> action)
+	{
+		LOG.debug("collectUris: '" + query + "', filterBy: "
+			+ ((filterByType!=null)?filterByType.getSimpleName():"N/A")
+			+ "; extra filters: ds in (" + Arrays.toString(datasources)
+			+ "), org. in (" + Arrays.toString(organisms) + ")");
+
+		IndexSearcher searcher = null;
+		try {
+			searcher = acquire();
+			Query q = createQuery(reverseLeadingWildcards(parseQuery(query)), filterByType, datasources, organisms);
+			//no scoring, no pagination; read the URIs from the doc values
+			searcher.search(q, new UriCollector(action));
+		} catch (ParseException e) {
+			throw new RuntimeException("collectUris: failed to parse the search query: " + e);
+		} catch (IOException e) {
+			throw new RuntimeException("collectUris: failed: " + e);
+		} finally {
+			release(searcher);
+		}
+	}
+
+	/*
+	 * Passes the URI of every matching document
+	 * (from the 'uri' sorted doc values) to the consumer.
+	 */
+	private static final class UriCollector extends SimpleCollector {
+		private final Consumer<String> action;
+		private SortedDocValues uris;
+
+		UriCollector(Consumer<String> action) {
+			this.action = action;
+		}
+
+		@Override
+		protected void doSetNextReader(LeafReaderContext context) throws IOException {
+			uris = DocValues.getSorted(context.reader(), FIELD_URI);
+		}
+
+		@Override
+		public void collect(int doc) throws IOException {
+			if(uris.advanceExact(doc))
+				action.accept(uris.binaryValue().utf8ToString());
+		}
+
+		@Override
+		public boolean needsScores() {
+			return false;
+		}
+	}
+
+	/*
+	 * Counts the matching docs by datasource, organism (URIs) and type
+	 * using the doc values: by ordinal within each segment, then - by value.
+	 */
+	private static final class FacetCountsCollector extends SimpleCollector {
+		private final Map<String, Map<String, Long>> counts = new LinkedHashMap<>(); //field -> value -> count
+		private SortedSetDocValues datasources;
+		private SortedSetDocValues organisms;
+		private SortedDocValues types;
+		private long[] datasourceCounts;
+		private long[] organismCounts;
+		private long[] typeCounts;
+
+		FacetCountsCollector() {
+			counts.put(FIELD_DATASOURCE, new HashMap<>());
+			counts.put(FIELD_ORGANISM, new HashMap<>());
+			counts.put(FIELD_TYPE, new HashMap<>());
+		}
+
+		@Override
+		protected void doSetNextReader(LeafReaderContext context) throws IOException {
+			addSegmentCounts();
+			LeafReader reader = context.reader();
+			datasources = DocValues.getSortedSet(reader, FIELD_DATASOURCE);
+			organisms = DocValues.getSortedSet(reader, FIELD_ORGANISM);
+			types = DocValues.getSorted(reader, FIELD_TYPE);
+			datasourceCounts = new long[(int) datasources.getValueCount()];
+			organismCounts = new long[(int) organisms.getValueCount()];
+			typeCounts = new long[types.getValueCount()];
+		}
+
+		@Override
+		public void collect(int doc) throws IOException {
+			if(datasources.advanceExact(doc)) {
+				for(long ord = datasources.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = datasources.nextOrd())
+					datasourceCounts[(int) ord]++;
+			}
+			if(organisms.advanceExact(doc)) {
+				for(long ord = organisms.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = organisms.nextOrd())
+					organismCounts[(int) ord]++;
+			}
+			if(types.advanceExact(doc))
+				typeCounts[types.ordValue()]++;
+		}
+
+		@Override
+		public boolean needsScores() {
+			return false;
+		}
+
+		//adds the current segment's (non-zero) counts by value
+		private void addSegmentCounts() throws IOException {
+			if(typeCounts == null)
+				return;
+			for(int ord = 0; ord < datasourceCounts.length; ord++) {
+				if(datasourceCounts[ord] > 0)
+					counts.get(FIELD_DATASOURCE).merge(datasources.lookupOrd(ord).utf8ToString(), datasourceCounts[ord], Long::sum);
+			}
+			for(int ord = 0; ord < organismCounts.length; ord++) {
+				if(organismCounts[ord] > 0)
+					counts.get(FIELD_ORGANISM).merge(organisms.lookupOrd(ord).utf8ToString(), organismCounts[ord], Long::sum);
+			}
+			for(int ord = 0; ord < typeCounts.length; ord++) {
+				if(typeCounts[ord] > 0)
+					counts.get(FIELD_TYPE).merge(types.lookupOrd(ord).utf8ToString(), typeCounts[ord], Long::sum);
+			}
+			typeCounts = null;
+		}
+
+		//adds the other collector's counts (e.g., from another index slice)
+		void merge(FacetCountsCollector other) throws IOException {
+			other.addSegmentCounts();
+			for(Map.Entry<String, Map<String, Long>> field : other.counts.entrySet()) {
+				Map<String, Long> values = counts.get(field.getKey());
+				field.getValue().forEach((value, count) -> values.merge(value, count, Long::sum));
+			}
+		}
+
+		//facets, with values ordered by count (desc.), then by value
+		List<Facet> facets() throws IOException {
+			addSegmentCounts();
+			List<Facet> facets = new ArrayList<>();
+			for(Map.Entry<String, Map<String, Long>> field : counts.entrySet()) {
+				Facet facet = new Facet(field.getKey());
+				field.getValue().entrySet().stream()
+					.sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+					.forEach(e -> facet.getFacetValue().add(new FacetValue(e.getKey(), e.getValue())));
+				facets.add(facet);
+			}
+			return facets;
+		}
+	}
+
+	/*
+	 * Parses the user query string (keywords or Lucene query syntax);
+	 * returns null for the special "*" query (find all of a type).
+	 */
+	private Query parseQuery(String query) throws ParseException
+	{
+		if(query.trim().equals("*"))
+			return null;
+
+		//parsed queries do not depend on the index (and are immutable)
+		final LruCache<String, Query> cache = parsedQueries;
+		Query cached = cache.get(query);
+		if(cached != null)
+			return cached;
+
+		QueryParser queryParser = new MultiFieldQueryParser(DEFAULT_FIELDS, analyzer);
+		queryParser.setAllowLeadingWildcard(true);//we want leading wildcards enabled (e.g. *sulin)
+//		queryParser.setAutoGeneratePhraseQueries(false); //TODO: try it
+		Query userQuery = queryParser.parse(query);
+		//do NOT rewrite (Lucene 4.1), or scoring/highlighting won't work for wildcard queries...
+		//luceneQuery = searcher.rewrite(luceneQuery);
+		LOG.debug("parsed lucene query is " + userQuery.getClass().getSimpleName());
+		cache.put(query, userQuery);
+		return userQuery;
+	}
+
+	/*
+	 * Replaces the leading wildcard queries, e.g., *ase or name:*sulin, which would
+	 * go through all the terms of a field, with the prefix (or wildcard) queries on the field's
+	 * reversed terms, e.g., esa* or name_reversed:niluS*; other queries stay as they are.
+	 */
+	static Query reverseLeadingWildcards(Query query) {
+		if(query instanceof WildcardQuery) {
+			Term term = ((WildcardQuery) query).getTerm();
+			String field = REVERSED_FIELDS.get(term.field());
+			String text = term.text();
+			if(field != null && !text.isEmpty() && isWildcard(text.charAt(0)) && text.indexOf('\\') < 0) {
+				String reversed = new StringBuilder(text).reverse().toString();
+				if(!isWildcard(reversed.charAt(0))) { //otherwise - no gain (e.g., *ase*)
+					String prefix = reversed.substring(0, reversed.length() - 1);
+					return (reversed.endsWith("*") && prefix.indexOf('*') < 0 && prefix.indexOf('?') < 0)
+						? new PrefixQuery(new Term(field, prefix))
+							: new WildcardQuery(new Term(field, reversed));
+				}
+			}
+		} else if(query instanceof BooleanQuery) {
+			BooleanQuery bq = (BooleanQuery) query;
+			BooleanQuery.Builder builder = new BooleanQuery.Builder()
+				.setMinimumNumberShouldMatch(bq.getMinimumNumberShouldMatch());
+			for(BooleanClause clause : bq.clauses())
+				builder.add(reverseLeadingWildcards(clause.getQuery()), clause.getOccur());
+			return builder.build();
+		} else if(query instanceof BoostQuery) {
+			BoostQuery bq = (BoostQuery) query;
+			return new BoostQuery(reverseLeadingWildcards(bq.getQuery()), bq.getBoost());
+		}
+		return query;
+	}
+
+	private static boolean isWildcard(char c) {
+		return c == WildcardQuery.WILDCARD_STRING || c == WildcardQuery.WILDCARD_CHAR;
+	}
+
+	/*
+	 * Same tokens as the StandardAnalyzer makes (for the 'keyword' field), reversed.
+	 */
+	private static final class ReversedTokensAnalyzer extends Analyzer {
+		@Override
+		protected TokenStreamComponents createComponents(String fieldName) {
+			Tokenizer tokenizer = new StandardTokenizer();
+			TokenStream tokens = new LowerCaseFilter(tokenizer);
+			tokens = new StopFilter(tokens, EnglishAnalyzer.ENGLISH_STOP_WORDS_SET); //the StandardAnalyzer's default
+			tokens = new ReverseStringFilter(tokens);
+			return new TokenStreamComponents(tokenizer, tokens);
+		}
+	}
+
+	/*
+	 * Combines the user query (or, if it's null, a query that matches all objects of the type)
+	 * with the filter: type AND (d OR d...) AND (o OR o...)
+	 */
+	private Query createQuery(Query userQuery, Class<? extends BioPAXElement> filterByType,
+			String[] datasources, String[] organisms)
+	{
+		if(userQuery != null) {
+			Query filter = createFilter(filterByType, datasources, organisms);
+			//final query with filter
+			return (filter!=null)
+				? new BooleanQuery.Builder().add(userQuery,Occur.MUST).add(filter,Occur.FILTER).build()
+					: userQuery;
+		} else { //find ALL objects of a particular BioPAX class (+ filters by organism, datasource)
+			if(filterByType==null)
+				filterByType = Level3Element.class;
+
+			//replace q="*" with a search for the class or its sub-class name in the TYPE field;
+			//constant score - to get the cached doc id set of the type instead of scoring each term
+			Query starQuery = new ConstantScoreQuery(typeQuery(filterByType));
+			Query filter = createFilter(null, datasources, organisms);
+			//combine star and filter queries into one special boolean
+			return (filter!=null)
+				? new BooleanQuery.Builder().add(starQuery,Occur.MUST).add(filter,Occur.FILTER).build()
+					: starQuery;
+		}
+	}
+
+	/*
+	 * Collects the hits page (and counts all the hits by field values at once):
+	 * a collector per index slice (segment), in parallel if the searcher has an executor.
+	 */
+	private TopDocs topDocs(IndexSearcher searcher, Query q, int page, final ScoreDoc after,
+			final FacetCountsCollector facetCounts, final SearchBudget budget) throws IOException
+	{
+		final int numHits = (after != null) ? maxHitsPerPage : maxHitsPerPage * (page + 1);
+		final int start = (after != null) ? 0 : page * maxHitsPerPage;
+		CollectorManager<SliceCollector, TopDocs> manager = new CollectorManager<SliceCollector, TopDocs>() {
+			@Override
+			public SliceCollector newCollector() {
+				return new SliceCollector(TopScoreDocCollector.create(numHits, after),
+					(facetCounts != null) ? new FacetCountsCollector() : null, budget);
+			}
+
+			@Override
+			public TopDocs reduce(Collection<SliceCollector> collectors) throws IOException {
+				final TopDocs[] topDocs = new TopDocs[collectors.size()];
+				int i = 0;
+				for(SliceCollector collector : collectors) {
+					topDocs[i++] = collector.hits.topDocs();
+					if(facetCounts != null)
+						facetCounts.merge(collector.facetCounts);
+				}
+				return TopDocs.merge(start, maxHitsPerPage, topDocs, true);
+			}
+		};
+
+		try {
+			return budget.searcher(searcher).search(q, manager);
+		} catch (RuntimeException e) {
+			//time is over while expanding the query terms (on this or a search thread); no hits then
+			for(Throwable t = e; t != null; t = t.getCause()) {
+				if(t instanceof ExitableDirectoryReader.ExitingReaderException)
+					return new TopDocs(0, new ScoreDoc[0], Float.NaN);
+			}
+			throw e;
+		}
+	}
+
+	/*
+	 * Collects the top hits (and facet counts) in an index slice, within the search budget.
+	 */
+	private static final class SliceCollector extends FilterCollector {
+		final TopScoreDocCollector hits;
+		final FacetCountsCollector facetCounts;
+
+		SliceCollector(TopScoreDocCollector hits, FacetCountsCollector facetCounts, SearchBudget budget) {
+			super(budget.limit((facetCounts != null) ? MultiCollector.wrap(hits, facetCounts) : hits));
+			this.hits = hits;
+			this.facetCounts = facetCounts;
+		}
+	}
+
+	/*
+	 * Per-request search budget: the time limit (also checked when enumerating the terms, e.g.,
+	 * to expand a wildcard query, via the ExitableDirectoryReader) and the max. no. matching docs
+	 * to visit. Once it's exceeded, collecting stops, and the hits found so far are the results.
+	 */
+	private final class SearchBudget implements QueryTimeout {
+		private final boolean timeLimited;
+		private final long deadline; //System.nanoTime
+		private final long maxVisits;
+		private final AtomicLong visits = new AtomicLong();
+		private volatile boolean exceeded;
+
+		SearchBudget(long timeLimitMs, long maxVisits) {
+			this.timeLimited = timeLimitMs > 0;
+			this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMs);
+			this.maxVisits = (maxVisits > 0) ? maxVisits : Long.MAX_VALUE;
+		}
+
+		@Override
+		public boolean shouldExit() {
+			if(!exceeded && timeLimited && System.nanoTime() - deadline > 0)
+				exceeded = true;
+			return exceeded;
+		}
+
+		@Override
+		public boolean isTimeoutEnabled() {
+			return timeLimited;
+		}
+
+		boolean isExceeded() {
+			return exceeded;
+		}
+
+		/*
+		 * The same index, but the terms enumeration stops when the time is over.
+		 */
+		IndexSearcher searcher(IndexSearcher searcher) throws IOException {
+			if(!timeLimited)
+				return searcher;
+			IndexSearcher s = new IndexSearcher(
+				ExitableDirectoryReader.wrap((DirectoryReader) searcher.getIndexReader(), this), searchExecutor);
+			s.setQueryCache(queryCache); //same segment cores - same cached filters
+			s.setQueryCachingPolicy(queryCachingPolicy);
+			return s;
+		}
+
+		/*
+		 * Wraps the collector to skip the rest of docs (all segments) when out of the budget.
+		 */
+		Collector limit(Collector collector) {
+			return new FilterCollector(collector) {
+				@Override
+				public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+					if(exceeded)
+						throw new CollectionTerminatedException();
+					return new FilterLeafCollector(super.getLeafCollector(context)) {
+						@Override
+						public void collect(int doc) throws IOException {
+							long n = visits.incrementAndGet();
+							if(n > maxVisits || ((n & 0xFF) == 0 && shouldExit())) {
+								exceeded = true;
+								throw new CollectionTerminatedException();
+							}
+							super.collect(doc);
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/*
+	 * Makes an opaque cursor (for the next page request) from the last hit's doc id and score.
+	 * It stays valid as long as the index is not re-built.
+	 */
+	static String encodeCursor(ScoreDoc scoreDoc) {
+		String s = scoreDoc.doc + ":" + Float.floatToIntBits(scoreDoc.score) + ":" + scoreDoc.shardIndex;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static ScoreDoc decodeCursor(String cursor) {
+		if(cursor == null || cursor.isEmpty())
+			return null;
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+			return new ScoreDoc(Integer.parseInt(parts[0]),
+				Float.intBitsToFloat(Integer.parseInt(parts[1])), Integer.parseInt(parts[2]));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Illegal search cursor: " + cursor, e);
+		}
+	}
+
 	
 	// Transform Lucene docs to hits (xml/java beans)
 	private SearchResponse transform(Query query, IndexSearcher searcher, TopDocs topDocs) throws IOException
@@ -232,108 +1048,31 @@ public class SearchEngine implements Indexer, Searcher {
 		List<SearchHit> hits = response.getSearchHit();//empty list
 		assert hits!=null && hits.isEmpty();
 		LOG.debug("transform, no. TopDocs to process:" + topDocs.scoreDocs.length);
-		for(ScoreDoc scoreDoc : topDocs.scoreDocs) {			
-			SearchHit hit = new SearchHit();
-			Document doc = searcher.doc(scoreDoc.doc);
-			String uri = doc.get(FIELD_URI);
-			BioPAXElement bpe = model.getByID(uri);
-			
-			// use a highlighter (get matching fragments)
-			if (LOG.isDebugEnabled()) {
-				// to use a Highlighter, store.YES must be enabled for 'keyword' field
-				QueryScorer scorer = new QueryScorer(query, FIELD_KEYWORD);
-				//the following fixes scoring/highlighting for all-field wildcard (like q=insulin*)
-				//but not for term/prefix queries (q=name:insulin*, q=pathway:brca2)_.
-				scorer.setExpandMultiTermQuery(true);
-//TODO use PostingsHighlighter once it's stable;
-//TODO see http://lucene.apache.org/core/6_4_1/highlighter/org/apache/lucene/search/postingshighlight/PostingsHighlighter.html
-				SimpleHTMLFormatter formatter = new SimpleHTMLFormatter("<span class='hitHL'>", "</span>");
-				Highlighter highlighter = new Highlighter(formatter, scorer);
-				highlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, 80));
-				final String text = String.join(" ", ModelUtils.getKeywords(bpe,2, keywordsFilter));
-				try {
-					TokenStream tokenStream = analyzer.tokenStream("", new StringReader(text));
-					String res = highlighter.getBestFragments(tokenStream, text, 7, "...");
-					if(res != null && !res.isEmpty())
-						hit.setExcerpt(res);
-				} catch (Exception e) {
-					throw new RuntimeException(e);
-				}
-
-				String excerpt = hit.getExcerpt();
-				if(excerpt == null) {excerpt = "";}
-				hit.setExcerpt(excerpt + " -SCORE- " + scoreDoc.score +
-						" -EXPLANATION- " + searcher.explain(query, scoreDoc.doc));
-			}
-			
-			hit.setUri(uri);
-			hit.setBiopaxClass(bpe.getModelInterface().getSimpleName());
-			
-			// add standard and display names if any -
-			if (bpe instanceof Named) {
-				Named named = (Named) bpe;
-				String std = named.getStandardName();
-				if (std != null)
-					hit.setName(std);
-				else
-					hit.setName(named.getDisplayName());
-				
-				// a hack for BioSource (store more info)
-				if(bpe instanceof BioSource) {
-					for(String name : named.getName())
-						hit.getOrganism().add(name);
-					String txid = getTaxonId((BioSource)named);
-					if(txid != null)
-						hit.getOrganism().add(txid);
-				}
-				
-				// a hack for Provenance: save/return other names 
-				// (to be used as filter by data source values)
-				if(bpe instanceof Provenance) {
-					for(String name : named.getName())
-						hit.getDataSource().add(name);
-				}	
-			}
-						
-			// extract organisms (URI only) 
-			if(doc.get(FIELD_ORGANISM) != null) {
-				Set<String> uniqueVals = new TreeSet<>();
-				for(String o : doc.getValues(FIELD_ORGANISM)) {
-					//note: only URIS are stored in the index					
-					uniqueVals.add(o);
-				}
-				hit.getOrganism().addAll(uniqueVals);
-			}
-			
-			// extract values form the index
-			if(doc.get(FIELD_DATASOURCE) != null) {
-				Set<String> uniqueVals = new TreeSet<>();
-				for(String d : doc.getValues(FIELD_DATASOURCE)) {
-					//note: only URIS are stored in the index
-					uniqueVals.add(d);
-				}
-				hit.getDataSource().addAll(uniqueVals);
-			}	
-			
-			// extract only (parent) pathway URIs
-			//only URIs were stored "as is" (names, ids were indexed but not stored in the index doc.)
-			if(doc.get(FIELD_PATHWAY) != null) {
-				Set<String> uniqueVals = new TreeSet<>();
-				for(String d : doc.getValues(FIELD_PATHWAY)) {
-					uniqueVals.add(d);
-				}
-				uniqueVals.remove(uri); //exclude itself
-				hit.getPathway().addAll(uniqueVals);
+		//there might be more hits if this page is full
+		if(topDocs.scoreDocs.length > 0 && topDocs.scoreDocs.length == maxHitsPerPage)
+			response.setCursor(encodeCursor(topDocs.scoreDocs[topDocs.scoreDocs.length-1]));
+		//read the hit fields column-wise from the doc values, leaf by leaf, in doc id order
+		//(doc values iterators only go forward), then return the hits in the score order
+		final ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+		final long[] docsOrder = new long[scoreDocs.length]; //(doc id, position) pairs
+		for(int i = 0; i < scoreDocs.length; i++) {
+			docsOrder[i] = ((long) scoreDocs[i].doc << 32) | i;
+		}
+		Arrays.sort(docsOrder);
+		final SearchHit[] pageHits = new SearchHit[scoreDocs.length];
+		final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+		LeafReaderContext leaf = null;
+		HitValues values = null;
+		for(long docAndPos : docsOrder) {
+			final int pos = (int) docAndPos;
+			final ScoreDoc scoreDoc = scoreDocs[pos];
+			if(leaf == null || scoreDoc.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+				leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+				values = new HitValues(leaf.reader());
 			}
-			
-			//no. processes, participants in the sub-network
-			if(doc.get(FIELD_N_PROCESSES)!=null)
-				hit.setNumProcesses(Integer.valueOf(doc.get(FIELD_N_PROCESSES))); //TODO: try w/o Integer.valueOf
-			if(doc.get(FIELD_N_PARTICIPANTS)!=null)
-				hit.setNumParticipants(Integer.valueOf(doc.get(FIELD_N_PARTICIPANTS)));
-
-			hits.add(hit);
+			pageHits[pos] = hit(query, searcher, scoreDoc, values, scoreDoc.doc - leaf.docBase);
 		}
+		Collections.addAll(hits, pageHits);
 				
 		//add the Provenance's standardName(s) to the search response
 		if(!hits.isEmpty()) {
@@ -347,6 +1086,139 @@ public class SearchEngine implements Indexer, Searcher {
 		return response;
 	}
 
+	/*
+	 * Sets the hit excerpts - best matching fragments of the (stored) 'keyword' field values,
+	 * using the offsets from the postings (no re-analyzing) - for the hits (same order as top docs),
+	 * a few hits at a time, until done or the time limit is over.
+	 * Returns false when the time was over before all the hits got highlighted.
+	 */
+	private boolean addExcerpts(Query query, IndexSearcher searcher, TopDocs topDocs, List<SearchHit> hits)
+			throws IOException
+	{
+		final UnifiedHighlighter highlighter = new UnifiedHighlighter(searcher, analyzer);
+		highlighter.setHandleMultiTermQuery(true); //e.g., q=insulin*
+		//names and keywords are the same text (names are there in the 'keyword' values)
+		highlighter.setFieldMatcher(field -> FIELD_KEYWORD.equals(field) || FIELD_NAME.equals(field));
+		highlighter.setFormatter(new DefaultPassageFormatter("<span class='hitHL'>", "</span>", "...", false));
+		final String[] fields = {FIELD_KEYWORD};
+		final int[] maxPassages = {EXCERPT_MAX_PASSAGES};
+		final ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+		final long deadline = System.currentTimeMillis() + excerptTimeLimit;
+		for(int from = 0; from < scoreDocs.length; from += EXCERPT_BATCH_SIZE) {
+			if(System.currentTimeMillis() >= deadline) {
+				LOG.debug("addExcerpts, time limit is over; highlighted " + from + " of " + scoreDocs.length);
+				return false;
+			}
+			final int to = Math.min(from + EXCERPT_BATCH_SIZE, scoreDocs.length);
+			final int[] docIds = new int[to - from];
+			for(int i = from; i < to; i++)
+				docIds[i - from] = scoreDocs[i].doc;
+			final String[] excerpts = highlighter.highlightFields(fields, query, docIds, maxPassages).get(FIELD_KEYWORD);
+			for(int i = from; i < to; i++) {
+				String excerpt = excerpts[i - from];
+				if(excerpt != null) {
+					SearchHit hit = hits.get(i);
+					hit.setExcerpt((hit.getExcerpt() != null) ? excerpt + " " + hit.getExcerpt() : excerpt);
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Per-segment doc values of the search hit fields.
+	 */
+	private static final class HitValues {
+		final SortedDocValues uri;
+		final SortedSetDocValues organisms;
+		final SortedSetDocValues datasources;
+		final SortedSetDocValues pathways;
+		final NumericDocValues numProcesses;
+		final NumericDocValues numParticipants;
+
+		HitValues(LeafReader reader) throws IOException {
+			uri = DocValues.getSorted(reader, FIELD_URI);
+			organisms = DocValues.getSortedSet(reader, FIELD_ORGANISM);
+			datasources = DocValues.getSortedSet(reader, FIELD_DATASOURCE);
+			pathways = DocValues.getSortedSet(reader, FIELD_PATHWAY);
+			numProcesses = DocValues.getNumeric(reader, FIELD_N_PROCESSES);
+			numParticipants = DocValues.getNumeric(reader, FIELD_N_PARTICIPANTS);
+		}
+
+		//adds the (unique, sorted) values of the doc except the excluded one
+		static void addValues(SortedSetDocValues dv, int doc, List<String> to, String exclude) throws IOException {
+			if(dv.advanceExact(doc)) {
+				for(long ord = dv.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = dv.nextOrd()) {
+					String v = dv.lookupOrd(ord).utf8ToString();
+					if(!v.equals(exclude))
+						to.add(v);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Makes a search hit from the doc values (leafDoc is the doc id within the segment)
+	 * and the BioPAX object (from the in-memory model).
+	 */
+	private SearchHit hit(Query query, IndexSearcher searcher, ScoreDoc scoreDoc,
+			HitValues values, int leafDoc) throws IOException
+	{
+		SearchHit hit = new SearchHit();
+		String uri = (values.uri.advanceExact(leafDoc)) ? values.uri.binaryValue().utf8ToString() : null;
+		BioPAXElement bpe = model.getByID(uri);
+		
+		// debug the scoring (the highlighted keywords, if requested, get added later)
+		if (LOG.isDebugEnabled()) {
+			hit.setExcerpt("-SCORE- " + scoreDoc.score +
+					" -EXPLANATION- " + searcher.explain(query, scoreDoc.doc));
+		}
+		
+		hit.setUri(uri);
+		hit.setBiopaxClass(bpe.getModelInterface().getSimpleName());
+		
+		// add standard and display names if any -
+		if (bpe instanceof Named) {
+			Named named = (Named) bpe;
+			String std = named.getStandardName();
+			if (std != null)
+				hit.setName(std);
+			else
+				hit.setName(named.getDisplayName());
+			
+			// a hack for BioSource (store more info)
+			if(bpe instanceof BioSource) {
+				for(String name : named.getName())
+					hit.getOrganism().add(name);
+				String txid = getTaxonId((BioSource)named);
+				if(txid != null)
+					hit.getOrganism().add(txid);
+			}
+			
+			// a hack for Provenance: save/return other names 
+			// (to be used as filter by data source values)
+			if(bpe instanceof Provenance) {
+				for(String name : named.getName())
+					hit.getDataSource().add(name);
+			}	
+		}
+					
+		// extract organisms (URI only)
+		HitValues.addValues(values.organisms, leafDoc, hit.getOrganism(), null);
+		// extract data sources (URI only)
+		HitValues.addValues(values.datasources, leafDoc, hit.getDataSource(), null);
+		// extract only (parent) pathway URIs, except itself
+		HitValues.addValues(values.pathways, leafDoc, hit.getPathway(), uri);
+
+		//no. processes, participants in the sub-network
+		if(values.numProcesses.advanceExact(leafDoc))
+			hit.setNumProcesses((int) values.numProcesses.longValue());
+		if(values.numParticipants.advanceExact(leafDoc))
+			hit.setNumParticipants((int) values.numParticipants.longValue());
+
+		return hit;
+	}
+
 	public static final org.biopax.paxtools.util.Filter<DataPropertyEditor> keywordsFilter = (editor) -> {
 		final String prop = editor.getProperty();
 		//to include in the index, as keywords, only the following properties
@@ -363,100 +1235,311 @@ public class SearchEngine implements Indexer, Searcher {
 		);
 	};
 
+	/**
+	 * Builds a new index from the model in a staging directory, next to the index one,
+	 * while the current index (if any) keeps serving the searches; then, if the new index
+	 * has got all the documents, swaps the directories and the searcher managers
+	 * and closes the old one (the searchers in use stay valid until released).
+	 */
 	public void index() {
+		final Path staging = indexFile.resolveSibling(indexFile.getFileName() + ".new");
+		final Path old = indexFile.resolveSibling(indexFile.getFileName() + ".old");
+		CPathUtils.cleanupDirectory(staging.toString(), true);
+		CPathUtils.cleanupDirectory(old.toString(), false);
 
 		IndexWriter iw;
 		try {
-			//close the searcher manager if the old index exists
-			if(searcherManager != null) {
-				searcherManager.close();
-				searcherManager = null;
+			iw = new IndexWriter(FSDirectory.open(staging), indexWriterConfig());
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to create a new IndexWriter.", e);
+		}		
+
+		List<BioPAXElement> objects = new ArrayList<>();
+		for(BioPAXElement bpe : model.getObjects()) {
+			//Skip for UtilityClass but EntityReference and Provenance -
+			//TODO: indexing of only processes (not physical entities, genes) would help most our use cases...
+			if(bpe instanceof Entity || bpe instanceof EntityReference || bpe instanceof Provenance)
+				objects.add(bpe);
+		}
+		LOG.info("index(), there are " + objects.size() + " Entity, EntityReference or Provenance objects to index.");
+
+		//do not count child elements of sub-pathways (worth doing for e.g., KEGG model)!
+		Suggester.Builder suggestions = new Suggester.Builder();
+		index(objects, iw, new InferredValues(model, true), suggestions);
+		
+		try {
+			//finalize: the index is read-only from now on (except for the per data source updates)
+			if(indexMaxSegments > 0) {
+				LOG.info("index(), merging into at most " + indexMaxSegments + " segments...");
+				iw.forceMerge(indexMaxSegments);
 			}
+			iw.close(); //wait for pending op., auto-commit, close.
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to close IndexWriter.", e);
+		} 
 
-			CPathUtils.cleanupDirectory(indexFile.toString(), true);
+		//build the names/symbols auto-completion FST (the searcher manager loads it)
+		try {
+			suggestions.build(staging.resolve(Suggester.FILE_NAME));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to build the suggester.", e);
+		}
 
-			IndexWriterConfig conf = new IndexWriterConfig(analyzer);
-			iw = new IndexWriter(FSDirectory.open(indexFile), conf);
-			//cleanup
-			iw.deleteAll();
-			iw.commit();
+		//check the new index before switching to it
+		try (Directory dir = FSDirectory.open(staging); DirectoryReader reader = DirectoryReader.open(dir)) {
+			if(reader.numDocs() != objects.size())
+				throw new IllegalStateException("The new index has " + reader.numDocs()
+					+ " docs instead of " + objects.size() + " (keep using the current one)");
 		} catch (IOException e) {
-			throw new RuntimeException("Failed to create a new IndexWriter.", e);
-		}		
-		final IndexWriter indexWriter = iw;
+			throw new RuntimeException("Failed to open the new index.", e);
+		}
 
-		ExecutorService exec = Executors.newFixedThreadPool(30);
+		//finally, swap the index directories and searcher managers
+		try {
+			swapIndex(staging, old);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to switch to the new index.", e);
+		}
+		LOG.info("index(), switched to the new index: " + objects.size() + " docs");
+	}
 
-		final int numObjectsToIndex = model.getObjects(Entity.class).size()
-				+ model.getObjects(EntityReference.class).size();
-		LOG.info("index(), there are " + numObjectsToIndex + " Entity or EntityReference objects to index.");
+	/*
+	 * The index writer settings (same for the new index and updates):
+	 * docs are sorted by type (the type filters, q=* queries then go through
+	 * contiguous doc id ranges); no compound files unless enabled.
+	 */
+	private IndexWriterConfig indexWriterConfig() {
+		IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+		conf.setIndexSort(new Sort(new SortField(FIELD_TYPE, SortField.Type.STRING)));
+		if(!indexCompoundFiles) {
+			conf.setUseCompoundFile(false);
+			conf.getMergePolicy().setNoCFSRatio(0.0);
+		}
+		return conf;
+	}
 
-		final AtomicInteger numLeft = new AtomicInteger(numObjectsToIndex);
+	/*
+	 * Moves the current index directory aside, the new one - in its place
+	 * (both are atomic renames within the same parent directory), opens the new index
+	 * and then closes the previous searcher manager. Searches that are in progress
+	 * still use the old index reader, which gets closed when the last of them is released
+	 * (its refCount drops to 0); only then the old directory is deleted (see deleteWhenClosed).
+	 */
+	private synchronized void swapIndex(Path staging, Path old) throws IOException {
+		final boolean hadIndex = Files.exists(indexFile);
+		if(hadIndex)
+			Files.move(indexFile, old, StandardCopyOption.ATOMIC_MOVE);
+		try {
+			Files.move(staging, indexFile, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if(hadIndex) //put the current index back
+				Files.move(old, indexFile, StandardCopyOption.ATOMIC_MOVE);
+			throw e;
+		}
+		SearcherManager previous = openIndex();
+		if(previous != null) {
+			if(hadIndex)
+				deleteWhenClosed(previous, old);
+			previous.close();
+		} else if(hadIndex) {
+			CPathUtils.cleanupDirectory(old.toString(), false);
+		}
+	}
 
-		final Fetcher fetcher = new Fetcher(SimpleEditorMap.L3, Fetcher.nextStepFilter);
-		//disable traversing into sub-pathways when searching for child elements (worth doing for e.g., KEGG model)!
-		fetcher.setSkipSubPathways(true);
+	/*
+	 * Deletes the old index directory when the previous searcher manager's current reader gets closed
+	 * (right away if no search uses it); unless it's not the same directory anymore
+	 * (i.e., another index() has already cleaned it up and moved the next index there).
+	 */
+	private static void deleteWhenClosed(SearcherManager previous, final Path old) throws IOException {
+		final Object dirKey = Files.readAttributes(old, BasicFileAttributes.class).fileKey();
+		final IndexSearcher searcher = previous.acquire();
+		try {
+			IndexReader.CacheHelper cacheHelper = searcher.getIndexReader().getReaderCacheHelper();
+			if(cacheHelper == null) { //should not happen with a DirectoryReader
+				LOG.warn("deleteWhenClosed, cannot track the old index reader; not deleting " + old);
+				return;
+			}
+			cacheHelper.addClosedListener(key -> {
+				if(Files.isDirectory(old)
+					&& Objects.equals(dirKey, Files.readAttributes(old, BasicFileAttributes.class).fileKey()))
+				{
+					CPathUtils.cleanupDirectory(old.toString(), false);
+					LOG.info("deleted the old index directory " + old);
+				}
+			});
+		} finally {
+			previous.release(searcher);
+		}
+	}
 
-		for(final BioPAXElement bpe : model.getObjects())
-		{
-			//Skip for UtilityClass but EntityReference and Provenance -
-			//TODO: indexing of only processes (not physical entities, genes) would help most our use cases...
-			if(!(bpe instanceof Entity || bpe instanceof EntityReference || bpe instanceof Provenance))
-				continue;
+	public void index(Metadata datasource, Consumer<Collection<BioPAXElement>> prepare) {
+		update(datasource, false, prepare);
+	}
+
+	public void reindex(Metadata datasource, Consumer<Collection<BioPAXElement>> prepare) {
+		update(datasource, true, prepare);
+	}
+
+	/*
+	 * Adds to the existing index the data source's Provenance and all Entity, EntityReference
+	 * objects from that data source, replacing their docs if any (e.g., an EntityReference
+	 * of entities from several data sources is already there); optionally, first deletes
+	 * the data source's docs, and those still in the model (incl. shared ones) are then re-indexed.
+	 * The parent pathways, data sources, etc. are inferred for these objects only,
+	 * and the suggester is re-built from the index (without the names of deleted docs).
+	 * The 'prepare' callback gets exactly these objects before their documents are made.
+	 */
+	private void update(Metadata datasource, boolean deleteOld, Consumer<Collection<BioPAXElement>> prepare) {
+		final String uri = model.getXmlBase() + datasource.getIdentifier();
+		final BioPAXElement pro = model.getByID(uri);
+		if(!(pro instanceof Provenance))
+			throw new IllegalArgumentException("No Provenance " + uri + " in the model");
+
+		//the data source's entities and their entity references (incl. member ERs, which get their data sources)
+		final Set<BioPAXElement> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+		objects.add(pro);
+		final Deque<EntityReference> ers = new ArrayDeque<>();
+		for(Entity e : model.getObjects(Entity.class)) {
+			if(e.getDataSource().contains(pro)) {
+				objects.add(e);
+				if(e instanceof SimplePhysicalEntity && ((SimplePhysicalEntity) e).getEntityReference() != null)
+					ers.add(((SimplePhysicalEntity) e).getEntityReference());
+			}
+		}
+		while(!ers.isEmpty()) {
+			EntityReference er = ers.poll();
+			if(objects.add(er))
+				ers.addAll(er.getMemberEntityReference());
+		}
+
+		try {
+			IndexWriterConfig conf = indexWriterConfig();
+			conf.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+			IndexWriter iw = new IndexWriter(FSDirectory.open(indexFile), conf);
+			if(deleteOld) {
+				//the data source's docs (Provenance itself has no datasource field); re-index those still in the model
+				final Term term = new Term(FIELD_DATASOURCE, uri);
+				final int size = objects.size();
+				try (DirectoryReader reader = DirectoryReader.open(iw)) {
+					new IndexSearcher(reader).search(new TermQuery(term), new UriCollector(u -> {
+						BioPAXElement bpe = model.getByID(u);
+						if(bpe instanceof Entity || bpe instanceof EntityReference)
+							objects.add(bpe);
+					}));
+				}
+				LOG.info("update(), " + (objects.size() - size) + " more objects that had " + datasource.getIdentifier()
+					+ " docs are still in the model; re-index these too");
+				iw.deleteDocuments(term);
+			}
+			for(BioPAXElement bpe : objects)
+				iw.deleteDocuments(new Term(FIELD_URI, bpe.getUri()));
+			LOG.info("update(), there are " + objects.size() + " " + datasource.getIdentifier()
+				+ " Entity, EntityReference or Provenance objects to " + ((deleteOld) ? "re-index." : "index."));
+
+			prepare.accept(Collections.unmodifiableSet(objects));
+			index(objects, iw, new InferredValues(objects, true), null);
+			iw.commit();
+			//the auto-completion for all the docs but deleted
+			Suggester.Builder suggestions = new Suggester.Builder();
+			try (DirectoryReader reader = DirectoryReader.open(iw)) {
+				suggestions.addAll(reader, FIELD_SUGGEST);
+			}
+			iw.close(); //wait for pending op., close.
+			suggestions.build(indexFile.resolve(Suggester.FILE_NAME));
+			suggester = Suggester.load(indexFile.resolve(Suggester.FILE_NAME));
+
+			//open or refresh the searchers
+			SearcherManager sm = searcherManager;
+			if(sm != null) {
+				sm.maybeRefreshBlocking();
+				idIndex = null;
+			} else {
+				initSearcherManager();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to update the index: " + datasource.getIdentifier(), e);
+		}
+	}
 
-			// prepare & index each element in a separate thread
+	/*
+	 * Prepares and adds the documents to the index using a bounded producer/consumer pipeline:
+	 * this thread puts batches of objects to a bounded queue (waits when the workers fall behind),
+	 * and each worker makes the documents and adds them to the index batch by batch.
+	 * Parent pathways and data sources are looked up in the pre-computed tables.
+	 * The names and symbols are also added to the suggestions, unless it's null.
+	 */
+	private void index(Collection<BioPAXElement> objects, final IndexWriter indexWriter,
+					   final InferredValues inferred, final Suggester.Builder suggestions)
+	{
+		final int numWorkers = indexThreads;
+		final ExecutorService exec = Executors.newFixedThreadPool(numWorkers);
+		final BlockingQueue<List<BioPAXElement>> queue = new ArrayBlockingQueue<>(2 * numWorkers);
+		final List<BioPAXElement> endOfData = Collections.emptyList();
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final AtomicLong numDone = new AtomicLong();
+		final long numTotal = objects.size();
+		final long startTime = System.currentTimeMillis();
+
+		for(int i = 0; i < numWorkers; i++) {
 			exec.execute(() -> {
-					// get or infer some important values if possible from this, child or parent objects:
-					Set<String> keywords = ModelUtils.getKeywords(bpe, 2, keywordsFilter);
-
-					// a hack to remove special (debugging) biopax comments
-					for(String s : new HashSet<>(keywords)) {
-						//exclude additional comments generated by normalizer, merger, etc.
-						if(s.startsWith("REPLACED ") || s.contains("ADDED"))
-							keywords.remove(s);
-					}
-					
-					bpe.getAnnotations().put(FIELD_KEYWORD, keywords);
-					bpe.getAnnotations().put(FIELD_DATASOURCE, ModelUtils.getDatasources(bpe));
-					bpe.getAnnotations().put(FIELD_ORGANISM, ModelUtils.getOrganisms(bpe));
-					bpe.getAnnotations().put(FIELD_PATHWAY, ModelUtils.getParentPathways(bpe));
-					
-					//set <numparticipants> (PEs/Genes), <numprocesses> (interactions/pathways), <size> index fields:
-					if(bpe instanceof org.biopax.paxtools.model.level3.Process) {
-						int numProc = fetcher.fetch(bpe, Process.class).size(); //except itself
-						int numPeAndG = fetcher.fetch(bpe, PhysicalEntity.class).size()
-								+ fetcher.fetch(bpe, Gene.class).size();
-						bpe.getAnnotations().put(FIELD_N_PARTICIPANTS, Integer.toString(numPeAndG));
-						bpe.getAnnotations().put(FIELD_N_PROCESSES, Integer.toString(numProc));
-					} else if(bpe instanceof Complex) {
-						int numPEs = fetcher.fetch(bpe, PhysicalEntity.class).size();
-						bpe.getAnnotations().put(FIELD_N_PARTICIPANTS, Integer.toString(numPEs));
+				try {
+					List<BioPAXElement> batch;
+					while ((batch = queue.take()) != endOfData) {
+						if (failure.get() != null)
+							continue; //skip the rest
+						try {
+							List<Document> docs = new ArrayList<>(batch.size());
+							for (BioPAXElement bpe : batch) {
+								docs.add(document(bpe, inferred, suggestions));
+							}
+							indexWriter.addDocuments(docs);
+						} catch (Exception e) {
+							failure.compareAndSet(null, e);
+							continue;
+						}
+						//log progress every 10000 docs
+						long done = numDone.addAndGet(batch.size());
+						if (done / 10000 > (done - batch.size()) / 10000)
+							LOG.info("index(), " + done + " of " + numTotal + " docs; "
+								+ docsPerSecond(done, startTime) + " docs/s");
 					}
-
-					index(bpe, indexWriter);
-					
-					//count, log a progress message
-					int left = numLeft.decrementAndGet();
-					if(left % 10000 == 0)
-						LOG.info("index(), biopax objects left to index: " + left);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
 			});
 		}
-		
-		exec.shutdown(); //stop accepting new tasks	
-		try { //wait
+
+		try {
+			List<BioPAXElement> batch = new ArrayList<>(INDEX_BATCH_SIZE);
+			for (BioPAXElement bpe : objects) {
+				if (failure.get() != null)
+					break;
+				batch.add(bpe);
+				if (batch.size() == INDEX_BATCH_SIZE) {
+					queue.put(batch);
+					batch = new ArrayList<>(INDEX_BATCH_SIZE);
+				}
+			}
+			if (!batch.isEmpty())
+				queue.put(batch);
+			for (int i = 0; i < numWorkers; i++)
+				queue.put(endOfData);
+			exec.shutdown(); //stop accepting new tasks
 			exec.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
+			exec.shutdownNow();
 			throw new RuntimeException("Interrupted!", e);
 		}
-		
-		try {
-			indexWriter.close(); //wait for pending op., auto-commit, close.
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to close IndexWriter.", e);
-		} 
-		
-		//finally, create a new searcher manager
-		initSearcherManager();
+
+		if(failure.get() != null)
+			throw new RuntimeException("Failed to index", failure.get());
+
+		LOG.info("index(), added " + numDone.get() + " docs; " + docsPerSecond(numDone.get(), startTime) + " docs/s");
+	}
+
+	private static long docsPerSecond(long numDocs, long startTime) {
+		return numDocs * 1000 / Math.max(1, System.currentTimeMillis() - startTime);
 	}
 
 	// internal methods
@@ -467,10 +1550,11 @@ public class SearchEngine implements Indexer, Searcher {
 	 * because the {@link #index()} method cleans up the index)
 	 * 
 	 * Some fields also include biopax data type property values not only from 
-	 * the biopax object but also from its child elements, up to some depth 
-	 * (using key-value pairs in the pre-computed bpe.annotations map):
+	 * the biopax object but also from its child elements, up to some depth
+	 * (these are computed here, per document; only 'xrefid' values can be
+	 * pre-computed, e.g. using id-mapping, and put in the bpe.annotations map):
 	 * 
-	 *  'uri' - biopax object's absolute URI, index=yes, analyze=no, store=yes;
+	 *  'uri' - biopax object's absolute URI, index=yes, analyze=no, doc values=yes;
 	 * 
 	 *  'name' - names, analyze=yes, store=yes;
 	 * 
@@ -478,26 +1562,29 @@ public class SearchEngine implements Indexer, Searcher {
 	 *            such as Score.value, structureData, structureFormat, chemicalFormula, 
 	 *            availability, term, comment, patoData, author, source, title, url, published, 
 	 *            up to given depth/level; and also all 'pathway' field values are included here; 
-	 *            analyze=yes, store=yes;
+	 *            analyze=yes, store=yes, offsets in postings=yes (for excerpts);
 	 *
 	 *  'xrefid'  - Xref.id values - standard biological IDs - from a biopax object and some its child objects;
 	 *  			analyze=no, store=no;
 	 *  
 	 *  'datasource', 'organism' and 'pathway' - infer from this bpe and its child objects 
-	 *  									  	up to given depth/level, analyze=no, store=yes;
+	 *  									  	up to given depth/level, analyze=no, doc values (URIs)=yes;
+	 *  									  	(data sources and parent pathways come from the pre-computed tables);
 	 *  
 	 *  'numprocesses', 'numparticipants' - number of child processes,
-	 *  											participants; integer values as string; analyze=no, store=yes.
+	 *  											participants; numeric doc values only.
 	*/
-	void index(BioPAXElement bpe, IndexWriter indexWriter)
+	Document document(BioPAXElement bpe, InferredValues inferred, Suggester.Builder suggestions)
     {
 		// create a new document
 		final Document doc = new Document();
 
 		//(will be using StringField and KeywordAnalyser for this field)
 		final String uri = bpe.getUri();
-        // save URI: indexed, not analyzed, stored
-		doc.add(new StringField(FIELD_URI, uri, Field.Store.YES));
+        // save URI: indexed, not analyzed
+		doc.add(new StringField(FIELD_URI, uri, Field.Store.NO));
+		// and as doc values (to quickly collect all matching URIs with no scoring, make hits)
+		doc.add(new SortedDocValuesField(FIELD_URI, new BytesRef(uri)));
 //		doc.add(new StringField(FIELD_URI, uri.toLowerCase(), Field.Store.NO));
         //extract and index the last part of the uri (e.g., 'hsa00010' or like 'ProteinReference_ca123bd44...')
         if(uri.startsWith("http://")) {
@@ -507,59 +1594,53 @@ public class SearchEngine implements Indexer, Searcher {
 //			doc.add(new StringField(FIELD_URI, id.toLowerCase(), Field.Store.NO)); //let it be case-sensitive
         }
 
-		// index and store but not analyze/tokenize the biopax class name:
-		doc.add(new StringField(FIELD_TYPE, bpe.getModelInterface().getSimpleName().toLowerCase(), Field.Store.YES));
+		// index (and add to doc values) but not analyze/tokenize the biopax class name:
+		final String type = bpe.getModelInterface().getSimpleName().toLowerCase();
+		doc.add(new StringField(FIELD_TYPE, type, Field.Store.NO));
+		doc.add(new SortedDocValuesField(FIELD_TYPE, new BytesRef(type)));
 		
-		// make index fields from the annotations map (of pre-calculated/inferred values)
-		if(!bpe.getAnnotations().isEmpty())
-		{
-			if(bpe.getAnnotations().containsKey(FIELD_PATHWAY)) {
-				addPathways((Set<Pathway>)bpe.getAnnotations().get(FIELD_PATHWAY), doc);
-			}
-
-			if(bpe.getAnnotations().containsKey(FIELD_ORGANISM)) {
-				addOrganisms((Set<BioSource>)bpe.getAnnotations().get(FIELD_ORGANISM), doc);
-			}
-
-			if(bpe.getAnnotations().containsKey(FIELD_DATASOURCE)) {
-				addDatasources((Set<Provenance>)bpe.getAnnotations().get(FIELD_DATASOURCE), doc);
-			}
-
-			if(bpe.getAnnotations().containsKey(FIELD_KEYWORD)) {
-				for (String keyword : (Set<String>)bpe.getAnnotations().get(FIELD_KEYWORD)) {
-					Field f = new TextField(FIELD_KEYWORD, keyword.toLowerCase(), Field.Store.NO);
-					doc.add(f);
-				}
-			}
-
-			if(bpe.getAnnotations().containsKey(FIELD_N_PARTICIPANTS)) {
-				doc.add(new StoredField(FIELD_N_PARTICIPANTS,
-                    Integer.parseInt((String)bpe.getAnnotations().get(FIELD_N_PARTICIPANTS))));
-			}
+		// get or infer some important values if possible from this, child or parent objects:
+		for (String keyword : ModelUtils.getKeywords(bpe, 2, keywordsFilter)) {
+			// skip special (debugging) biopax comments generated by normalizer, merger, etc.
+			if(!keyword.startsWith("REPLACED ") && !keyword.contains("ADDED"))
+				doc.add(new Field(FIELD_KEYWORD, keyword.toLowerCase(), KEYWORD_FIELD_TYPE));
+		}
+		addDatasources(inferred.getDatasources(bpe), doc);
+		final Set<BioSource> organisms = ModelUtils.getOrganisms(bpe);
+		addOrganisms(organisms, doc);
+		final List<Pathway> pathways = inferred.getParentPathways(bpe);
+		addPathways(pathways, doc);
 
-			if(bpe.getAnnotations().containsKey(FIELD_N_PROCESSES)) {
-				doc.add(new StoredField(FIELD_N_PROCESSES,
-                    Integer.parseInt((String)bpe.getAnnotations().get(FIELD_N_PROCESSES))));
-			}
+		//add names, symbols to the auto-completion (more processes, participants, pathways - higher rank)
+		for(String entry : Suggester.entries(bpe, organisms,
+			1 + inferred.getNumProcesses(bpe) + inferred.getNumParticipants(bpe) + pathways.size()))
+		{
+			doc.add(new StringField(FIELD_SUGGEST, entry, Field.Store.NO));
+			if(suggestions != null)
+				suggestions.add(entry);
+		}
 
-			// Add xref IDs to the index (IDs are prepared and stored in advance
-			// in the annotations map, under FIELD_XREFID key)
-			Set<String> ids = (bpe.getAnnotations().containsKey(FIELD_XREFID))
-				? (Set<String>)bpe.getAnnotations().get(FIELD_XREFID) :CPathUtils.getXrefIds(bpe);
-			for (String id : ids) {
-				//index as not analyzed, not tokenized
-				doc.add(new StringField(FIELD_XREFID, id.toLowerCase(), Field.Store.NO));
-				doc.add(new StringField(FIELD_XREFID, id, Field.Store.NO));
-			}
+		//set <numparticipants> (PEs/Genes), <numprocesses> (interactions/pathways) fields:
+		if(bpe instanceof Process) {
+			int numProc = inferred.getNumProcesses(bpe); //except itself
+			int numPeAndG = inferred.getNumParticipants(bpe);
+			doc.add(new NumericDocValuesField(FIELD_N_PARTICIPANTS, numPeAndG));
+			doc.add(new NumericDocValuesField(FIELD_N_PROCESSES, numProc));
+		} else if(bpe instanceof Complex) {
+			int numPEs = inferred.getNumParticipants(bpe);
+			doc.add(new NumericDocValuesField(FIELD_N_PARTICIPANTS, numPEs));
 		}
 
-		bpe.getAnnotations().remove(FIELD_KEYWORD);
-		bpe.getAnnotations().remove(FIELD_DATASOURCE);
-		bpe.getAnnotations().remove(FIELD_ORGANISM);
-		bpe.getAnnotations().remove(FIELD_PATHWAY);
-		bpe.getAnnotations().remove(FIELD_N_PARTICIPANTS);
-		bpe.getAnnotations().remove(FIELD_N_PROCESSES);
-		bpe.getAnnotations().remove(FIELD_XREFID);
+		// Add xref IDs to the index (IDs can be prepared in advance, e.g. using id-mapping,
+		// and put in the annotations map under FIELD_XREFID key)
+		Set<String> ids = (Set<String>) bpe.getAnnotations().remove(FIELD_XREFID);
+		if(ids == null)
+			ids = CPathUtils.getXrefIds(bpe);
+		for (String id : ids) {
+			//index as not analyzed, not tokenized
+			doc.add(new StringField(FIELD_XREFID, id.toLowerCase(), Field.Store.NO));
+			doc.add(new StringField(FIELD_XREFID, id, Field.Store.NO));
+		}
 
 		// name (we store both original and lowercased names due to use of StringField and KeywordAnalyser)
 		if(bpe instanceof Named) {
@@ -580,25 +1661,33 @@ public class SearchEngine implements Indexer, Searcher {
 					doc.add(new StringField(FIELD_NAME, name.toLowerCase(), Field.Store.NO));
 					doc.add(new StringField(FIELD_NAME, name, Field.Store.NO));
 				}
-				doc.add(new TextField(FIELD_KEYWORD, name.toLowerCase(), Field.Store.NO));
+				doc.add(new Field(FIELD_KEYWORD, name.toLowerCase(), KEYWORD_FIELD_TYPE));
 			}
 		}
 
-		// write
-		try {
-			indexWriter.addDocument(doc);
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to index; " + bpe.getUri(), e);
+		//reversed terms (for the leading wildcard queries)
+		for(IndexableField field : new ArrayList<>(doc.getFields())) {
+			String reversedField = REVERSED_FIELDS.get(field.name());
+			if(reversedField == null)
+				continue;
+			if(FIELD_KEYWORD.equals(field.name())) //reversed by the analyzer
+				doc.add(new Field(reversedField, field.stringValue(), REVERSED_KEYWORD_FIELD_TYPE));
+			else
+				doc.add(new StringField(reversedField,
+					new StringBuilder(field.stringValue()).reverse().toString(), Field.Store.NO));
 		}
+
+		return doc;
 	}
 
-	private void addDatasources(Set<Provenance> set, Document doc) {
+	private void addDatasources(Collection<Provenance> set, Document doc) {
 		for (Provenance p : set) {
-			// Index (!) and store URI (untokenized) -
+			// Index (!) URI (untokenized) and add to the doc values -
 			// required to accurately calculate no. entities or to filter by data source
 			// (different data sources might share same names)
 			String u = p.getUri();
-			doc.add(new StringField(FIELD_DATASOURCE, u, Field.Store.YES));
+			doc.add(new StringField(FIELD_DATASOURCE, u, Field.Store.NO));
+			doc.add(new SortedSetDocValuesField(FIELD_DATASOURCE, new BytesRef(u)));
 
             //index the identifier part of uri as well
 			if(u.startsWith("http://")) {
@@ -616,8 +1705,8 @@ public class SearchEngine implements Indexer, Searcher {
 
 	private void addOrganisms(Set<BioSource> set, Document doc) {	
 		for(BioSource bs : set) {
-			// store URI as is (not indexed, not tokinized)
-			doc.add(new StoredField(FIELD_ORGANISM, bs.getUri()));
+			// only keep URI as is in the doc values (not indexed, not tokinized)
+			doc.add(new SortedSetDocValuesField(FIELD_ORGANISM, new BytesRef(bs.getUri())));
 				
 			// add organism names
 			for(String s : bs.getName()) {
@@ -643,13 +1732,14 @@ public class SearchEngine implements Indexer, Searcher {
 		}
 	}
 
-	private void addPathways(Set<Pathway> set, Document doc) {
+	private void addPathways(Collection<Pathway> set, Document doc) {
 		for(Pathway pw : set)
 		{
             final String uri = pw.getUri();
-			//URI, index=yes, analyze=no, store=yes (this is to find child objects by pathway URI)
+			//URI, index=yes, analyze=no, doc values=yes (this is to find child objects by pathway URI)
             // we want searching by URI or its ending part (id) be case sensitive
-			doc.add(new StringField(FIELD_PATHWAY, uri, Field.Store.YES));
+			doc.add(new StringField(FIELD_PATHWAY, uri, Field.Store.NO));
+			doc.add(new SortedSetDocValuesField(FIELD_PATHWAY, new BytesRef(uri)));
 //			doc.add(new StringField(FIELD_PATHWAY, uri.toLowerCase(), Field.Store.NO));
 			//also, extract and index the last part of the uri (e.g., 'hsa00010' or 'r-hsa-201451')
             if(uri.startsWith("http://")) {
@@ -705,17 +1795,11 @@ public class SearchEngine implements Indexer, Searcher {
 		}		
 		//AND type	
 		if(type != null) { //add biopax class filter
-			BooleanQuery.Builder query = new BooleanQuery.Builder().
-				add(new TermQuery(new Term(FIELD_TYPE, type.getSimpleName().toLowerCase())), Occur.SHOULD);//OR
-			//for each biopax subclass (interface), add the name to the filter query
-			for(Class<? extends BioPAXElement> subType : SimpleEditorMap.L3.getKnownSubClassesOf(type)) {
-				query.add(new TermQuery(new Term(FIELD_TYPE, subType.getSimpleName().toLowerCase())), Occur.SHOULD);//OR
-			}		
-			builder.add(query.build(), Occur.MUST);
+			builder.add(typeQuery(type), Occur.MUST);
 		}
 
+		//it gets cached (LRUQueryCache, FilterCachingPolicy) when used as a FILTER clause
 		BooleanQuery filter = builder.build();
-		//TODO: use LRUQueryCache with the filter somewhere, e.g.: Query q = queryCache.doCache(filter, defaultCachingPolicy);
 
 		if(!filter.clauses().isEmpty()) {
 			return filter;
@@ -723,6 +1807,25 @@ public class SearchEngine implements Indexer, Searcher {
 			return null;
 	}
 
+	/*
+	 * Matches objects of the biopax type or any of its sub-types:
+	 * type OR subtype OR subtype...
+	 * (built once per type, and the same query object then hits the query cache)
+	 */
+	private Query typeQuery(Class<? extends BioPAXElement> type)
+	{
+		return typeQueries.computeIfAbsent(type, t -> {
+			BooleanQuery.Builder query = new BooleanQuery.Builder().
+				add(new TermQuery(new Term(FIELD_TYPE, t.getSimpleName().toLowerCase())), Occur.SHOULD);//OR
+			//for each biopax subclass (interface), add the name to the filter query
+			for(Class<? extends BioPAXElement> subType : SimpleEditorMap.L3.getKnownSubClassesOf(t)) {
+				if(subType != t)
+					query.add(new TermQuery(new Term(FIELD_TYPE, subType.getSimpleName().toLowerCase())), Occur.SHOULD);//OR
+			}
+			return query.build();
+		});
+	}
+
 	/*
 	 * Values are joint with OR, but if a value
 	 * has whitespace symbols, it also make a sub-query,
@@ -62,6 +62,29 @@ public class Settings
   private Boolean sbgnLayoutEnabled;
   private String xmlBase;
   private Integer maxHitsPerPage;
+  private Integer queryCacheSize;
+  private Integer queryCacheRamMb;
+  private Integer indexThreads;
+  private Integer excerptTimeLimit;
+  private Integer searchCacheSize;
+  private Integer searchTimeLimit;
+  private Integer searchMaxVisits;
+  private Integer indexMaxSegments;
+  private Boolean indexCompoundFiles;
+  private Integer searchThreads;
+  private Long graphCacheSize;
+  private Integer graphThreads;
+  private Integer graphQueryParallelism;
+  private Integer outputCacheSize;
+  private Map<String, Integer> commandThreads = new HashMap<>();
+  private Map<String, Integer> commandQueue = new HashMap<>();
+  private Integer commandRetryAfter;
+  private Map<String, Double> clientRate = new HashMap<>();
+  private Map<String, Integer> clientBurst = new HashMap<>();
+  private Map<String, Integer> clientConcurrency = new HashMap<>();
+  private Set<String> trustedProxies = new HashSet<>();
+  private Integer batchMaxCost;
+  private Integer batchParallelism;
   private String metadataLocation = "file:" + Paths.get(homeDir(), METADATA_FILE).toString();
   private String name;
   private String description;
@@ -94,6 +117,301 @@ public class Settings
     this.maxHitsPerPage = maxHitsPerPage;
   }
 
+  /**
+   * Max number of the full-text search filters
+   * (by type, datasource, organism) to keep in the query cache.
+   * @return
+   */
+  public Integer getQueryCacheSize() {
+    return queryCacheSize;
+  }
+
+  public void setQueryCacheSize(Integer queryCacheSize) {
+    this.queryCacheSize = queryCacheSize;
+  }
+
+  /**
+   * Max RAM (MB) the cached full-text search filters may use.
+   * @return
+   */
+  public Integer getQueryCacheRamMb() {
+    return queryCacheRamMb;
+  }
+
+  public void setQueryCacheRamMb(Integer queryCacheRamMb) {
+    this.queryCacheRamMb = queryCacheRamMb;
+  }
+
+  /**
+   * Number of threads to build the full-text index documents
+   * (default - the number of available processors).
+   * @return
+   */
+  public Integer getIndexThreads() {
+    return indexThreads;
+  }
+
+  public void setIndexThreads(Integer indexThreads) {
+    this.indexThreads = indexThreads;
+  }
+
+  /**
+   * Max. time (ms) to spend on highlighting the hits of one search request
+   * (default - {@link SearchEngine#DEFAULT_EXCERPT_TIME_LIMIT_MS}).
+   * @return
+   */
+  public Integer getExcerptTimeLimit() {
+    return excerptTimeLimit;
+  }
+
+  public void setExcerptTimeLimit(Integer excerptTimeLimit) {
+    this.excerptTimeLimit = excerptTimeLimit;
+  }
+
+  /**
+   * Max number of parsed full-text queries and of search results pages to cache
+   * (default - {@link SearchEngine#DEFAULT_SEARCH_CACHE_SIZE}; 0 - no caching).
+   * @return
+   */
+  public Integer getSearchCacheSize() {
+    return searchCacheSize;
+  }
+
+  public void setSearchCacheSize(Integer searchCacheSize) {
+    this.searchCacheSize = searchCacheSize;
+  }
+
+  /**
+   * Max. time (ms) to spend on one full-text search request, after which
+   * the hits found so far are returned as partial results
+   * (default - {@link SearchEngine#DEFAULT_SEARCH_TIME_LIMIT_MS}; 0 - no limit).
+   * @return
+   */
+  public Integer getSearchTimeLimit() {
+    return searchTimeLimit;
+  }
+
+  public void setSearchTimeLimit(Integer searchTimeLimit) {
+    this.searchTimeLimit = searchTimeLimit;
+  }
+
+  /**
+   * Max. number of matching documents a full-text search request may go through
+   * before it returns the hits found so far as partial results (default - 0, no limit).
+   * @return
+   */
+  public Integer getSearchMaxVisits() {
+    return searchMaxVisits;
+  }
+
+  public void setSearchMaxVisits(Integer searchMaxVisits) {
+    this.searchMaxVisits = searchMaxVisits;
+  }
+
+  /**
+   * Max. number of segments to merge the new full-text index into
+   * (default - {@link SearchEngine#DEFAULT_INDEX_MAX_SEGMENTS}; 0 - do not merge).
+   * @return
+   */
+  public Integer getIndexMaxSegments() {
+    return indexMaxSegments;
+  }
+
+  public void setIndexMaxSegments(Integer indexMaxSegments) {
+    this.indexMaxSegments = indexMaxSegments;
+  }
+
+  /**
+   * Whether to use the compound (one per segment) index files (default - false).
+   * @return
+   */
+  public Boolean getIndexCompoundFiles() {
+    return indexCompoundFiles;
+  }
+
+  public void setIndexCompoundFiles(Boolean indexCompoundFiles) {
+    this.indexCompoundFiles = indexCompoundFiles;
+  }
+
+  /**
+   * Number of threads to search the full-text index segments in parallel
+   * (default - 0, sequentially, on the request thread).
+   * @return
+   */
+  public Integer getSearchThreads() {
+    return searchThreads;
+  }
+
+  public void setSearchThreads(Integer searchThreads) {
+    this.searchThreads = searchThreads;
+  }
+
+  /**
+   * Max. total size of the cached graph query results, in URIs
+   * (each result is the set of its auto-completed elements' URIs); 0 - no caching.
+   * @return
+   */
+  public Long getGraphCacheSize() {
+    return graphCacheSize;
+  }
+
+  public void setGraphCacheSize(Long graphCacheSize) {
+    this.graphCacheSize = graphCacheSize;
+  }
+
+  /**
+   * Size of the thread pool shared by the graph queries to map the seed groups
+   * and traverse from each group in parallel (0 - on the request thread).
+   * @return
+   */
+  public Integer getGraphThreads() {
+    return graphThreads;
+  }
+
+  public void setGraphThreads(Integer graphThreads) {
+    this.graphThreads = graphThreads;
+  }
+
+  /**
+   * Max. number of the parallel tasks per graph query.
+   * @return
+   */
+  public Integer getGraphQueryParallelism() {
+    return graphQueryParallelism;
+  }
+
+  public void setGraphQueryParallelism(Integer graphQueryParallelism) {
+    this.graphQueryParallelism = graphQueryParallelism;
+  }
+
+  /**
+   * Thread pool size per heavy web service command, such as get, graph, traverse
+   * (commands without it run on the servlet container thread).
+   * @return
+   */
+  public Map<String, Integer> getCommandThreads() {
+    return commandThreads;
+  }
+
+  public void setCommandThreads(Map<String, Integer> commandThreads) {
+    this.commandThreads = commandThreads;
+  }
+
+  /**
+   * Max. number of the waiting requests per web service command (see {@link #getCommandThreads()});
+   * more are rejected at once with HTTP 503.
+   * @return
+   */
+  public Map<String, Integer> getCommandQueue() {
+    return commandQueue;
+  }
+
+  public void setCommandQueue(Map<String, Integer> commandQueue) {
+    this.commandQueue = commandQueue;
+  }
+
+  /**
+   * Seconds for a client to wait before retrying a rejected request (Retry-After).
+   * @return
+   */
+  public Integer getCommandRetryAfter() {
+    return commandRetryAfter;
+  }
+
+  public void setCommandRetryAfter(Integer commandRetryAfter) {
+    this.commandRetryAfter = commandRetryAfter;
+  }
+
+  /**
+   * Max. sustained rate (requests per second) per command (e.g., graph, get) from one client (IP address);
+   * more requests are rejected with HTTP 429 (commands without it are not limited).
+   * @return
+   */
+  public Map<String, Double> getClientRate() {
+    return clientRate;
+  }
+
+  public void setClientRate(Map<String, Double> clientRate) {
+    this.clientRate = clientRate;
+  }
+
+  /**
+   * Max. number of requests per command a client can send at once,
+   * after being idle for a while (see {@link #getClientRate()}); defaults to the rate.
+   * @return
+   */
+  public Map<String, Integer> getClientBurst() {
+    return clientBurst;
+  }
+
+  public void setClientBurst(Map<String, Integer> clientBurst) {
+    this.clientBurst = clientBurst;
+  }
+
+  /**
+   * Max. number of concurrent requests per command (e.g., graph, get) from one client;
+   * more are rejected with HTTP 429 (commands without it are not limited).
+   * @return
+   */
+  public Map<String, Integer> getClientConcurrency() {
+    return clientConcurrency;
+  }
+
+  public void setClientConcurrency(Map<String, Integer> clientConcurrency) {
+    this.clientConcurrency = clientConcurrency;
+  }
+
+  /**
+   * IP addresses of the reverse proxies (load balancers) in front of the web service;
+   * only the requests from these are identified by the X-Forwarded-For header
+   * for the per-client limits (see {@link #getClientRate()}), others - by the remote address.
+   * @return
+   */
+  public Set<String> getTrustedProxies() {
+    return trustedProxies;
+  }
+
+  public void setTrustedProxies(Set<String> trustedProxies) {
+    this.trustedProxies = trustedProxies;
+  }
+
+  /**
+   * Max. total cost of a batch query, where a get or traverse sub-query costs the number of URIs/IDs,
+   * and a graph one - the number of sources and targets times the limit; larger batches are rejected.
+   * @return
+   */
+  public Integer getBatchMaxCost() {
+    return batchMaxCost;
+  }
+
+  public void setBatchMaxCost(Integer batchMaxCost) {
+    this.batchMaxCost = batchMaxCost;
+  }
+
+  /**
+   * Max. number of the sub-queries of a batch query that run at the same time.
+   * @return
+   */
+  public Integer getBatchParallelism() {
+    return batchParallelism;
+  }
+
+  public void setBatchParallelism(Integer batchParallelism) {
+    this.batchParallelism = batchParallelism;
+  }
+
+  /**
+   * Max. total size (MB) of the converted query results cached on disk (0 - no caching).
+   * @return
+   */
+  public Integer getOutputCacheSize() {
+    return outputCacheSize;
+  }
+
+  public void setOutputCacheSize(Integer outputCacheSize) {
+    this.outputCacheSize = outputCacheSize;
+  }
+
   public String getMetadataLocation() {
     return metadataLocation;
   }
@@ -319,8 +637,8 @@ public class Settings
 
 
   /**
-   * Gets the full path to query cache directory.
-   * @deprecated
+   * Gets the full path to query cache directory
+   * (converted query results, see {@link OutputCache}).
    * @return
    */
   public String cacheDir() {
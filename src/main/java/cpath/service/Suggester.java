@@ -0,0 +1,226 @@
+package cpath.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.*;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.level3.*;
+import org.biopax.paxtools.util.ClassFilterSet;
+
+/**
+ * Name and gene symbol auto-completion (prefix lookup) using a weighted FST,
+ * the same way Lucene's WFSTCompletionLookup does, with only lucene-core.
+ *
+ * Each key is: organism (taxonomy id; empty - any) + separator + lowercase name
+ * + separator + the name (as is, from the most weighted element); its output is
+ * (Integer.MAX_VALUE - weight), so that the top N shortest paths are the most weighted names.
+ * Each indexed element also gets its entries (key, text and weight) as terms of a separate field,
+ * so that the suggester can be re-built from the index after some docs are deleted or replaced.
+ *
+ * @author rodche
+ */
+final class Suggester {
+
+	static final String FILE_NAME = "suggest.fst";
+
+	private static final char ORGANISM_SEP = '\u001F';
+	private static final char TEXT_SEP = '\u001E';
+	private static final char WEIGHT_SEP = '\u001D';
+	private static final int MIN_TEXT_LENGTH = 2;
+	private static final int MAX_TEXT_LENGTH = 100;
+
+	private final FST<Long> fst;
+
+	private Suggester(FST<Long> fst) {
+		this.fst = fst;
+	}
+
+	/**
+	 * Loads the suggester from the file.
+	 *
+	 * @param file FST file
+	 * @return suggester or null when there is no such file
+	 * @throws IOException when cannot read the file
+	 */
+	static Suggester load(Path file) throws IOException {
+		return (Files.exists(file))
+			? new Suggester(FST.read(file, PositiveIntOutputs.getSingleton())) : null;
+	}
+
+	/**
+	 * Finds the most weighted names that start with the prefix (case insensitive).
+	 *
+	 * @param prefix beginning of a name or symbol
+	 * @param organism taxonomy id or null (any organism)
+	 * @param limit max. number of suggestions
+	 * @return names
+	 * @throws IOException when the FST lookup fails
+	 */
+	List<String> lookup(String prefix, String organism, int limit) throws IOException {
+		final List<String> suggestions = new ArrayList<>();
+		final BytesRef key = new BytesRef(organismKey(organism) + ORGANISM_SEP + prefix.trim().toLowerCase());
+		final FST.BytesReader reader = fst.getBytesReader();
+		final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+		FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<>());
+		Long output = outputs.getNoOutput();
+		for(int i = key.offset; i < key.offset + key.length; i++) {
+			if(fst.findTargetArc(key.bytes[i] & 0xFF, arc, arc, reader) == null)
+				return suggestions; //no such prefix
+			output = outputs.add(output, arc.output);
+		}
+
+		Util.TopNSearcher<Long> searcher = new Util.TopNSearcher<>(fst, limit, limit, Comparator.naturalOrder());
+		searcher.addStartPaths(arc, output, true, new IntsRefBuilder());
+		BytesRefBuilder suffix = new BytesRefBuilder();
+		for(Util.Result<Long> result : searcher.search()) {
+			Util.toBytesRef(result.input, suffix);
+			String s = suffix.get().utf8ToString();
+			suggestions.add(s.substring(s.indexOf(TEXT_SEP) + 1));
+		}
+		return suggestions;
+	}
+
+	private static String organismKey(String organism) {
+		return (organism != null) ? organism.trim().toLowerCase() : "";
+	}
+
+	/**
+	 * Gets the entries for the names (and HGNC symbols) of the element for any and each of the organisms.
+	 *
+	 * @param bpe pathway, physical entity, gene or entity reference (other types have no entries)
+	 * @param organisms the element's organisms (inferred)
+	 * @param weight positive number (e.g., no. child processes and participants)
+	 * @return entries to add to the {@link Builder} and to the index
+	 */
+	static List<String> entries(BioPAXElement bpe, Collection<BioSource> organisms, long weight) {
+		if(!(bpe instanceof Pathway || bpe instanceof PhysicalEntity
+			|| bpe instanceof Gene || bpe instanceof EntityReference))
+			return Collections.emptyList();
+
+		Set<String> texts = new HashSet<>(((Named) bpe).getName());
+		for(Xref x : ((XReferrable) bpe).getXref()) {
+			if(x.getDb() != null && x.getId() != null && x.getDb().equalsIgnoreCase("hgnc symbol"))
+				texts.add(x.getId());
+		}
+		Set<String> organismKeys = new HashSet<>();
+		organismKeys.add(organismKey(null));
+		for(BioSource bs : organisms) {
+			for(UnificationXref x : new ClassFilterSet<>(bs.getXref(), UnificationXref.class)) {
+				if(x.getId() != null)
+					organismKeys.add(organismKey(x.getId()));
+			}
+		}
+
+		final long w = Math.min(weight, Integer.MAX_VALUE);
+		List<String> entries = new ArrayList<>();
+		for(String text : texts) {
+			text = text.trim();
+			if(text.length() < MIN_TEXT_LENGTH || text.length() > MAX_TEXT_LENGTH)
+				continue;
+			for(String org : organismKeys)
+				entries.add(org + ORGANISM_SEP + text.toLowerCase() + TEXT_SEP + text + WEIGHT_SEP + w);
+		}
+		return entries;
+	}
+
+	/*
+	 * Collects the names (thread-safe) and then builds the suggester.
+	 * Same name (case insensitive) gets the max. weight of the elements that have it.
+	 */
+	static final class Builder {
+		private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+		private static final class Entry {
+			final String text;
+			final long weight;
+
+			Entry(String text, long weight) {
+				this.text = text;
+				this.weight = weight;
+			}
+		}
+
+		Builder() {
+		}
+
+		/**
+		 * Adds the entry (same name gets the max. weight).
+		 *
+		 * @param entry see {@link Suggester#entries(BioPAXElement, Collection, long)}
+		 */
+		void add(String entry) {
+			int t = entry.indexOf(TEXT_SEP);
+			int w = entry.lastIndexOf(WEIGHT_SEP);
+			Entry e = new Entry(entry.substring(t + 1, w), Long.parseLong(entry.substring(w + 1)));
+			entries.merge(entry.substring(0, t), e, (a, b) -> (b.weight > a.weight) ? b : a);
+		}
+
+		/**
+		 * Adds the entries of all the live docs in the index.
+		 *
+		 * @param reader index reader
+		 * @param field where the docs have their entries
+		 * @throws IOException when cannot read the index
+		 */
+		void addAll(IndexReader reader, String field) throws IOException {
+			for(LeafReaderContext leaf : reader.leaves()) {
+				Terms terms = leaf.reader().terms(field);
+				if(terms == null)
+					continue;
+				//the terms of the deleted docs stay there until merged
+				Bits liveDocs = leaf.reader().getLiveDocs();
+				TermsEnum termsEnum = terms.iterator();
+				PostingsEnum postings = null;
+				for(BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+					postings = termsEnum.postings(postings, PostingsEnum.NONE);
+					for(int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+						if(liveDocs == null || liveDocs.get(doc)) {
+							add(term.utf8ToString());
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Builds and saves the FST (see {@link Suggester#load(Path)}).
+		 *
+		 * @param file where to save
+		 * @throws IOException when cannot build or save
+		 */
+		void build(Path file) throws IOException {
+			List<BytesRef> keys = new ArrayList<>(entries.size());
+			for(Map.Entry<String, Entry> e : entries.entrySet())
+				keys.add(new BytesRef(e.getKey() + TEXT_SEP + e.getValue().text));
+			Collections.sort(keys); //FST inputs must be sorted (unsigned bytes order)
+
+			org.apache.lucene.util.fst.Builder<Long> builder =
+				new org.apache.lucene.util.fst.Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+			IntsRefBuilder scratch = new IntsRefBuilder();
+			for(BytesRef key : keys) {
+				String s = key.utf8ToString();
+				long weight = entries.get(s.substring(0, s.indexOf(TEXT_SEP))).weight;
+				builder.add(Util.toIntsRef(key, scratch), Integer.MAX_VALUE - weight);
+			}
+			Files.deleteIfExists(file);
+			FST<Long> fst = builder.finish();
+			if(fst != null) //null when there're no names
+				fst.save(file);
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.io.*;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import cpath.service.Settings;
 import org.biopax.paxtools.controller.PathAccessor;
@@ -63,6 +64,38 @@ public interface CPathService {
   ServiceResponse search(String queryStr,
                          int page, Class<? extends BioPAXElement> biopaxClass, String[] dsources, String[] organisms);
 
+  /**
+   * Full-text search for the BioPAX elements - the next page after the cursor
+   * (deep paging, which costs the same as getting the first page).
+   *
+   * @param queryStr search expression (a keyword or Lucene query string)
+   * @param cursor previous search response's cursor (null or empty to get the first page)
+   * @param biopaxClass biopax type (interface, such as Pathway, Complex)
+   * @param dsources URIs of data sources
+   * @param organisms URIs of organisms
+   * @return search/error response
+   */
+  ServiceResponse searchAfter(String queryStr,
+                              String cursor, Class<? extends BioPAXElement> biopaxClass, String[] dsources, String[] organisms);
+
+  /**
+   * Full-text search for the BioPAX elements - the hits page by number or cursor,
+   * optionally with the facet counts (all hits by datasource, organism, type).
+   *
+   * @param queryStr search expression (a keyword or Lucene query string)
+   * @param page search results page no. (used when the cursor is null or empty)
+   * @param cursor previous search response's cursor
+   * @param biopaxClass biopax type (interface, such as Pathway, Complex)
+   * @param dsources URIs of data sources
+   * @param organisms URIs of organisms
+   * @param facets whether to count the hits by datasource, organism, type
+   * @param excerpt whether to add the highlighted matching keywords to the hits
+   * @return search/error response
+   */
+  ServiceResponse search(String queryStr, int page, String cursor,
+                         Class<? extends BioPAXElement> biopaxClass, String[] dsources, String[] organisms,
+                         boolean facets, boolean excerpt);
+
   /**
    * Runs a neighborhood query using the given parameters
    * (returns a sub-model in the specified format,
@@ -155,6 +188,15 @@ public interface CPathService {
    */
   ServiceResponse topPathways(String q, String[] organisms, String[] datasources);
 
+  /**
+   * Auto-completion of names and gene symbols.
+   *
+   * @param prefix beginning of a name or symbol
+   * @param organism taxonomy ID (filter) or null
+   * @return suggestions or error response object
+   */
+  ServiceResponse suggest(String prefix, String organism);
+
   /**
    * Maps an identifier to primary ID(s) of a given type.
    * Auto-detects the source ID type or tries all types.
@@ -177,6 +219,28 @@ public interface CPathService {
    */
   Set<String> map(Collection<String> fromIds, String toDb);
 
+  /**
+   * Maps the identifiers (e.g., gene symbols, UniProt, ChEBI IDs) to the URIs of
+   * BioPAX elements of any type, all at once, e.g., for a batch of queries (see {@link #withResolved});
+   * URIs are not included.
+   *
+   * @param identifiers IDs or URIs
+   * @return URIs by identifier (only the identifiers that matched)
+   */
+  Map<String, Set<String>> resolve(Collection<String> identifiers);
+
+  /**
+   * Runs the query in the current thread using the identifiers already mapped to URIs
+   * (see {@link #resolve(Collection)}) instead of looking them up again;
+   * the mapping must include all the identifiers the query uses.
+   *
+   * @param uris URIs by identifier
+   * @param query calls e.g. {@link #fetch}, {@link #traverse} or a graph query method
+   * @param <T> result type
+   * @return the query result
+   */
+  <T> T withResolved(Map<String, Set<String>> uris, Supplier<T> query);
+
   /**
    * Record web service and data access events.
    * @param ip IP address
@@ -203,6 +267,15 @@ public interface CPathService {
    */
   void index() throws IOException;
 
+  /**
+   * Updates the existing BioPAX full-text index:
+   * replaces the documents of the data source only
+   * (use after the data source's BioPAX model was rebuilt and merged).
+   *
+   * @param metadata data source metadata
+   */
+  void reindex(Metadata metadata) throws IOException;
+
   // Metadata and data processing methods
 
   /**
@@ -16,7 +16,7 @@ public enum Cmd {
 		"extract the corresponding sub-model to BioPAX or another supported format. ",
 		"/search?q=brca*&organism=9606",
 		"Search Response that lists Search Hits - XML (default) or JSON (when called as '/search.json?')",
-		q, page, type, organism, datasource, user),
+		q, page, cursor, facets, excerpt, type, organism, datasource, user),
 	GET("Gets a BioPAX element or sub-model by ID(s).",
         "/get?uri=http://identifiers.org/uniprot/P38398",
         "BioPAX by default, other formats as specified by the format parameter.",
@@ -30,10 +30,22 @@ public enum Cmd {
     	"/top_pathways",
         "Search Response - XML (JSON, when called as '/top_pathways.json?') contains the list of all top pathways.", 
         organism, datasource, q, user),
+    SUGGEST("Auto-completion: names and gene symbols that start with the given prefix (the most used first); " +
+    	"can filter by organism (taxonomy ID).",
+    	"/suggest?q=brc&organism=9606",
+    	"Suggest Response - XML (or JSON, when called as '/suggest.json?') - lists up to ten names.",
+    	q, organism, user),
     TRAVERSE("Gets data property values (or elements's URIs) at the end of the property path.",
     	"/traverse?uri=http://identifiers.org/uniprot/P38398&path=ProteinReference/organism/displayName",
     	"Traverse Response - XML (or JSON, when called as '/traverse.json?').", 
-    	path, uri, user)
+    	path, uri, user),
+    BATCH("Runs many get, traverse and graph queries (POST a JSON) at once; all the identifiers are mapped " +
+    	"to BioPAX URIs together, and the sub-queries run in parallel. A batch cannot exceed the max. cost " +
+    	"(e.g., number of URIs, or sources times the limit for graph queries).",
+    	"/batch {\"queries\":[{\"cmd\":\"get\",\"uri\":[\"TP53\"],\"format\":\"sif\"},...]}",
+    	"NDJSON - one JSON object per line, as each sub-query completes: index, cmd, status, " +
+    	"and data (text result or traverse response) or error.",
+    	queries, user)
     ;
 	
 	private final CmdArgs[] args; //Array is better for use in json/jsp than List/Set
@@ -10,6 +10,9 @@ public enum CmdArgs {
 	uri("known BioPAX entity URI or standard identifier (e.g., gene symbol); multiple values are supported (array)"),
     q("query string (full-text search supports Lucene query syntax)"),
     page("full-text search query results page number (>=0)"),
+    cursor("full-text search results cursor (from the previous response) to get the next page; 'page' is then ignored"),
+    facets("'true' or 'false' (default); whether to count all the full-text search hits by datasource, organism and type"),
+    excerpt("'true' or 'false' (default); whether to add the highlighted matching keywords to the full-text search hits"),
 	type("a BioPAX class name"),
 	kind("graph query type"),
 	format("output format name"),
@@ -29,6 +32,7 @@ public enum CmdArgs {
 			" whether to skip traversing into sub-pathways of pathways in the result sub-model"),
 	layout("when format is SBGN - 'true' or 'false' (default) -" +
 		" whether to apply the built-in COSE layout or not"),
+	queries("list of the get, traverse, graph queries (JSON objects with 'cmd' and the command's parameters)"),
 	;
 	
 	private final String info;
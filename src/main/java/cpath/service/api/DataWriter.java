@@ -0,0 +1,20 @@
+package cpath.service.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the result data directly to the output stream
+ * (can be a {@link cpath.service.jaxb.DataResponse} data value,
+ * instead of a temporary file).
+ */
+@FunctionalInterface
+public interface DataWriter {
+
+	/**
+	 * Writes the data.
+	 * @param os  - output stream; it is not closed here.
+	 * @throws IOException when writing fails
+	 */
+	void write(OutputStream os) throws IOException;
+}
@@ -1,5 +1,37 @@
 package cpath.service.api;
 
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import cpath.service.jpa.Metadata;
+import org.biopax.paxtools.model.BioPAXElement;
+
 public interface Indexer {
+	/**
+	 * Builds a new full-text index of the entire BioPAX model.
+	 */
 	void index();
+
+	/**
+	 * Adds to the existing index the objects from the data source
+	 * (i.e., only that provider's entities, entity references and provenance).
+	 *
+	 * @param datasource data source metadata
+	 * @param prepare called with exactly the objects to index before their documents are made
+	 *                (e.g., to put the id-mapping results to the annotations)
+	 * @throws IllegalArgumentException when there is no such data source in the model
+	 */
+	void index(Metadata datasource, Consumer<Collection<BioPAXElement>> prepare);
+
+	/**
+	 * Replaces the data source's documents in the existing index:
+	 * deletes the documents by data source URI and indexes that provider's objects
+	 * as well as the deleted docs' objects that are still in the model (e.g., shared with other providers).
+	 *
+	 * @param datasource data source metadata
+	 * @param prepare called with exactly the objects to re-index before their documents are made
+	 *                (e.g., to put the id-mapping results to the annotations)
+	 * @throws IllegalArgumentException when there is no such data source in the model
+	 */
+	void reindex(Metadata datasource, Consumer<Collection<BioPAXElement>> prepare);
 }
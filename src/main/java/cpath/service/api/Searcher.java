@@ -1,5 +1,11 @@
 package cpath.service.api;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import org.biopax.paxtools.model.BioPAXElement;
 
 import cpath.service.jaxb.SearchResponse;
@@ -18,4 +24,75 @@ public interface Searcher {
 	SearchResponse search(String query, int page,
   		Class<? extends BioPAXElement> filterByType, String[] datasources, String[] organisms);
 
+	/**
+	* Full-text search for BioPAX elements - the next hits page after the cursor.
+	* Unlike {@link #search(String, int, Class, String[], String[])} with page > 0,
+	* this costs the same as getting the first page, no matter how deep it is.
+	*
+	* @param query String (keywords or Lucene query string)
+	* @param cursor the value of {@link SearchResponse#getCursor()} from the previous page (null - first page)
+	* @param filterByType - class filter
+	* @param datasources  - filter by datasource
+	* @param organisms - filter by organism
+	* @return ordered list of hits (by score)
+	* @throws IllegalArgumentException when the cursor is not valid
+	*/
+	SearchResponse searchAfter(String query, String cursor,
+		Class<? extends BioPAXElement> filterByType, String[] datasources, String[] organisms);
+
+	/**
+	* Full-text search for BioPAX elements - the hits page by number or cursor,
+	* optionally with the facet counts (all hits by datasource, organism, type),
+	* which are collected in the same pass as the hits.
+	*
+	* @param query String (keywords or Lucene query string)
+	* @param page hits page number (used when the cursor is null or empty)
+	* @param cursor the value of {@link SearchResponse#getCursor()} from the previous page
+	* @param filterByType - class filter
+	* @param datasources  - filter by datasource
+	* @param organisms - filter by organism
+	* @param facets - whether to add the facet counts to the response
+	* @param excerpt - whether to add the highlighted matching keywords to the hits (within a time limit)
+	* @return ordered list of hits (by score)
+	* @throws IllegalArgumentException when the cursor is not valid
+	*/
+	SearchResponse search(String query, int page, String cursor,
+		Class<? extends BioPAXElement> filterByType, String[] datasources, String[] organisms,
+		boolean facets, boolean excerpt);
+
+	/**
+	* Finds the URIs of all the BioPAX elements matching the query and filters
+	* in one pass over the matching index documents (no scoring, no pagination, no hit beans).
+	*
+	* @param query String (keywords or Lucene query string; "*" - all elements of the type)
+	* @param filterByType - class filter
+	* @param datasources  - filter by datasource
+	* @param organisms - filter by organism
+	* @param action - what to do with each URI (in no particular order)
+	*/
+	void collectUris(String query, Class<? extends BioPAXElement> filterByType,
+		String[] datasources, String[] organisms, Consumer<String> action);
+
+	/**
+	* Auto-completion: names and gene symbols (of pathways, physical entities, genes
+	* and entity references) that start with the prefix, the most used first
+	* (a lookup in the in-memory structure built along with the index - no query parsing).
+	*
+	* @param prefix - beginning of a name or symbol (case insensitive)
+	* @param organism - filter by organism taxonomy ID (or null)
+	* @return suggestions (up to ten)
+	*/
+	List<String> suggest(String prefix, String organism);
+
+	/**
+	* Maps identifiers (e.g., gene symbols, UniProt, ChEBI IDs - the 'xrefid' field values)
+	* to the URIs of BioPAX elements, all at once, without running a full-text query per ID
+	* (uses an in-memory lookup, built from the index on first use).
+	*
+	* @param ids - identifiers (exact match; or lowercase)
+	* @param types - BioPAX types (and their sub-types) to keep; empty - all types
+	* @return URIs by ID (only for the IDs that matched something)
+	*/
+	Map<String, Set<String>> resolve(Collection<String> ids, Collection<Class<? extends BioPAXElement>> types);
+
 }
@@ -13,6 +13,11 @@ public enum Status {
      */
     BAD_REQUEST(400, "Bad Request (missing or illegal arguments)"),
 
+    /**
+     * Too Many Requests from the same client (rate or concurrency limit)
+     */
+    TOO_MANY_REQUESTS(429, "Too Many Requests"),
+
     /**
      * Internal Server Error
      */
@@ -21,7 +26,12 @@ public enum Status {
     /**
      * Internal Server Error
      */
-    MAINTENANCE(503, "Server Is Temporarily Unavailable (Maintenance)");
+    MAINTENANCE(503, "Server Is Temporarily Unavailable (Maintenance)"),
+
+    /**
+     * Too many requests of the kind are being processed
+     */
+    BUSY(503, "Server Is Temporarily Unavailable (Too Many Requests)");
 
     private final Integer code;
     private final String msg;
@@ -22,6 +22,10 @@ public class DataResponse extends ServiceResponse {
 	@XmlTransient
 	private Set<String> providers; //pathway data provider standard names (for logging/stats)
 	private OutputFormat format;
+	@XmlTransient
+	private boolean cached; //data is a shared cached file (must not be deleted after use)
+	@XmlTransient
+	private Runnable release; //unpins the cached file
 	
 	public DataResponse() {
 		providers = Collections.emptySet();
@@ -56,4 +60,27 @@ public class DataResponse extends ServiceResponse {
 	public void setFormat(OutputFormat format) {
 		this.format = format;
 	}
+
+	@XmlTransient
+	public boolean isCached() {
+		return cached;
+	}
+	public void setCached(boolean cached) {
+		this.cached = cached;
+	}
+
+	public void setRelease(Runnable release) {
+		this.release = release;
+	}
+
+	/**
+	 * Tells that the cached file (see {@link #isCached()}) is no longer used by this response;
+	 * does nothing if the data is not cached or already released.
+	 */
+	public void release() {
+		Runnable r = release;
+		release = null;
+		if(r != null)
+			r.run();
+	}
 }
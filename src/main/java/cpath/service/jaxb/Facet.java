@@ -0,0 +1,52 @@
+package cpath.service.jaxb;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * Number of all the search hits (not only on the current page)
+ * per each value of an index field, such as datasource, organism, type.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "Facet")
+public class Facet implements Serializable {
+    @XmlAttribute(required = true)
+    private String field;
+
+    private List<FacetValue> facetValue;
+
+    public Facet() {
+	}
+
+    public Facet(String field) {
+		this.field = field;
+	}
+
+    public String getField() {
+        return field;
+    }
+    public void setField(String field) {
+        this.field = field;
+    }
+
+	public List<FacetValue> getFacetValue() {
+		if(facetValue == null) {
+			facetValue = new ArrayList<>();
+		}
+		return facetValue;
+	}
+	public void setFacetValue(List<FacetValue> facetValue) {
+		this.facetValue = facetValue;
+	}
+
+	@Override
+	public String toString() {
+		return field + getFacetValue().toString();
+	}
+}
@@ -0,0 +1,45 @@
+package cpath.service.jaxb;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+
+
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "FacetValue")
+public class FacetValue implements Serializable {
+    @XmlAttribute(required = true)
+    private String value; //e.g., datasource or organism URI, type name
+
+    @XmlAttribute(required = true)
+    private long count; //no. hits
+
+    public FacetValue() {
+	}
+
+    public FacetValue(String value, long count) {
+		this.value = value;
+		this.count = count;
+	}
+
+    public String getValue() {
+        return value;
+    }
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+	public long getCount() {
+		return count;
+	}
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	@Override
+	public String toString() {
+		return value + ":" + count;
+	}
+}
@@ -19,15 +19,23 @@ public class SearchResponse extends ServiceResponse {
     private Integer maxHitsPerPage;
     
     private List<SearchHit> searchHit; // count to get actual no. hits!
+
+    private List<Facet> facet; // optional; counts of all hits by datasource, organism, type
     
     @XmlAttribute
     private Integer pageNo; //search result page number
 
+    @XmlAttribute
+    private String cursor; //opaque next page pointer (when there might be more hits)
+
     @XmlAttribute
     private String comment;
 
 	@XmlAttribute
 	private String version;
+
+	@XmlAttribute
+	private Boolean partial; //true when the search was over the time or visits limit (some hits or excerpts can be missing)
     
     @XmlTransient
     private Set<String> providers; //pathway data provider standard names (for logging/stats)
@@ -51,6 +59,33 @@ public class SearchResponse extends ServiceResponse {
 		this.version = version;
 	}
 
+	/**
+	 * Whether these are partial results (some hits or hit excerpts could be missing),
+	 * because the search took too long; null or false - complete results.
+	 * @return
+	 */
+	public Boolean getPartial() {
+		return partial;
+	}
+
+	public void setPartial(Boolean partial) {
+		this.partial = partial;
+	}
+
+	/**
+	 * Opaque value to get the next hits page
+	 * (using a 'cursor' search query parameter);
+	 * null when this is the last page.
+	 * @return
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
 	public List<SearchHit> getSearchHit() {
         if (searchHit == null) {
             searchHit = new ArrayList<>();
@@ -62,6 +97,23 @@ public class SearchResponse extends ServiceResponse {
 		this.searchHit = searchHit;
 	}
 
+	/**
+	 * Counts of all the hits (not only this page)
+	 * by datasource, organism and BioPAX type, if requested;
+	 * otherwise - empty list.
+	 * @return
+	 */
+	public List<Facet> getFacet() {
+		if (facet == null) {
+			facet = new ArrayList<>();
+		}
+		return facet;
+	}
+
+	public void setFacet(List<Facet> facet) {
+		this.facet = facet;
+	}
+
     /**
      * The total number of hits
      * @return
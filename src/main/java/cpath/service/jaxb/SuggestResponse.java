@@ -0,0 +1,52 @@
+package cpath.service.jaxb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.*;
+
+@XmlRootElement(name="suggestResponse")
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "SuggestResponse")
+public class SuggestResponse extends ServiceResponse {
+	@XmlAttribute
+	private String prefix;
+
+	@XmlAttribute
+	private String version;
+
+	private List<String> suggestion;
+
+	public SuggestResponse() {
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public List<String> getSuggestion() {
+		if(suggestion == null) {
+			suggestion = new ArrayList<>();
+		}
+		return suggestion;
+	}
+	public void setSuggestion(List<String> suggestion) {
+		this.suggestion = suggestion;
+	}
+
+	@Override
+	@XmlTransient
+	public boolean isEmpty() {
+		return getSuggestion().isEmpty();
+	}
+}
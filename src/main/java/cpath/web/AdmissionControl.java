@@ -0,0 +1,305 @@
+package cpath.web;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import cpath.service.ErrorResponse;
+import cpath.service.Settings;
+import cpath.service.api.Cmd;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import static cpath.service.api.Status.TOO_MANY_REQUESTS;
+
+/**
+ * Per-client admission control for the web service commands (see {@link Cmd}):
+ * a token bucket rate limit per command (cpath2.client-rate.*, cpath2.client-burst.*) and
+ * the max. number of concurrent requests per command (cpath2.client-concurrency.*),
+ * both counted per client IP address, so that a single script cannot take all the
+ * threads and memory, e.g., with many parallel graph queries.
+ * The commands without a rate or concurrency limit (e.g., suggest, called as the user types) are not limited.
+ * Rejected requests get HTTP 429 with the Retry-After header.
+ * The client's address is the request's remote address or, when that is one of
+ * the trusted proxies (cpath2.trusted-proxies), the address the proxy got the request from
+ * (X-Forwarded-For). The idle clients are forgotten periodically.
+ */
+public class AdmissionControl extends OncePerRequestFilter {
+  private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long SWEEP_SECONDS = 60L;
+
+  private final double[] rate; //tokens per nanosecond, by Cmd.ordinal() (0 - no limit)
+  private final double[] burst; //by Cmd.ordinal()
+  private final int[] concurrency; //by Cmd.ordinal() (0 - no limit)
+  private final LongSupplier clock;
+  private final Set<String> trustedProxies;
+  private final Map<String, Client> clients = new ConcurrentHashMap<>();
+  private ScheduledExecutorService sweeper;
+
+  /**
+   * Constructor.
+   *
+   * @param settings cpath2 settings
+   */
+  public AdmissionControl(Settings settings) {
+    this(settings, System::nanoTime);
+  }
+
+  AdmissionControl(Settings settings, LongSupplier clock) {
+    this.clock = clock;
+    this.trustedProxies = (settings.getTrustedProxies() != null)
+      ? new HashSet<>(settings.getTrustedProxies()) : new HashSet<>();
+    this.rate = new double[Cmd.values().length];
+    this.burst = new double[Cmd.values().length];
+    this.concurrency = new int[Cmd.values().length];
+    for (Cmd cmd : Cmd.values()) {
+      Double perSecond = settings.getClientRate().get(cmd.toString());
+      rate[cmd.ordinal()] = (perSecond != null) ? Math.max(0, perSecond) / NANOS_PER_SECOND : 0;
+      Integer size = settings.getClientBurst().get(cmd.toString());
+      burst[cmd.ordinal()] = (size != null && size > 0)
+        ? size : Math.max(1, rate[cmd.ordinal()] * NANOS_PER_SECOND);
+      Integer max = settings.getClientConcurrency().get(cmd.toString());
+      concurrency[cmd.ordinal()] = (max != null) ? Math.max(0, max) : 0;
+    }
+  }
+
+  @Override
+  protected void initFilterBean() {
+    sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "admission-control");
+      t.setDaemon(true);
+      return t;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void destroy() {
+    if (sweeper != null)
+      sweeper.shutdownNow();
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+    throws ServletException, IOException
+  {
+    final Cmd cmd = command(request);
+    if (cmd == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    final String ip = clientAddress(request);
+    final Client client = clients.computeIfAbsent(ip, k -> new Client(clock.getAsLong()));
+
+    if (rate[cmd.ordinal()] > 0) {
+      long wait = client.take(cmd.ordinal(), clock.getAsLong());
+      if (wait > 0) {
+        reject(response, cmd, ip, wait, "max. " + rate[cmd.ordinal()] * NANOS_PER_SECOND + " " + cmd
+          + " requests per second");
+        return;
+      }
+    }
+
+    final int max = concurrency[cmd.ordinal()];
+    if (max == 0) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    final AtomicInteger running = client.running[cmd.ordinal()];
+    if (running.incrementAndGet() > max) {
+      running.decrementAndGet();
+      //no way to tell when a running one completes; suggest the min. delay
+      reject(response, cmd, ip, NANOS_PER_SECOND, "max. " + max + " concurrent " + cmd + " requests");
+      return;
+    }
+
+    boolean async = false;
+    try {
+      chain.doFilter(request, response);
+      if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new Release(running));
+        async = true;
+      }
+    } finally {
+      if (!async)
+        running.decrementAndGet();
+    }
+  }
+
+  /*
+   * Gets the web service command by the request path, e.g., /graph, /search.json (null - not a command).
+   */
+  static Cmd command(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    if (path.startsWith("/"))
+      path = path.substring(1);
+    int dot = path.indexOf('.');
+    if (dot > 0)
+      path = path.substring(0, dot);
+    for (Cmd cmd : Cmd.values()) {
+      if (cmd.toString().equals(path))
+        return cmd;
+    }
+    return null;
+  }
+
+  /*
+   * The client's IP: the remote address or, for a trusted proxy, the last address in the X-Forwarded-For list
+   * that is not a trusted proxy (a client can prepend any values to the header).
+   */
+  String clientAddress(HttpServletRequest request) {
+    String ip = request.getRemoteAddr();
+    String forwarded = trustedProxies.contains(ip) ? request.getHeader("X-Forwarded-For") : null;
+    if (forwarded != null) {
+      String[] hops = forwarded.split(",");
+      for (int i = hops.length - 1; i >= 0 && trustedProxies.contains(ip); i--) {
+        if (!hops[i].trim().isEmpty())
+          ip = hops[i].trim();
+      }
+    }
+    return ip;
+  }
+
+  /*
+   * Counts one more running command (e.g., a batch sub-query) of the request's client
+   * if it is under the concurrency limit, and returns the callback to run once it's done;
+   * returns null when the client is already running the max. number of the command.
+   */
+  Runnable enter(HttpServletRequest request, String command) {
+    final Cmd cmd = Cmd.valueOf(command.toUpperCase());
+    final int max = concurrency[cmd.ordinal()];
+    if (max == 0)
+      return () -> {};
+    final Client client = clients.computeIfAbsent(clientAddress(request), k -> new Client(clock.getAsLong()));
+    final AtomicInteger running = client.running[cmd.ordinal()];
+    if (running.incrementAndGet() > max) {
+      running.decrementAndGet();
+      return null;
+    }
+    return new Release(running)::release;
+  }
+
+  /*
+   * Forgets the idle clients (called periodically).
+   */
+  void sweep() {
+    long now = clock.getAsLong();
+    clients.values().removeIf(c -> c.isIdle(now));
+  }
+
+  private void reject(HttpServletResponse response, Cmd cmd, String ip, long waitNanos, String details)
+    throws IOException
+  {
+    long seconds = Math.max(1L, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+    log.info("rejected " + cmd + " from " + ip + " (" + details + "); retry after " + seconds + "s");
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+    ErrorResponse error = new ErrorResponse(TOO_MANY_REQUESTS, details);
+    response.sendError(error.getStatus().getCode(), error.getStatus().getCode() + "; " + error.toString());
+  }
+
+  /*
+   * A client's token buckets and running requests per command.
+   */
+  private final class Client {
+    private final AtomicInteger[] running = new AtomicInteger[Cmd.values().length];
+    private final double[] tokens = new double[Cmd.values().length];
+    private final long[] time = new long[Cmd.values().length];
+
+    private Client(long now) {
+      for (int i = 0; i < running.length; i++) {
+        running[i] = new AtomicInteger();
+        tokens[i] = burst[i];
+        time[i] = now;
+      }
+    }
+
+    /*
+     * Takes a token of the command's bucket; returns 0 if it's done or the nanoseconds until a token is available.
+     */
+    synchronized long take(int cmd, long now) {
+      refill(cmd, now);
+      if (tokens[cmd] >= 1) {
+        tokens[cmd] -= 1;
+        return 0;
+      }
+      return (long) Math.ceil((1 - tokens[cmd]) / rate[cmd]);
+    }
+
+    synchronized boolean isIdle(long now) {
+      for (int i = 0; i < running.length; i++) {
+        if (running[i].get() > 0)
+          return false;
+        if (rate[i] > 0) {
+          refill(i, now);
+          if (tokens[i] < burst[i])
+            return false;
+        }
+      }
+      return true;
+    }
+
+    private void refill(int cmd, long now) {
+      tokens[cmd] = Math.min(burst[cmd], tokens[cmd] + (now - time[cmd]) * rate[cmd]);
+      time[cmd] = now;
+    }
+  }
+
+  /*
+   * Decrements the running requests counter once the async request is over.
+   */
+  private static final class Release implements AsyncListener {
+    private final AtomicInteger running;
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    private Release(AtomicInteger running) {
+      this.running = running;
+    }
+
+    private void release() {
+      if (done.compareAndSet(false, true))
+        running.decrementAndGet();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      //the listener is removed when the async request is dispatched and started again; keep it
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
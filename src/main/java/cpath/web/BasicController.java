@@ -4,17 +4,27 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import static cpath.service.api.Status.*;
 
+import cpath.service.CPathUtils;
 import cpath.service.api.CPathService;
+import cpath.service.api.DataWriter;
 import cpath.service.ErrorResponse;
 import cpath.service.api.OutputFormat;
 import cpath.web.args.ServiceQuery;
@@ -30,8 +40,11 @@ import org.biopax.paxtools.model.Model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
+import org.springframework.web.context.request.async.DeferredResult;
 
 /**
  * Basic controller.
@@ -42,13 +55,57 @@ public abstract class BasicController
 {
   private static final Logger log = LoggerFactory.getLogger(BasicController.class);
 
+  // Tomcat's sendfile request attributes
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
   protected CPathService service;
 
+  protected CommandExecutors executors;
+
+  protected AdmissionControl admissionControl;
+
   @Autowired
   public void setService(CPathService service) {
     this.service = service;
   }
 
+  @Autowired(required = false)
+  public void setExecutors(CommandExecutors executors) {
+    this.executors = executors;
+  }
+
+  @Autowired(required = false)
+  public void setAdmissionControl(AdmissionControl admissionControl) {
+    this.admissionControl = admissionControl;
+  }
+
+
+  /*
+   * Runs the heavy command's work in the command's bounded thread pool and returns the deferred result
+   * (the container thread is released meanwhile), or runs it right away if there is no such pool.
+   * When the pool and its queue are full, responds with 503 and Retry-After at once (returns null).
+   */
+  final <T> DeferredResult<T> execute(String command, ServiceQuery args, HttpServletRequest request,
+                                      HttpServletResponse response, Supplier<T> work)
+  {
+    CommandExecutor executor = (executors != null) ? executors.get(command) : null;
+    if (executor == null) {
+      DeferredResult<T> result = new DeferredResult<>();
+      result.setResult(work.get());
+      return result;
+    }
+
+    DeferredResult<T> result = executor.task(work);
+    if (result == null) {
+      response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(executors.getRetryAfter()));
+      errorResponse(args, new ErrorResponse(BUSY, executor.toString()), request, response);
+    }
+    return result;
+  }
+
 
   /*
    * Http error response with more details and specific access log events.
@@ -95,6 +152,93 @@ public abstract class BasicController
   }
 
 
+  /*
+   * Sends the result file, or its gzipped copy when the client accepts gzip, or a single byte range
+   * (of the uncompressed file) when requested (multiple ranges - the whole file).
+   * The file is open before any headers are set, so that its size and content won't change
+   * (a deleted or evicted file that is open can still be read to the end).
+   * Only a cached file pinned by the response (see DataResponse#release) is sent with sendfile
+   * when the servlet container supports it, because the container opens the file again, by name,
+   * after this method returns; otherwise, the open file channel transfers the bytes to the response.
+   */
+  private void fileResponse(Path file, DataResponse dataResponse,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException
+  {
+    String range = request.getHeader(HttpHeaders.RANGE);
+    FileChannel channel = null;
+    if (range == null && acceptsGzip(request)) {
+      Path gz = CPathUtils.gzipped(file);
+      try {
+        channel = FileChannel.open(gz, StandardOpenOption.READ);
+        file = gz;
+      } catch (NoSuchFileException e) {
+        //not compressed (small file) - send the file as is
+      }
+    }
+    final boolean gzip = (channel != null);
+    if (channel == null)
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+
+    try (FileChannel ch = channel) {
+      response.setContentType(String.format("%s; %s", dataResponse.getFormat().getMediaType(), "charset=UTF-8"));
+      final long size = ch.size();
+      if (!gzip && size <= 13) // a hack to skip for trivial/empty results
+        return;
+      response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      long start = 0;
+      long end = size - 1;
+      if (range != null) {
+        try {
+          List<HttpRange> ranges = HttpRange.parseRanges(range);
+          if (ranges.size() == 1) {
+            start = ranges.get(0).getRangeStart(size);
+            end = ranges.get(0).getRangeEnd(size);
+            if (start > end)
+              throw new IllegalArgumentException("Range starts after the end: " + range);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, size));
+          }
+        } catch (IllegalArgumentException e) {
+          response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+          response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+          return;
+        }
+      } else if (gzip) {
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      }
+      response.setContentLengthLong(end - start + 1);
+
+      if (dataResponse.isCached() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+        //the container sends it after this method returns (end is exclusive)
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end + 1);
+      } else {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        for (long pos = start, n; pos <= end; pos += n) {
+          if ((n = ch.transferTo(pos, end + 1 - pos, out)) <= 0)
+            break;
+        }
+      }
+    }
+  }
+
+  // whether the client accepts gzip content encoding
+  static boolean acceptsGzip(HttpServletRequest request) {
+    String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    if (accept != null) {
+      for (String coding : accept.split(",")) {
+        String[] params = coding.split(";");
+        if ("gzip".equalsIgnoreCase(params[0].trim())
+          && !(params.length > 1 && params[1].trim().matches("q=0(\\.0*)?")))
+          return true;
+      }
+    }
+    return false;
+  }
+
+
   /*
    * Writes the query results to the HTTP response
    * output stream.
@@ -116,21 +260,43 @@ public abstract class BasicController
         //get the temp file
         Path resultFile = (Path) dataResponse.getData();
         try {
-          response.setContentType(String
-            .format("%s; %s", dataResponse.getFormat().getMediaType(), "charset=UTF-8"));
-          long size = Files.size(resultFile);
-          if (size > 13) { // a hack to skip for trivial/empty results
-            Files.copy(resultFile, response.getOutputStream());
-          }
+          fileResponse(resultFile, dataResponse, request, response);
         } catch (IOException e) {
           String msg = String.format("Failed to process the (temporary) result file %s; %s.",
             resultFile, e.toString());
           errorResponse(command, new ErrorResponse(INTERNAL_ERROR, msg), request, response);
         } finally {
-          try {
-            Files.delete(resultFile);
-          } catch (Exception e) {
-            log.error(e.toString());
+          if (!dataResponse.isCached()) {
+            try {
+              Files.delete(resultFile);
+              Files.deleteIfExists(CPathUtils.gzipped(resultFile));
+            } catch (Exception e) {
+              log.error(e.toString());
+            }
+          } else { //keep the cached file for next time
+            dataResponse.release();
+          }
+        }
+      } else if (dataResponse.getData() instanceof DataWriter) {
+        //write the result directly to the response
+        try {
+          response.setContentType(String
+            .format("%s; %s", dataResponse.getFormat().getMediaType(), "charset=UTF-8"));
+          response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+          if (acceptsGzip(request)) { //compress while writing
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            GZIPOutputStream gz = new GZIPOutputStream(response.getOutputStream(), 8192);
+            ((DataWriter) dataResponse.getData()).write(gz);
+            gz.finish();
+          } else {
+            ((DataWriter) dataResponse.getData()).write(response.getOutputStream());
+          }
+        } catch (Exception e) {
+          String msg = String.format("Failed writing the result; %s.", e.toString());
+          if (response.isCommitted()) { //too late to send an error
+            log.error(msg);
+          } else {
+            errorResponse(command, new ErrorResponse(INTERNAL_ERROR, msg), request, response);
           }
         }
       } else if (dataResponse.isEmpty()) {
@@ -150,7 +316,7 @@ public abstract class BasicController
           errorResponse(command, new ErrorResponse(INTERNAL_ERROR, msg), request, response);
         }
       } else { //it's probably a bug -
-        String msg = String.format("BUG: DataResponse.data has value: %s, %s instead of a Path or null.",
+        String msg = String.format("BUG: DataResponse.data has value: %s, %s instead of a Path, DataWriter or null.",
           dataResponse.getData().getClass().getSimpleName(), dataResponse.toString());
         errorResponse(command, new ErrorResponse(INTERNAL_ERROR, msg), request, response);
       }
@@ -1,8 +1,24 @@
 package cpath.web;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.BufferRecyclers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cpath.service.CPathUtils;
 import cpath.service.ErrorResponse;
+import cpath.service.api.DataWriter;
 import cpath.service.api.GraphType;
 import cpath.service.api.OutputFormat;
 import cpath.service.api.Status;
@@ -11,20 +27,31 @@ import cpath.service.jaxb.*;
 import cpath.web.args.binding.*;
 
 import io.swagger.annotations.ApiOperation;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.biopax.paxtools.model.level3.Protein;
 import org.biopax.paxtools.pattern.miner.SIFType;
 import org.biopax.paxtools.query.algorithm.Direction;
 import org.biopax.paxtools.query.algorithm.LimitType;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.MutablePropertyValues;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
 import org.springframework.validation.BindingResult;
+import org.springframework.validation.MapBindingResult;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validation;
 
 /**
  * cPathSquared Model Access Web Service.
@@ -33,6 +60,12 @@ import javax.validation.Valid;
 @RestController
 @RequestMapping(method = {RequestMethod.GET, RequestMethod.POST})
 public class BiopaxModelController extends BasicController {
+  private static final Logger log = LoggerFactory.getLogger(BiopaxModelController.class);
+
+  private static final String NDJSON = "application/x-ndjson";
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private static final Validator VALIDATOR =
+    new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator());
 
   /**
    * This configures the web request parameters binding, i.e.,
@@ -61,24 +94,31 @@ public class BiopaxModelController extends BasicController {
     notes = "Retrieve BioPAX pathways, interactions, physical entities from the db by URIs; " +
       "optionally, convert the result to other <a href='formats'>output formats</a>."
   )
-  public void elementById(@Valid Get args, BindingResult bindingResult,
-                          HttpServletRequest request, HttpServletResponse response)
+  public DeferredResult<Void> elementById(@Valid Get args, BindingResult bindingResult,
+                                          HttpServletRequest request, HttpServletResponse response)
   {
     if(bindingResult.hasErrors()) {
       errorResponse(args, new ErrorResponse(Status.BAD_REQUEST, errorFromBindingResult(bindingResult)),
         request, response);
+      return null;
     } else {
-      String[] uris = args.getUri();
-      Map<String,String> options = new HashMap<String,String>();
-      if(args.getPattern()!=null && args.getPattern().length>0) {
-        //used StringUtils.join vs String.join due to it's array of enum. objects, not char sequences.
-        options.put("pattern", StringUtils.join(args.getPattern(), ","));
-      }
-      ServiceResponse result = service.fetch(args.getFormat(), options, args.getSubpw(), uris);
-      stringResponse(args, result, request, response);
+      // query and write the result in the 'get' thread pool
+      return execute("get", args, request, response, () -> {
+        stringResponse(args, get(args), request, response);
+        return null;
+      });
     }
   }
 
+  private ServiceResponse get(Get args) {
+    Map<String,String> options = new HashMap<String,String>();
+    if(args.getPattern()!=null && args.getPattern().length>0) {
+      //used StringUtils.join vs String.join due to it's array of enum. objects, not char sequences.
+      options.put("pattern", StringUtils.join(args.getPattern(), ","));
+    }
+    return service.fetch(args.getFormat(), options, args.getSubpw(), args.getUri());
+  }
+
 
   @RequestMapping("/top_pathways")
   @ApiOperation(
@@ -111,6 +151,35 @@ public class BiopaxModelController extends BasicController {
   }
 
 
+  @RequestMapping("/suggest")
+  @ApiOperation(
+    value = "Auto-complete names and gene symbols.",
+    notes = "Get up to ten names or gene symbols of pathways, molecules, genes that start with the given prefix " +
+      "(the most used first), optionally, filtered by organism taxonomy ID. " +
+      "This is much faster than the full-text search with a wildcard query (e.g., q=brc*) " +
+      "and is meant to be called on every keystroke."
+  )
+  public SuggestResponse suggest(@Valid Suggest args, BindingResult bindingResult,
+                                 HttpServletRequest request, HttpServletResponse response)
+  {
+    if(bindingResult.hasErrors()) {
+      errorResponse(args, new ErrorResponse(Status.BAD_REQUEST,
+        errorFromBindingResult(bindingResult)), request, response);
+    } else {
+      ServiceResponse results = service.suggest(args.getQ(), args.getOrganism());
+      if (results instanceof ErrorResponse) {
+        errorResponse(args, (ErrorResponse) results, request, response);
+      } else {
+        //not tracking these (too many requests, as the user types)
+        SuggestResponse suggestions = (SuggestResponse) results;
+        suggestions.setVersion(service.settings().getVersion());
+        return suggestions;
+      }
+    }
+    return null;
+  }
+
+
   @RequestMapping("/traverse")
   @ApiOperation(
     value = "Access properties of BioPAX elements using graph path expressions",
@@ -127,16 +196,20 @@ public class BiopaxModelController extends BasicController {
       "such as inverse properties and interfaces that represent anonymous union classes in BioPAX OWL " +
       "can be used in a path accessor."
   )
-  public TraverseResponse traverse(@Valid Traverse args, BindingResult bindingResult,
-                                   HttpServletRequest request, HttpServletResponse response)
+  public DeferredResult<TraverseResponse> traverse(@Valid Traverse args, BindingResult bindingResult,
+                                                   HttpServletRequest request, HttpServletResponse response)
   {
     if(bindingResult.hasErrors()) {
       errorResponse(args, new ErrorResponse(Status.BAD_REQUEST, errorFromBindingResult(bindingResult)),
         request, response);
-    } else {
+      return null;
+    }
+
+    return execute("traverse", args, request, response, () -> {
       ServiceResponse sr = service.traverse(args.getPath(), args.getUri());
       if(sr instanceof ErrorResponse) {
         errorResponse(args, (ErrorResponse) sr, request, response);
+        return null;
       } else {
         track(request, args, null, null);
         //TODO: log/track data providers that occur is the traverse query result
@@ -144,8 +217,7 @@ public class BiopaxModelController extends BasicController {
         traverseResponse.setVersion(service.settings().getVersion());
         return traverseResponse;
       }
-    }
-    return null;
+    });
   }
 
   @RequestMapping("/graph")
@@ -161,22 +233,30 @@ public class BiopaxModelController extends BasicController {
       "We do not merge physical entities (states) and processes from different sources automatically, " +
       "as accurately matching and aligning pathways at that level is still an open research problem."
   )
-  public void graphQuery(@Valid Graph args, BindingResult bindingResult,
-                         HttpServletRequest request, HttpServletResponse response)
+  public DeferredResult<Void> graphQuery(@Valid Graph args, BindingResult bindingResult,
+                                         HttpServletRequest request, HttpServletResponse response)
   {
     //check for binding errors
     if(bindingResult.hasErrors()) {
       errorResponse(args, new ErrorResponse(Status.BAD_REQUEST, errorFromBindingResult(bindingResult)),
         request, response);
-      return;
+      return null;
     }
 
-    ServiceResponse result;
+    // query, write the result and log/track the service access events in the 'graph' thread pool
+    return execute("graph", args, request, response, () -> {
+      stringResponse(args, graph(args), request, response);
+      return null;
+    });
+  }
 
+  private ServiceResponse graph(Graph args) {
     Map<String,String> formatOptions = new HashMap<String,String>();
     if(args.getPattern()!=null && args.getPattern().length>0)
       formatOptions.put("pattern", StringUtils.join(args.getPattern(),","));
 
+    ServiceResponse result;
+
     switch (args.getKind()) {
       case NEIGHBORHOOD:
         result = service.getNeighborhood(args.getFormat(), formatOptions, args.getSource(),
@@ -197,13 +277,350 @@ public class BiopaxModelController extends BasicController {
       default:
         // impossible (should have failed earlier)
         String msg = getClass().getCanonicalName() + " does not support " + args.getKind();
-        errorResponse(args, new ErrorResponse(Status.INTERNAL_ERROR, msg),
-          request, response);
+        result = new ErrorResponse(Status.INTERNAL_ERROR, msg);
+    }
+
+    return result;
+  }
+
+  @RequestMapping(value = "/batch", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+  @ApiOperation(
+    value = "Run many get, traverse and graph queries at once.",
+    notes = "Post a JSON object with 'queries' - a list of objects that have 'cmd' (get, traverse or graph) " +
+      "and the same parameters as the command, e.g., {\"cmd\":\"graph\",\"kind\":\"neighborhood\"," +
+      "\"source\":[\"TP53\"],\"format\":\"sif\"}. All the identifiers are mapped to BioPAX URIs together, " +
+      "and the queries run in parallel. The results are streamed back as NDJSON, one line per query, " +
+      "as each completes: index (in the list), cmd, status, and data (text in the query's format " +
+      "or traverse response) or error. The queries count against the client's concurrency limits per command; " +
+      "a query that cannot run for that reason or because the service is busy gets the status 429 or 503. " +
+      "A batch costs the number of URIs of its get and traverse queries " +
+      "plus sources and targets times the limit of the graph queries; it cannot exceed the max. cost."
+  )
+  public DeferredResult<Void> batch(@Valid @RequestBody Batch args, BindingResult bindingResult,
+                                    HttpServletRequest request, HttpServletResponse response)
+  {
+    if(bindingResult.hasErrors()) {
+      errorResponse(args, new ErrorResponse(Status.BAD_REQUEST, errorFromBindingResult(bindingResult)),
+        request, response);
+      return null;
+    }
+
+    // bind and validate the queries as if these were separate requests
+    final List<BindingResult> queries = new ArrayList<>();
+    long cost = 0;
+    for(Map<String, Object> query : args.getQueries()) {
+      BindingResult result = bind(query);
+      if(!result.hasErrors())
+        cost += cost((ServiceQuery) result.getTarget());
+      queries.add(result);
+    }
+    Integer maxCost = service.settings().getBatchMaxCost();
+    if(maxCost != null && maxCost > 0 && cost > maxCost) {
+      errorResponse(args, new ErrorResponse(Status.BAD_REQUEST, "The batch cost " + cost
+        + " exceeds the max. " + maxCost + "; split it into smaller ones"), request, response);
+      return null;
+    }
+
+    // run the queries and write the results in the 'batch' thread pool
+    return execute("batch", args, request, response, () -> {
+      batch(queries, request, response);
+      return null;
+    });
+  }
+
+  /*
+   * Binds the batch query parameters to the get, traverse or graph query args and validates them.
+   */
+  private BindingResult bind(Map<String, Object> query) {
+    final Object cmd = query.get("cmd");
+    final ServiceQuery args = ("get".equals(cmd)) ? new Get()
+      : ("traverse".equals(cmd)) ? new Traverse() : ("graph".equals(cmd)) ? new Graph() : null;
+    if(args == null) {
+      BindingResult result = new MapBindingResult(query, "query");
+      result.rejectValue("cmd", "typeMismatch", "should be get, traverse or graph");
+      return result;
+    }
+
+    MutablePropertyValues values = new MutablePropertyValues();
+    query.forEach((name, value) -> {
+      if("cmd".equals(name) || value == null)
+        return;
+      if(value instanceof Collection) {
+        values.add(name, ((Collection<?>) value).stream().map(String::valueOf).toArray(String[]::new));
+      } else {
+        values.add(name, String.valueOf(value));
+      }
+    });
+
+    WebDataBinder binder = new WebDataBinder(args, "query");
+    initBinder(binder);
+    binder.setValidator(VALIDATOR);
+    binder.bind(values);
+    binder.validate();
+    return binder.getBindingResult();
+  }
+
+  private static long cost(ServiceQuery query) {
+    if(query instanceof Get) {
+      return ((Get) query).getUri().length;
+    } else if(query instanceof Traverse) {
+      return ((Traverse) query).getUri().length;
+    } else {
+      Graph graph = (Graph) query;
+      long seeds = graph.getSource().length + ((graph.getTarget() != null) ? graph.getTarget().length : 0);
+      return seeds * ((graph.getLimit() != null) ? Math.max(1, graph.getLimit()) : 1);
+    }
+  }
+
+  /*
+   * Maps all the identifiers at once, runs the valid queries in their commands' thread pools
+   * (up to batch-parallelism at a time) and writes a JSON line per query as soon as it completes.
+   * The batch takes at most the pool's number of threads of each command (its queue is for other clients),
+   * and the queries count against the client's concurrency limit per command (cpath2.client-concurrency.*),
+   * i.e., the batch waits for its own queries of the command to complete first. A query that still
+   * cannot run (the client's other requests or a full pool) gets the 429 or 503 status in its line.
+   */
+  private void batch(List<BindingResult> queries, HttpServletRequest request, HttpServletResponse response)
+  {
+    response.setContentType(NDJSON + "; charset=UTF-8");
+    final OutputStream os;
+    try {
+      os = response.getOutputStream();
+    } catch (IOException e) {
+      log.error("batch, failed to open the response: " + e);
+      return;
+    }
+
+    Set<String> ids = new HashSet<>();
+    for(BindingResult query : queries) {
+      if(!query.hasErrors())
+        ids.addAll(identifiers((ServiceQuery) query.getTarget()));
+    }
+    final Map<String, Set<String>> uris = service.resolve(ids);
+
+    Integer parallelism = service.settings().getBatchParallelism();
+    final Semaphore running = new Semaphore((parallelism != null && parallelism > 0) ? parallelism : 1);
+    final Map<String, Semaphore> shares = new HashMap<>(); //by command
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < queries.size(); i++) {
+        final int index = i;
+        final BindingResult result = queries.get(i);
+        if (result.hasErrors()) {
+          ServiceQuery args = (result.getTarget() instanceof ServiceQuery) ? (ServiceQuery) result.getTarget() : null;
+          writeLine(os, index, args, new ErrorResponse(Status.BAD_REQUEST, errorFromBindingResult(result)),
+            request);
+          continue;
+        }
+
+        final ServiceQuery args = (ServiceQuery) result.getTarget();
+        final Supplier<ServiceResponse> work = () -> service.withResolved(uris, () -> query(args));
+        final CommandExecutor executor = (executors != null) ? executors.get(args.cmd()) : null;
+        final Semaphore share = shares.computeIfAbsent(args.cmd(), cmd -> new Semaphore(share(cmd, executor)));
+        running.acquire();
+        share.acquire();
+        final Runnable release = (admissionControl != null) ? admissionControl.enter(request, args.cmd()) : () -> {};
+        CompletableFuture<ServiceResponse> future = null;
+        if (release == null) {
+          writeLine(os, index, args, new ErrorResponse(Status.TOO_MANY_REQUESTS, "max. "
+            + service.settings().getClientConcurrency().get(args.cmd()) + " concurrent " + args.cmd()
+            + " requests"), request);
+        } else if (executor == null) {
+          future = CompletableFuture.supplyAsync(work, Runnable::run);
+        } else if ((future = executor.submit(work, executors.getRetryAfter(), TimeUnit.SECONDS)) == null) {
+          release.run();
+          writeLine(os, index, args, new ErrorResponse(Status.BUSY, executor.toString()), request);
+        }
+        if (future == null) {
+          share.release();
+          running.release();
+          continue;
+        }
+        futures.add(future.handle((sr, e) -> {
+          release.run();
+          share.release();
+          running.release();
+          writeLine(os, index, args, (e != null) ? new ErrorResponse(Status.INTERNAL_ERROR, e) : sr, request);
+          return null;
+        }));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("batch, interrupted after " + futures.size() + " of " + queries.size() + " queries");
+    }
+  }
+
+  /*
+   * Max. number of the batch's queries of the command that run at once: the pool's threads
+   * and the client's concurrency limit, if any (the batch's parallelism limits the total anyway).
+   */
+  private int share(String command, CommandExecutor executor) {
+    int share = (executor != null) ? executor.getThreads() : Integer.MAX_VALUE;
+    Integer max = service.settings().getClientConcurrency().get(command);
+    if (max != null && max > 0)
+      share = Math.min(share, max);
+    return share;
+  }
+
+  private static Collection<String> identifiers(ServiceQuery query) {
+    if(query instanceof Get) {
+      return Arrays.asList(((Get) query).getUri());
+    } else if(query instanceof Traverse) {
+      return Arrays.asList(((Traverse) query).getUri());
+    } else {
+      Graph graph = (Graph) query;
+      List<String> ids = new ArrayList<>(Arrays.asList(graph.getSource()));
+      if(graph.getTarget() != null)
+        ids.addAll(Arrays.asList(graph.getTarget()));
+      return ids;
+    }
+  }
+
+  private ServiceResponse query(ServiceQuery query) {
+    if(query instanceof Get) {
+      return get((Get) query);
+    } else if(query instanceof Traverse) {
+      return service.traverse(((Traverse) query).getPath(), ((Traverse) query).getUri());
+    } else {
+      return graph((Graph) query);
+    }
+  }
+
+  /*
+   * Writes the batch query result as a JSON line and logs/tracks the access events.
+   * The line is streamed to the response (the lines do not interleave): the get/graph query result
+   * is copied from the file or the writer to the 'data' string in chunks; the 'status' goes after it,
+   * so that a failure while copying the data is still reported (then the data are incomplete).
+   */
+  private void writeLine(OutputStream os, int index, ServiceQuery query, ServiceResponse result,
+                         HttpServletRequest request)
+  {
+    Set<String> providers = null;
+    ErrorResponse error = null;
+    if (result instanceof ErrorResponse) {
+      error = (ErrorResponse) result;
+    } else if (result instanceof DataResponse) {
+      providers = ((DataResponse) result).getProviders();
+    } else if (result instanceof TraverseResponse) {
+      ((TraverseResponse) result).setVersion(service.settings().getVersion());
+    } else { //it's a bug -
+      error = new ErrorResponse(Status.INTERNAL_ERROR, "BUG: Unknown ServiceResponse: " + result);
+    }
+
+    try {
+      synchronized (os) {
+        JsonGenerator gen = JSON.getFactory().createGenerator(os);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.writeStartObject();
+        gen.writeNumberField("index", index);
+        gen.writeStringField("cmd", (query != null) ? query.cmd() : null);
+        if (result instanceof DataResponse) {
+          gen.writeStringField("format", ((DataResponse) result).getFormat().name().toLowerCase());
+          gen.writeFieldName("data");
+          error = writeData((DataResponse) result, gen);
+        } else if (error == null) {
+          gen.writeFieldName("data");
+          JSON.writeValue(gen, result);
+        }
+        gen.writeNumberField("status", (error != null) ? error.getErrorCode() : Status.OK.getCode());
+        if (error != null)
+          gen.writeStringField("error", error.toString());
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        gen.close();
+        os.flush();
+      }
+    } catch (IOException e) {
+      log.error("batch, failed writing the result #" + index + "; " + e);
+    } finally {
+      if (result instanceof DataResponse)
+        discard((DataResponse) result);
+    }
+
+    if (query != null)
+      track(request, query, providers, error);
+  }
+
+  /*
+   * Writes the get/graph query result as a JSON string in chunks
+   * and returns the error, if the data could not be read, or null.
+   */
+  private static ErrorResponse writeData(DataResponse dataResponse, JsonGenerator gen) throws IOException {
+    gen.writeRawValue("\""); //the string value goes next, escaped, up to the closing quote
+    final Writer writer = new JsonStringWriter(gen);
+    final Object data = dataResponse.getData();
+    ErrorResponse error = null;
+    try {
+      if (data instanceof Path) {
+        try (Reader reader = Files.newBufferedReader((Path) data, StandardCharsets.UTF_8)) {
+          IOUtils.copy(reader, writer);
+        }
+      } else if (data instanceof DataWriter) {
+        WriterOutputStream os = new WriterOutputStream(writer, StandardCharsets.UTF_8, 8192, true);
+        ((DataWriter) data).write(os);
+        os.flush();
+      } //else - empty result
+    } catch (IOException | RuntimeException e) {
+      error = new ErrorResponse(Status.INTERNAL_ERROR, "Failed to read the result; " + e);
+    }
+    gen.writeRaw('"');
+    return error;
+  }
+
+  // deletes the temporary result file or releases the cached one
+  private static void discard(DataResponse dataResponse) {
+    if (dataResponse.getData() instanceof Path) {
+      if (dataResponse.isCached()) {
+        dataResponse.release();
+      } else {
+        try {
+          Files.deleteIfExists((Path) dataResponse.getData());
+          Files.deleteIfExists(CPathUtils.gzipped((Path) dataResponse.getData()));
+        } catch (IOException e) {
+          log.error(e.toString());
+        }
+      }
+    }
+  }
+
+  /*
+   * Writes the text to the generator as (a part of) a JSON string value, escaped;
+   * a high surrogate char at the end waits for the next chunk (the pair must be written at once).
+   */
+  private static final class JsonStringWriter extends Writer {
+    private final JsonGenerator gen;
+    private char pending;
+
+    private JsonStringWriter(JsonGenerator gen) {
+      this.gen = gen;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      if (len <= 0)
         return;
+      StringBuilder sb = new StringBuilder(len + 1);
+      if (pending != 0)
+        sb.append(pending);
+      sb.append(cbuf, off, len);
+      pending = Character.isHighSurrogate(sb.charAt(sb.length() - 1)) ? sb.charAt(sb.length() - 1) : 0;
+      if (pending != 0)
+        sb.setLength(sb.length() - 1);
+      if (sb.length() > 0) {
+        char[] quoted = BufferRecyclers.getJsonStringEncoder().quoteAsString(sb.toString());
+        gen.writeRaw(quoted, 0, quoted.length);
+      }
     }
 
-    // write the result and log/track the service access events
-    stringResponse(args, result, request, response);
+    @Override
+    public void flush() {
+      //a lone high surrogate (malformed text) is dropped
+    }
+
+    @Override
+    public void close() {
+    }
   }
 
   @RequestMapping(value="/search")
@@ -228,9 +645,9 @@ public class BiopaxModelController extends BasicController {
       errorResponse(args, new ErrorResponse(Status.BAD_REQUEST,
         errorFromBindingResult(bindingResult)), request, response);
     } else {
-      // get results from the service
-      ServiceResponse results = service.search(args.getQ(), args.getPage(), args.getType(),
-        args.getDatasource(), args.getOrganism());
+      // get results from the service (next page after the cursor, if it's set)
+      ServiceResponse results = service.search(args.getQ(), args.getPage(), args.getCursor(),
+        args.getType(), args.getDatasource(), args.getOrganism(), args.getFacets(), args.getExcerpt());
 
       if(results instanceof ErrorResponse) {
         errorResponse(args, (ErrorResponse) results, request, response);
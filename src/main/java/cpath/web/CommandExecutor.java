@@ -0,0 +1,151 @@
+package cpath.web;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * A bounded thread pool to run a heavy web service command (e.g., get, graph, traverse)
+ * off the servlet container threads, so that a burst of slow queries does not starve
+ * the other requests (search, metadata, etc.)
+ * It accepts up to the number of threads plus the queue size tasks;
+ * more requests are rejected right away (see {@link #task(Supplier)}).
+ */
+final class CommandExecutor {
+
+  private final String command;
+  private final int threads;
+  private final ThreadPoolExecutor executor;
+  private final Semaphore permits; //running and queued tasks
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param command web service command name
+   * @param threads max. number of threads
+   * @param queueSize max. number of the waiting tasks
+   */
+  CommandExecutor(String command, int threads, int queueSize) {
+    this.command = command;
+    this.threads = threads;
+    this.permits = new Semaphore(threads + queueSize);
+    this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      r -> {
+        Thread t = new Thread(r, command);
+        t.setDaemon(true);
+        return t;
+      });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Creates the asynchronous (deferred) result of the work, which is then done in this pool
+   * when the asynchronous request processing has started (see {@link Task#start()}).
+   *
+   * @param work to compute the result (it can also write to the response itself and return null)
+   * @param <T> result type
+   * @return new task or null when the pool and its queue are full (rejected)
+   */
+  <T> Task<T> task(Supplier<T> work) {
+    if(!permits.tryAcquire()) {
+      rejected.increment();
+      return null;
+    }
+    return new Task<>(work);
+  }
+
+  /**
+   * Runs the work in this pool, waiting for a free slot a while if the pool and its queue are full
+   * (e.g., for a batch sub-query).
+   *
+   * @param work to compute the result
+   * @param timeout max. time to wait for a free slot
+   * @param unit timeout units
+   * @param <T> result type
+   * @return the future result or null when there was no free slot in time (rejected)
+   * @throws InterruptedException when interrupted while waiting
+   */
+  <T> CompletableFuture<T> submit(Supplier<T> work, long timeout, TimeUnit unit) throws InterruptedException {
+    if(!permits.tryAcquire(timeout, unit)) {
+      rejected.increment();
+      return null;
+    }
+    try {
+      return CompletableFuture.supplyAsync(work, executor).whenComplete((result, e) -> permits.release());
+    } catch (RejectedExecutionException e) { //shut down
+      permits.release();
+      throw e;
+    }
+  }
+
+  String getCommand() {
+    return command;
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  long getCompletedCount() {
+    return executor.getCompletedTaskCount();
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public String toString() {
+    return command + ": active " + getActiveCount() + ", queued " + getQueueSize()
+      + ", rejected " + getRejectedCount() + ", completed " + getCompletedCount();
+  }
+
+  /**
+   * The deferred result that gets computed in the pool.
+   * It's submitted once the servlet request is in the asynchronous mode
+   * (by the interceptor, see {@link WebApplication}), so that the work never
+   * writes to the response concurrently with the container thread.
+   *
+   * @param <T> result type
+   */
+  final class Task<T> extends DeferredResult<T> {
+    private final Supplier<T> work;
+
+    private Task(Supplier<T> work) {
+      super(0L); //no timeout (the same as when processed synchronously)
+      this.work = work;
+    }
+
+    void start() {
+      try {
+        executor.execute(() -> {
+          try {
+            setResult(work.get());
+          } catch (Throwable e) {
+            setErrorResult(e);
+          } finally {
+            permits.release();
+          }
+        });
+      } catch (RejectedExecutionException e) { //shut down
+        permits.release();
+        setErrorResult(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package cpath.web;
+
+import java.util.*;
+
+import javax.annotation.PreDestroy;
+
+import cpath.service.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * The bounded thread pools for the heavy web service commands
+ * (see cpath2.command-threads.* and cpath2.command-queue.* properties;
+ * a command without a pool runs on the servlet container thread).
+ * The pools' active, queued and rejected task counts are also available via JMX.
+ */
+@ManagedResource(description = "Web service command thread pools")
+public class CommandExecutors {
+  private static final Logger log = LoggerFactory.getLogger(CommandExecutors.class);
+
+  private final Map<String, CommandExecutor> executors;
+  private final int retryAfter;
+
+  /**
+   * Constructor.
+   *
+   * @param settings cpath2 settings
+   */
+  public CommandExecutors(Settings settings) {
+    Map<String, CommandExecutor> m = new TreeMap<>();
+    Map<String, Integer> queues = settings.getCommandQueue();
+    settings.getCommandThreads().forEach((command, threads) -> {
+      if(threads != null && threads > 0) {
+        Integer queue = queues.get(command);
+        m.put(command, new CommandExecutor(command, threads, (queue != null) ? Math.max(0, queue) : 0));
+      }
+    });
+    this.executors = Collections.unmodifiableMap(m);
+    this.retryAfter = (settings.getCommandRetryAfter() != null) ? settings.getCommandRetryAfter() : 10;
+    log.info("CommandExecutors, " + executors.keySet());
+  }
+
+  /**
+   * Gets the command's pool.
+   *
+   * @param command web service command name
+   * @return the pool or null (run the command on the request thread)
+   */
+  CommandExecutor get(String command) {
+    return executors.get(command);
+  }
+
+  /**
+   * Gets the Retry-After value for the rejected requests.
+   *
+   * @return seconds for a client to wait before retrying
+   */
+  int getRetryAfter() {
+    return retryAfter;
+  }
+
+  @ManagedAttribute(description = "Running tasks per command")
+  public Map<String, Integer> getActive() {
+    Map<String, Integer> m = new TreeMap<>();
+    executors.forEach((command, executor) -> m.put(command, executor.getActiveCount()));
+    return m;
+  }
+
+  @ManagedAttribute(description = "Waiting tasks per command")
+  public Map<String, Integer> getQueued() {
+    Map<String, Integer> m = new TreeMap<>();
+    executors.forEach((command, executor) -> m.put(command, executor.getQueueSize()));
+    return m;
+  }
+
+  @ManagedAttribute(description = "Rejected requests per command")
+  public Map<String, Long> getRejected() {
+    Map<String, Long> m = new TreeMap<>();
+    executors.forEach((command, executor) -> m.put(command, executor.getRejectedCount()));
+    return m;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    log.info("CommandExecutors, shutdown; " + this);
+    executors.values().forEach(CommandExecutor::shutdown);
+  }
+
+  @Override
+  public String toString() {
+    StringJoiner sj = new StringJoiner("; ");
+    executors.values().forEach(executor -> sj.add(executor.toString()));
+    return sj.toString();
+  }
+}
@@ -1,8 +1,13 @@
 package cpath.web;
 
+import cpath.service.Settings;
 import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
 import org.springframework.web.servlet.config.annotation.*;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 import org.springframework.web.servlet.view.JstlView;
@@ -28,6 +33,29 @@ public class WebApplication implements WebMvcConfigurer
     ;
   }
 
+  @Bean
+  public CommandExecutors commandExecutors(Settings settings) {
+    return new CommandExecutors(settings);
+  }
+
+  // Per-client rate and concurrency limits (HTTP 429)
+  @Bean
+  public AdmissionControl admissionControl(Settings settings) {
+    return new AdmissionControl(settings);
+  }
+
+  // Submit a heavy command's task once the request is in the async mode (see CommandExecutor.Task)
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.registerDeferredResultInterceptors(new DeferredResultProcessingInterceptor() {
+      @Override
+      public <T> void preProcess(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        if(deferredResult instanceof CommandExecutor.Task)
+          ((CommandExecutor.Task<T>) deferredResult).start();
+      }
+    });
+  }
+
 // if needed, CORS header will be set via the (Nginx) proxy config.
 //  // Enable CORS globally; by default - all origins, GET, HEAD, POST
 //  @Override
@@ -0,0 +1,44 @@
+package cpath.web.args;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotEmpty;
+
+import io.swagger.annotations.ApiParam;
+
+public class Batch extends ServiceQuery {
+
+  @NotEmpty(message = "Provide at least one query.")
+  @ApiParam(
+    value = "Get, traverse or graph queries - objects with 'cmd' (command name) and the command's parameters",
+    required = true
+  )
+  private List<Map<String, Object>> queries;
+
+  public Batch() {
+  }
+
+  public List<Map<String, Object>> getQueries() {
+    return queries;
+  }
+
+  public void setQueries(List<Map<String, Object>> queries) {
+    this.queries = queries;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " queries:" + ((queries != null) ? queries.size() : 0);
+  }
+
+  @Override
+  public String cmd() {
+    return "batch";
+  }
+
+  @Override
+  public String outputFormat() {
+    return "ndjson";
+  }
+}
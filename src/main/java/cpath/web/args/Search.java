@@ -43,6 +43,27 @@ public class Search extends ServiceQuery {
   )
   private Integer page;
 
+  @ApiParam(
+    value = "Pagination: the 'cursor' value from the previous search response " +
+      "to get the next page of hits (much faster for deep pages; when set, 'page' is ignored).",
+    required = false
+  )
+  private String cursor;
+
+  @ApiParam(
+    value = "Whether to add the numbers of all hits by datasource, organism and BioPAX type " +
+      "(facets) to the search response.",
+    defaultValue = "false"
+  )
+  private boolean facets;
+
+  @ApiParam(
+    value = "Whether to add the highlighted matching keywords (excerpt) to the search hits " +
+      "(best effort: the hits that are not done within the server's time limit come without excerpt).",
+    defaultValue = "false"
+  )
+  private boolean excerpt;
+
   public Search() {
     page = 0;
   }
@@ -87,9 +108,39 @@ public class Search extends ServiceQuery {
     this.page = page;
   }
 
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
+
+  public boolean getFacets() {
+    return facets;
+  }
+
+  public void setFacets(boolean facets) {
+    this.facets = facets;
+  }
+
+  public boolean getExcerpt() {
+    return excerpt;
+  }
+
+  public void setExcerpt(boolean excerpt) {
+    this.excerpt = excerpt;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder(super.toString()).append(" q:").append(q).append("; p:").append(page);
+    if (cursor != null)
+      sb.append("; cur:").append(cursor);
+    if (facets)
+      sb.append("; facets");
+    if (excerpt)
+      sb.append("; excerpt");
     if (type != null)
       sb.append("; t:").append(type.getSimpleName());
     if (organism != null && organism.length > 0)
@@ -0,0 +1,61 @@
+package cpath.web.args;
+
+
+import io.swagger.annotations.ApiParam;
+
+import javax.validation.constraints.NotBlank;
+
+public class Suggest extends ServiceQuery {
+  @NotBlank(
+    message = "Parameter 'q' (beginning of a name or symbol) is blank (not specified)."
+  )
+  @ApiParam(
+    value = "Beginning of a name or gene symbol (case insensitive; no Lucene query syntax).",
+    required = true,
+    example = "brc"
+  )
+  private String q;
+
+  @ApiParam(
+    value = "Filter by organism taxonomy ID.",
+    example = "9606"
+  )
+  private String organism;
+
+  public Suggest() {
+  }
+
+  public String getQ() {
+    return q;
+  }
+
+  public void setQ(String q) {
+    this.q = q;
+  }
+
+  public String getOrganism() {
+    return organism;
+  }
+
+  public void setOrganism(String organism) {
+    this.organism = organism;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(super.toString()).append(" q:").append(q);
+    if (organism != null && !organism.isEmpty())
+      sb.append("; org:").append(organism);
+    return sb.toString();
+  }
+
+  @Override
+  public String cmd() {
+    return "suggest";
+  }
+
+  @Override
+  public String outputFormat() {
+    return "xml"; //default
+  }
+}
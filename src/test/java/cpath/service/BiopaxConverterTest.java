@@ -2,9 +2,22 @@ package cpath.service;
 
 import static org.junit.Assert.*;
 
+import cpath.service.api.DataWriter;
 import cpath.service.api.OutputFormat;
 import cpath.service.jaxb.DataResponse;
 import cpath.service.jaxb.ServiceResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import org.biopax.paxtools.controller.Cloner;
+import org.biopax.paxtools.controller.Completer;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
 import org.biopax.paxtools.model.BioPAXLevel;
 import org.biopax.paxtools.model.Model;
 import org.biopax.paxtools.model.level3.Pathway;
@@ -25,4 +38,88 @@ public class BiopaxConverterTest {
         assertFalse(sr.isEmpty());
     }
 
+    @Test
+    public final void testCache() throws Exception {
+        Model m = BioPAXLevel.L3.getDefaultFactory().createModel();
+        m.setXmlBase("http://pathwaycommons.org/pc2/");
+        Pathway bpe = m.addNew(Pathway.class, "http://pathwaycommons.org/pc2/Pathway_test-URI");
+        bpe.setDisplayName("My test pathway");
+        String dir = Paths.get("target", "cpath2_output_cache").toString();
+        CPathUtils.cleanupDirectory(dir, true);
+        OutputCache cache = new OutputCache(dir, 1024 * 1024, "test");
+        BiopaxConverter converter = new BiopaxConverter(null);
+        converter.setCache(cache);
+
+        DataResponse r1 = (DataResponse) converter.convert(m, OutputFormat.BIOPAX, Collections.emptyMap());
+        assertTrue(r1.isCached());
+        assertEquals(0, cache.getHitCount());
+        DataResponse r2 = (DataResponse) converter.convert(m, OutputFormat.BIOPAX, Collections.emptyMap());
+        assertEquals(r1.getData(), r2.getData());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(Files.size((Path) r2.getData()), cache.getBytes());
+        //different options (or data) - different entry
+        DataResponse r3 = (DataResponse) converter.convert(m, OutputFormat.BIOPAX, Collections.singletonMap("a", "b"));
+        assertNotEquals(r1.getData(), r3.getData());
+        assertEquals(2, cache.size());
+
+        //picks up the files after restart; evicts the least recently used when over the max. size
+        cache = new OutputCache(dir, Files.size((Path) r3.getData()), "test");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertFalse(Files.exists((Path) r1.getData()));
+        assertTrue(Files.exists((Path) r3.getData()));
+    }
+
+    @Test
+    public final void testCachePinned() throws Exception {
+        String dir = Paths.get("target", "cpath2_output_cache_pinned").toString();
+        CPathUtils.cleanupDirectory(dir, true);
+        OutputCache cache = new OutputCache(dir, 10, "test", 0);
+        Path a = cache.put("a.txt", Files.write(cache.createTempFile(OutputFormat.TXT), "0123456789".getBytes()));
+        Path b = cache.put("b.txt", Files.write(cache.createTempFile(OutputFormat.TXT), "0123456789".getBytes()));
+        //'a' is evicted but still in use
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("a.txt"));
+        assertTrue(Files.exists(a));
+        //released; deleted by a next put
+        cache.release("a.txt");
+        assertTrue(Files.exists(a));
+        cache.release("b.txt");
+        cache.put("c.txt", Files.write(cache.createTempFile(OutputFormat.TXT), "0123456789".getBytes()));
+        assertFalse(Files.exists(a));
+        assertFalse(Files.exists(b));
+    }
+
+    @Test
+    public final void testStream() throws Exception {
+        Model model = new SimpleIOHandler().convertFromOWL(getClass().getResourceAsStream("/biopax-level3-test.owl"));
+        Completer completer = new Completer(SimpleEditorMap.L3);
+        completer.setSkipSubPathways(true);
+        BiopaxConverter converter = new BiopaxConverter(null);
+        for(BioPAXElement bpe : model.getObjects()) {
+            //e.g., a pathway step's nextStep values are not in the sub-model
+            Set<BioPAXElement> elements = completer.complete(Collections.singleton(bpe));
+            //a sub-model that shares the elements with the main model
+            Model m = BioPAXLevel.L3.getDefaultFactory().createModel();
+            m.setXmlBase(model.getXmlBase());
+            elements.forEach(m::add);
+            DataResponse r = (DataResponse) converter.stream(m, null);
+            assertTrue(r.getData() instanceof DataWriter);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ((DataWriter) r.getData()).write(bos);
+            //the same RDF/XML as of the detached copy (up to the order of lines)
+            Model copy = new Cloner(SimpleEditorMap.L3, BioPAXLevel.L3.getDefaultFactory()).clone(elements);
+            copy.setXmlBase(model.getXmlBase());
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            new SimpleIOHandler().convertToOWL(copy, expected);
+            assertEquals(sortedLines(expected.toString("UTF-8")), sortedLines(bos.toString("UTF-8")));
+        }
+    }
+
+    private static String sortedLines(String s) {
+        String[] lines = s.split("\n");
+        Arrays.sort(lines);
+        return String.join("\n", lines);
+    }
 }
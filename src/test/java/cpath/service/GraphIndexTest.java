@@ -0,0 +1,136 @@
+package cpath.service;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.PhysicalEntity;
+import org.biopax.paxtools.model.level3.SimplePhysicalEntity;
+import org.biopax.paxtools.query.QueryExecuter;
+import org.biopax.paxtools.query.algorithm.Direction;
+import org.biopax.paxtools.query.algorithm.PathsBetweenQuery;
+import org.biopax.paxtools.query.model.Node;
+import org.biopax.paxtools.query.wrapperL3.DataSourceFilter;
+import org.biopax.paxtools.query.wrapperL3.Filter;
+import org.biopax.paxtools.query.wrapperL3.GraphL3;
+import org.junit.Test;
+
+/**
+ * The graph queries over the compact index must return the same as the paxtools QueryExecuter.
+ */
+public class GraphIndexTest {
+
+  @Test
+  public void sameResults() {
+    for(String file : new String[]{"/NetPath_1.owl", "/INOH_GPCR_signaling-pertussis_toxin-.owl"}) {
+      Model model = new SimpleIOHandler().convertFromOWL(getClass().getResourceAsStream(file));
+      GraphIndex index = GraphIndex.directed(model);
+      GraphIndex undirectedIndex = GraphIndex.undirected(model);
+      assertTrue(index.numEdges() > 0);
+
+      List<PhysicalEntity> entities = entities(model);
+      for(int i = 0; i < entities.size(); i++) {
+        Set<Set<BioPAXElement>> one = Collections.singleton(Collections.singleton(entities.get(i)));
+        for(Direction d : Direction.values()) {
+          for(int limit = 1; limit <= 2; limit++) {
+            assertEquals(file + " neighborhood " + d + " " + limit + " " + one,
+              QueryExecuter.runNeighborhoodMultiSet(one, model, limit, d),
+              ((d == Direction.UNDIRECTED) ? undirectedIndex : index).neighborhood(one, limit, d));
+          }
+        }
+        Set<Set<BioPAXElement>> two = new HashSet<>();
+        two.add(Collections.singleton(entities.get(i)));
+        two.add(Collections.singleton(entities.get((i * 7 + 3) % entities.size())));
+        assertEquals(file + " pathsbetween " + two, QueryExecuter.runPathsBetweenMultiSet(two, model, 3),
+          index.pathsBetween(two, 3));
+        for(Direction d : new Direction[]{Direction.UPSTREAM, Direction.DOWNSTREAM}) {
+          assertEquals(file + " commonstream " + d + " " + two,
+            QueryExecuter.runCommonStreamWithPOIMultiSet(two, model, d, 3), index.commonStream(two, d, 3));
+        }
+      }
+
+      //with a query filter
+      Filter filter = new DataSourceFilter(new String[]{"netpath", "inoh"});
+      Set<Set<BioPAXElement>> all = Collections.singleton(new HashSet<>(entities));
+      assertEquals(QueryExecuter.runNeighborhoodMultiSet(all, model, 1, Direction.BOTHSTREAM, filter),
+        index.neighborhood(all, 1, Direction.BOTHSTREAM, filter));
+    }
+  }
+
+  @Test
+  public void parallel() {
+    Model model = new SimpleIOHandler().convertFromOWL(getClass().getResourceAsStream("/NetPath_1.owl"));
+    GraphIndex index = GraphIndex.directed(model);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    index.setExecutor(executor, 3);
+    List<PhysicalEntity> entities = entities(model);
+    try {
+      for(int n : new int[]{2, 5, 20}) {
+        for(int i = 0; i < entities.size(); i += 5) {
+          Set<Set<BioPAXElement>> groups = new HashSet<>();
+          for(int j = 0; j < n; j++)
+            groups.add(Collections.singleton(entities.get((i + j * 11) % entities.size())));
+          assertEquals(QueryExecuter.runNeighborhoodMultiSet(groups, model, 1, Direction.BOTHSTREAM),
+            index.neighborhood(groups, 1, Direction.BOTHSTREAM));
+          assertEquals(QueryExecuter.runPathsBetweenMultiSet(groups, model, 3), index.pathsBetween(groups, 3));
+          assertEquals(QueryExecuter.runCommonStreamWithPOIMultiSet(groups, model, Direction.DOWNSTREAM, 2),
+            index.commonStream(groups, Direction.DOWNSTREAM, 2));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /*
+   * Paxtools adds the edge from a catalysis of a reversible conversion to the reverse conversion node
+   * only when that node's upstream is visited, so the results depend on the order of visits; the index must agree.
+   * (QueryExecuter runs the paths-between traversals in the order of its hash set of node sets,
+   * which varies from run to run; so here it's the order the index uses - of the seed groups.)
+   */
+  @Test
+  public void reversibleConversions() {
+    Model model = new SimpleIOHandler().convertFromOWL(getClass().getResourceAsStream("/hsa00010.owl"));
+    GraphIndex index = GraphIndex.directed(model);
+    List<PhysicalEntity> entities = entities(model);
+    for(int i = 0; i < entities.size(); i++) {
+      Set<Set<BioPAXElement>> one = Collections.singleton(Collections.singleton(entities.get(i)));
+      for(Direction d : new Direction[]{Direction.UPSTREAM, Direction.DOWNSTREAM, Direction.BOTHSTREAM}) {
+        assertEquals(d + " " + one, QueryExecuter.runNeighborhoodMultiSet(one, model, 2, d),
+          index.neighborhood(one, 2, d));
+      }
+      Set<Set<BioPAXElement>> two = new HashSet<>();
+      two.add(Collections.singleton(entities.get(i)));
+      two.add(Collections.singleton(entities.get((i * 7 + 3) % entities.size())));
+      assertEquals("pathsbetween " + two, pathsBetween(two, model, 3), index.pathsBetween(two, 3));
+    }
+  }
+
+  // same as QueryExecuter.runPathsBetweenMultiSet, but the traversals run in the order of the seed groups
+  private static Set<BioPAXElement> pathsBetween(Set<Set<BioPAXElement>> sources, Model model, int limit) {
+    GraphL3 graph = new GraphL3(model);
+    List<Set<Node>> sets = new ArrayList<>();
+    for(Set<BioPAXElement> group : sources)
+      sets.add(QueryExecuter.prepareSingleNodeSet(new HashSet<>(group), graph));
+    Set<BioPAXElement> result = new HashSet<>();
+    for(Object o : graph.getWrappedSet(new PathsBetweenQuery(sets, limit).run()))
+      result.add((BioPAXElement) o);
+    result.removeIf(e -> e instanceof SimplePhysicalEntity
+      && ((SimplePhysicalEntity) e).getParticipantOf().stream().noneMatch(result::contains)
+      && ((SimplePhysicalEntity) e).getComponentOf().stream().noneMatch(result::contains)
+      && ((SimplePhysicalEntity) e).getMemberPhysicalEntityOf().stream().noneMatch(result::contains)
+      && ((SimplePhysicalEntity) e).getMemberPhysicalEntity().stream().noneMatch(result::contains));
+    return result;
+  }
+
+  private static List<PhysicalEntity> entities(Model model) {
+    return model.getObjects(PhysicalEntity.class).stream()
+      .sorted(Comparator.comparing(BioPAXElement::getUri)).collect(Collectors.toList());
+  }
+}
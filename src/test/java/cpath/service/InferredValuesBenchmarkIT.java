@@ -0,0 +1,171 @@
+package cpath.service;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.biopax.paxtools.controller.Fetcher;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.biopax.paxtools.model.level3.Process;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counting child processes and participants of every process and complex
+ * with {@link InferredValues} vs. Fetcher (as the indexer did before)
+ * on a generated model with nested pathways and complexes; see the log for the numbers.
+ */
+public class InferredValuesBenchmarkIT {
+
+  private static final Logger log = LoggerFactory.getLogger(InferredValuesBenchmarkIT.class);
+
+  private static final int NUM_TOP_PATHWAYS = 100;
+  private static final int NUM_SUB_PATHWAYS = 5; //per pathway, two levels
+  private static final int NUM_REACTIONS_PER_PATHWAY = 10;
+  private static final int NUM_PROTEINS = 10000;
+  private static final int NUM_COMPLEXES = 3000;
+  private static final int COMPLEX_DEPTH = 5;
+  private static final int CHAIN_LENGTH = 100000;
+  private static final int ITERATIONS = 3;
+
+  @Test
+  public void benchmark() {
+    Model model = generateModel();
+
+    Map<BioPAXElement, int[]> expected = new HashMap<>();
+    long fetcherTime = Long.MAX_VALUE;
+    for(int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      expected = fetcherCounts(model);
+      fetcherTime = Math.min(fetcherTime, System.nanoTime() - start);
+    }
+
+    InferredValues inferred = null;
+    long inferredTime = Long.MAX_VALUE;
+    for(int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      inferred = new InferredValues(model, true);
+      inferredTime = Math.min(inferredTime, System.nanoTime() - start);
+    }
+
+    for(Map.Entry<BioPAXElement, int[]> e : expected.entrySet()) {
+      assertEquals(e.getValue()[0], inferred.getNumProcesses(e.getKey()));
+      assertEquals(e.getValue()[1], inferred.getNumParticipants(e.getKey()));
+    }
+    log.info(String.format("%d elements, %d processes and complexes; Fetcher: %d ms, InferredValues (incl. "
+        + "parent pathways and data sources): %d ms", model.getObjects().size(), expected.size(),
+      fetcherTime / 1000000, inferredTime / 1000000));
+  }
+
+  @Test
+  public void deepModel() {
+    //a complex whose protein's entity reference has a very long chain of member entity references
+    Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase("http://identifiers.org/");
+    Complex complex = model.addNew(Complex.class, "Complex_deep");
+    Protein protein = model.addNew(Protein.class, "Protein_deep");
+    complex.addComponent(protein);
+    ProteinReference pr = model.addNew(ProteinReference.class, "ProteinReference_0");
+    protein.setEntityReference(pr);
+    for(int i = 1; i < CHAIN_LENGTH; i++) {
+      ProteinReference member = model.addNew(ProteinReference.class, "ProteinReference_" + i);
+      pr.addMemberEntityReference(member);
+      pr = member;
+    }
+
+    long start = System.nanoTime();
+    InferredValues inferred = new InferredValues(model, true);
+    log.info(String.format("chain of %d entity references: %d ms", CHAIN_LENGTH,
+      (System.nanoTime() - start) / 1000000));
+    assertEquals(1, inferred.getNumParticipants(complex));
+  }
+
+  // no. child processes and participants as counted by the indexer before
+  private static Map<BioPAXElement, int[]> fetcherCounts(Model model) {
+    Fetcher fetcher = new Fetcher(SimpleEditorMap.L3, Fetcher.nextStepFilter);
+    fetcher.setSkipSubPathways(true);
+    Map<BioPAXElement, int[]> counts = new HashMap<>();
+    for(BioPAXElement bpe : model.getObjects()) {
+      if(bpe instanceof Process) {
+        counts.put(bpe, new int[]{fetcher.fetch(bpe, Process.class).size(),
+          fetcher.fetch(bpe, PhysicalEntity.class).size() + fetcher.fetch(bpe, Gene.class).size()});
+      } else if(bpe instanceof Complex) {
+        counts.put(bpe, new int[]{0, fetcher.fetch(bpe, PhysicalEntity.class).size()});
+      }
+    }
+    return counts;
+  }
+
+  private static Model generateModel() {
+    Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase("http://identifiers.org/");
+    Provenance datasource = model.addNew(Provenance.class, "http://identifiers.org/bench/");
+    datasource.setStandardName("bench");
+
+    Protein[] proteins = new Protein[NUM_PROTEINS];
+    for(int i = 0; i < NUM_PROTEINS; i++) {
+      ProteinReference pr = model.addNew(ProteinReference.class, "http://identifiers.org/uniprot/P" + (10000 + i));
+      proteins[i] = model.addNew(Protein.class, "Protein_" + i);
+      proteins[i].setEntityReference(pr);
+      proteins[i].addDataSource(datasource);
+    }
+
+    //complexes nested up to COMPLEX_DEPTH levels
+    Complex[] complexes = new Complex[NUM_COMPLEXES];
+    for(int i = 0; i < NUM_COMPLEXES; i++) {
+      complexes[i] = model.addNew(Complex.class, "Complex_" + i);
+      complexes[i].addComponent(proteins[(2 * i) % NUM_PROTEINS]);
+      complexes[i].addComponent(proteins[(2 * i + 1) % NUM_PROTEINS]);
+      if(i % COMPLEX_DEPTH > 0)
+        complexes[i].addComponent(complexes[i - 1]);
+      complexes[i].addDataSource(datasource);
+    }
+    //a cycle of generic complexes
+    complexes[0].addMemberPhysicalEntity(complexes[COMPLEX_DEPTH - 1]);
+
+    int[] n = {0};
+    for(int p = 0; p < NUM_TOP_PATHWAYS; p++) {
+      Pathway top = pathway(model, "Pathway_" + p, datasource, complexes, proteins, n);
+      for(int s = 0; s < NUM_SUB_PATHWAYS; s++) {
+        Pathway sub = pathway(model, "Pathway_" + p + "_" + s, datasource, complexes, proteins, n);
+        top.addPathwayComponent(sub);
+        for(int ss = 0; ss < NUM_SUB_PATHWAYS; ss++)
+          sub.addPathwayComponent(pathway(model, "Pathway_" + p + "_" + s + "_" + ss, datasource, complexes, proteins, n));
+      }
+    }
+    return model;
+  }
+
+  private static Pathway pathway(Model model, String uri, Provenance datasource,
+                                 Complex[] complexes, Protein[] proteins, int[] n) {
+    Pathway pathway = model.addNew(Pathway.class, uri);
+    pathway.addDataSource(datasource);
+    PathwayStep previous = null;
+    for(int r = 0; r < NUM_REACTIONS_PER_PATHWAY; r++, n[0]++) {
+      BiochemicalReaction reaction = model.addNew(BiochemicalReaction.class, "BiochemicalReaction_" + n[0]);
+      reaction.addLeft(complexes[n[0] % NUM_COMPLEXES]);
+      reaction.addRight(proteins[n[0] % NUM_PROTEINS]);
+      reaction.addDataSource(datasource);
+      Catalysis catalysis = model.addNew(Catalysis.class, "Catalysis_" + n[0]);
+      catalysis.addController(complexes[(n[0] + 7) % NUM_COMPLEXES]);
+      catalysis.addControlled(reaction);
+      catalysis.addDataSource(datasource);
+      pathway.addPathwayComponent(reaction);
+      pathway.addPathwayComponent(catalysis);
+      PathwayStep step = model.addNew(PathwayStep.class, "PathwayStep_" + n[0]);
+      step.addStepProcess(reaction);
+      step.addStepProcess(catalysis);
+      pathway.addPathwayOrder(step);
+      if(previous != null)
+        previous.addNextStep(step);
+      previous = step;
+    }
+    return pathway;
+  }
+}
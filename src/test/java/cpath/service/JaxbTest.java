@@ -20,7 +20,7 @@ public class JaxbTest {
 	@Test
 	public final void testGetAllStatusCodes() {
 		List<String> list = Status.getAllStatusCodes();
-		assertEquals(4, list.size());
+		assertEquals(6, list.size());
 	}
 
 	@Test
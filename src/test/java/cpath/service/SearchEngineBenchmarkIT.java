@@ -0,0 +1,133 @@
+package cpath.service;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.biopax.paxtools.model.BioPAXLevel;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.*;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search latency with different index layouts (segments) and search threads
+ * on a generated model (tens of thousands of docs); see the log for the numbers.
+ */
+public class SearchEngineBenchmarkIT {
+
+  private static final Logger log = LoggerFactory.getLogger(SearchEngineBenchmarkIT.class);
+
+  private static final int NUM_PATHWAYS = 2000;
+  private static final int NUM_REACTIONS_PER_PATHWAY = 10;
+  private static final int NUM_PROTEINS = 5000;
+  private static final int WARMUP = 50;
+  private static final int ITERATIONS = 200;
+
+  @Test
+  public void benchmark() {
+    Model model = generateModel();
+    String indexLocation = Paths.get("target", "cpath2_bench_index").toString();
+    CPathUtils.cleanupDirectory(indexLocation, false);
+    SearchEngine searchEngine = new SearchEngine(model, indexLocation);
+    searchEngine.setSearchCacheSize(0); //measure the search, not the results cache
+    searchEngine.setIndexThreads(4);
+
+    // {max. segments, search threads}
+    int[][] configs = {{0, 0}, {1, 0}, {0, 4}, {4, 4}};
+    Map<String, Long> numHits = new HashMap<>();
+    for(int[] config : configs) {
+      searchEngine.setSearchThreads(0);
+      searchEngine.setIndexMaxSegments(config[0]);
+      searchEngine.index();
+      searchEngine.setSearchThreads(config[1]);
+      String name = "segments: " + ((config[0] > 0) ? "<=" + config[0] : "as is") + ", search threads: " + config[1];
+
+      measure(name + "; q=*&type=Pathway", numHits,
+        () -> searchEngine.search("*", 0, Pathway.class, null, null).getNumHits());
+      measure(name + "; q=*&type=Pathway, page 5", numHits,
+        () -> searchEngine.search("*", 5, Pathway.class, null, null).getNumHits());
+      measure(name + "; q=*&type=Pathway&facets", numHits,
+        () -> searchEngine.search("*", 0, null, Pathway.class, null, null, true, false).getNumHits());
+      measure(name + "; q=*&type=Interaction&datasource=bench", numHits,
+        () -> searchEngine.search("*", 0, Interaction.class, new String[]{"http://identifiers.org/bench/"}, null)
+          .getNumHits());
+      measure(name + "; q=reaction*", numHits,
+        () -> searchEngine.search("reaction*", 0, null, null, null).getNumHits());
+    }
+    searchEngine.setSearchThreads(0);
+  }
+
+  private interface Search {
+    long run();
+  }
+
+  // logs the mean, median and 99th percentile search time, and checks the no. hits is same for all configs
+  private static void measure(String name, Map<String, Long> numHits, Search search) {
+    for(int i = 0; i < WARMUP; i++)
+      search.run();
+    long[] times = new long[ITERATIONS];
+    long hits = 0;
+    for(int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      hits = search.run();
+      times[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(times);
+    log.info(String.format("%s: %d hits; mean %d us, median %d us, p99 %d us", name, hits,
+      Arrays.stream(times).sum() / ITERATIONS / 1000, times[ITERATIONS / 2] / 1000, times[ITERATIONS * 99 / 100] / 1000));
+    String query = name.substring(name.indexOf(';') + 1);
+    assertTrue(hits > 0);
+    assertEquals(numHits.computeIfAbsent(query, k -> search.run()).longValue(), hits);
+  }
+
+  private static Model generateModel() {
+    Model model = BioPAXLevel.L3.getDefaultFactory().createModel();
+    model.setXmlBase("http://identifiers.org/");
+    Provenance datasource = model.addNew(Provenance.class, "http://identifiers.org/bench/");
+    datasource.setStandardName("bench");
+    datasource.setDisplayName("Benchmark");
+    BioSource human = model.addNew(BioSource.class, "http://identifiers.org/taxonomy/9606");
+    human.setStandardName("Homo sapiens");
+    UnificationXref taxon = model.addNew(UnificationXref.class, "UnificationXref_taxonomy_9606");
+    taxon.setDb("taxonomy");
+    taxon.setId("9606");
+    human.addXref(taxon);
+
+    Protein[] proteins = new Protein[NUM_PROTEINS];
+    for(int i = 0; i < NUM_PROTEINS; i++) {
+      ProteinReference pr = model.addNew(ProteinReference.class, "http://identifiers.org/uniprot/P" + (10000 + i));
+      pr.setDisplayName("PROT" + i);
+      pr.setOrganism(human);
+      UnificationXref x = model.addNew(UnificationXref.class, "UnificationXref_uniprot_P" + (10000 + i));
+      x.setDb("uniprot knowledgebase");
+      x.setId("P" + (10000 + i));
+      pr.addXref(x);
+      proteins[i] = model.addNew(Protein.class, "Protein_" + i);
+      proteins[i].setDisplayName("protein " + i);
+      proteins[i].setEntityReference(pr);
+      proteins[i].addDataSource(datasource);
+    }
+
+    int n = 0;
+    for(int p = 0; p < NUM_PATHWAYS; p++) {
+      Pathway pathway = model.addNew(Pathway.class, "Pathway_" + p);
+      pathway.setDisplayName("pathway " + p);
+      pathway.setOrganism(human);
+      pathway.addDataSource(datasource);
+      for(int r = 0; r < NUM_REACTIONS_PER_PATHWAY; r++, n++) {
+        BiochemicalReaction reaction = model.addNew(BiochemicalReaction.class, "BiochemicalReaction_" + n);
+        reaction.setDisplayName("reaction " + n);
+        reaction.addLeft(proteins[n % NUM_PROTEINS]);
+        reaction.addRight(proteins[(n + 1) % NUM_PROTEINS]);
+        reaction.addDataSource(datasource);
+        pathway.addPathwayComponent(reaction);
+      }
+    }
+    return model;
+  }
+}
@@ -6,16 +6,32 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.biopax.paxtools.controller.Fetcher;
+import org.biopax.paxtools.controller.ModelUtils;
+import org.biopax.paxtools.controller.SimpleEditorMap;
 import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
 import org.biopax.paxtools.model.Model;
 import org.biopax.paxtools.model.level3.*;
+import org.biopax.paxtools.model.level3.Process;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.ResourceLoader;
 
+import cpath.service.jpa.Metadata;
+import cpath.service.jpa.Metadata.METADATA_TYPE;
 import cpath.service.jaxb.SearchHit;
 import cpath.service.jaxb.SearchResponse;
 
@@ -30,6 +46,25 @@ public class SearchEngineTest {
     Model model = reader.convertFromOWL(resourceLoader
       .getResource("classpath:merge/pathwaydata1.owl").getInputStream());
 
+    //pre-computed parent pathways and data sources are the same as inferred by ModelUtils
+    //as well as no. child processes and participants - as counted by the Fetcher
+    InferredValues inferred = new InferredValues(model, true);
+    Fetcher fetcher = new Fetcher(SimpleEditorMap.L3, Fetcher.nextStepFilter);
+    fetcher.setSkipSubPathways(true);
+    for(BioPAXElement bpe : model.getObjects()) {
+      if(bpe instanceof Entity || bpe instanceof EntityReference) {
+        assertEquals(ModelUtils.getParentPathways(bpe), new HashSet<>(inferred.getParentPathways(bpe)));
+        assertEquals(ModelUtils.getDatasources(bpe), new HashSet<>(inferred.getDatasources(bpe)));
+      }
+      if(bpe instanceof Process) {
+        assertEquals(fetcher.fetch(bpe, Process.class).size(), inferred.getNumProcesses(bpe));
+        assertEquals(fetcher.fetch(bpe, PhysicalEntity.class).size() + fetcher.fetch(bpe, Gene.class).size(),
+          inferred.getNumParticipants(bpe));
+      } else if(bpe instanceof Complex) {
+        assertEquals(fetcher.fetch(bpe, PhysicalEntity.class).size(), inferred.getNumParticipants(bpe));
+      }
+    }
+
     //here we want an index dir that does not exists (will cleanup it too),
     //won't conflict with integration tests...
     Path tmp = Paths.get("target","cpath2_test_index");
@@ -93,10 +128,16 @@ public class SearchEngineTest {
     // only Entity, ER, Provenance, BioSource types are indexed (since 06/01/2016)
     response = searchEngine.search("*", 0, Provenance.class, null, null);
     assertFalse(response.getSearchHit().isEmpty());
+    response.setComment("changed"); //must not modify the cached page
     response = searchEngine.search("*", 0, Provenance.class, null, null);
     assertEquals(2, response.getSearchHit().size());
+    assertNull(response.getComment());
+    assertTrue(searchEngine.getSearchResultsCache().getHitCount() > 0);
     response = searchEngine.search("*", 0, Provenance.class, new String[] {"kegg"}, null);
     assertEquals(1, response.getSearchHit().size());
+    //the type, datasource, organism filters (same queries as above) are cached
+    assertTrue(searchEngine.getQueryCache().getCacheCount() > 0);
+    assertTrue(searchEngine.getQueryCache().getHitCount() > 0);
 
     //datasource filter using a URI (required for -update-counts console command and datasources.html page to work)
     response = searchEngine.search("*", 0, Pathway.class, new String[] {"http://identifiers.org/kegg.pathway/"}, null);
@@ -137,6 +178,77 @@ public class SearchEngineTest {
     assertEquals(10, response.getSearchHit().size());
     assertEquals(1, response.getPageNo().intValue());
 
+    //test deep paging with the cursor (same hits as when using page numbers)
+    Set<String> uris = new HashSet<>();
+    response = searchEngine.searchAfter("*", null, null, null, null);
+    assertEquals(10, response.getSearchHit().size());
+    assertNotNull(response.getCursor());
+    int pages = 0;
+    while (!response.isEmpty()) {
+      pages++;
+      response.getSearchHit().forEach(h -> uris.add(h.getUri()));
+      if(response.getCursor() == null)
+        break;
+      response = searchEngine.searchAfter("*", response.getCursor(), null, null, null);
+    }
+    assertEquals(3, pages);
+    assertEquals(23, uris.size());
+    response = searchEngine.searchAfter("ATP", null, null, null, null);
+    assertEquals(5, response.getSearchHit().size());
+    assertNull(response.getCursor()); //the last page
+
+    //facets - counts of all the hits (not only the first page) by datasource, organism, type
+    response = searchEngine.search("*", 0, null, null, null, null, true, false);
+    assertEquals(10, response.getSearchHit().size());
+    assertEquals(3, response.getFacet().size());
+    assertEquals(SearchEngine.FIELD_TYPE, response.getFacet().get(2).getField());
+    assertEquals(23L, response.getFacet().get(2).getFacetValue().stream().mapToLong(v -> v.getCount()).sum());
+    response = searchEngine.search("*", 0, null, PhysicalEntity.class, null, new String[] {"562"}, true, false);
+    assertEquals(2L, response.getFacet().get(2).getFacetValue().stream().mapToLong(v -> v.getCount()).sum());
+    response = searchEngine.search("*", 0, null, null, null, null, false, false);
+    assertTrue(response.getFacet().isEmpty());
+
+    //excerpts - highlighted matching keywords (stored, with offsets in the postings)
+    response = searchEngine.search("ATP", 0, null, Interaction.class, null, null, false, true);
+    assertEquals(2, response.getSearchHit().size());
+    for(SearchHit h : response.getSearchHit())
+      assertTrue(h.getExcerpt().contains("<span class='hitHL'>atp</span>"));
+    response = searchEngine.search("glyc*", 0, null, Pathway.class, null, null, false, true);
+    assertTrue(response.getSearchHit().get(0).getExcerpt().contains("hitHL"));
+    searchEngine.setExcerptTimeLimit(0); //no time for excerpts
+    response = searchEngine.search("ATP", 0, null, Interaction.class, null, null, false, true);
+    if(!logger.isDebugEnabled())
+      assertNull(response.getSearchHit().get(0).getExcerpt());
+    assertTrue(response.getPartial()); //not cached
+    assertTrue(searchEngine.search("ATP", 0, null, Interaction.class, null, null, false, true).getPartial());
+    searchEngine.setExcerptTimeLimit(SearchEngine.DEFAULT_EXCERPT_TIME_LIMIT_MS);
+
+    //auto-completion of names, symbols (from the FST built at index time)
+    List<String> suggestions = searchEngine.suggest("GLYCO", null);
+    assertTrue(suggestions.contains("glycolysis"));
+    suggestions = searchEngine.suggest("glu", null);
+    assertTrue(suggestions.contains("glucokinase"));
+    assertTrue(suggestions.size() <= SearchEngine.MAX_SUGGESTIONS);
+    assertTrue(searchEngine.suggest("glu", "562").contains("glucokinase"));
+    assertTrue(searchEngine.suggest("glu", "9606").isEmpty());
+    assertTrue(searchEngine.suggest("foo", null).isEmpty());
+
+    //collect all matching URIs at once (no hits pagination)
+    Set<String> collected = new HashSet<>();
+    searchEngine.collectUris("*", null, null, null, collected::add);
+    assertEquals(uris, collected);
+    collected.clear();
+    searchEngine.collectUris("*", PhysicalEntity.class, null, new String[] {"562"}, collected::add);
+    assertEquals(2, collected.size());
+    collected.clear();
+    searchEngine.collectUris("pathway:glycolysis", SmallMoleculeReference.class, null, null, collected::add);
+    assertEquals(5, collected.size());
+    try {
+      searchEngine.searchAfter("*", "foo", null, null, null);
+      fail("IllegalArgumentException is expected");
+    } catch (IllegalArgumentException e) {
+    }
+
 
     //test that service.search works (as expected) for IDs that contain ':', such as ChEBI IDs
     response =  searchEngine.search("CHEBI?20", 0, SmallMoleculeReference.class, null, null);
@@ -160,6 +272,20 @@ public class SearchEngineTest {
     response =  searchEngine.search("xrefid:\"chebi\\:20\"", 0, SmallMoleculeReference.class, null, null);
     assertFalse(response.getSearchHit().isEmpty());
 
+    //map IDs to URIs all at once (in-memory lookup) - same as collecting URIs by xrefid:"X" queries
+    Map<String, Set<String>> resolved = searchEngine.resolve(
+      Arrays.asList("CHEBI:20", "chebi:20", "P27797", "foo"), Arrays.asList(PhysicalEntity.class, Gene.class));
+    assertEquals(3, resolved.size());
+    for(String id : resolved.keySet()) {
+      Set<String> expected = new HashSet<>();
+      searchEngine.collectUris("xrefid:\"" + id + "\"", PhysicalEntity.class, null, null, expected::add);
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, resolved.get(id));
+    }
+    assertEquals(resolved.get("CHEBI:20"), resolved.get("chebi:20"));
+    assertTrue(searchEngine.resolve(Arrays.asList("CHEBI:20"), Collections.singleton(Gene.class)).isEmpty());
+    assertFalse(searchEngine.resolve(Arrays.asList("CHEBI:20"), Collections.emptyList()).isEmpty()); //any type
+
     //find by name: beta-D-fructose-6-phosphate
     response =  searchEngine.search("beta-d-fructose-6-phosphate", 0, SmallMoleculeReference.class, null, null);
     assertFalse(response.getSearchHit().isEmpty());
@@ -179,6 +305,16 @@ public class SearchEngineTest {
     assertFalse(response.getSearchHit().isEmpty());
     assertEquals(1, response.getSearchHit().size());
 
+    //leading wildcards - run as prefix/wildcard queries on the reversed terms
+    assertTrue(SearchEngine.reverseLeadingWildcards(new WildcardQuery(new Term("name", "*sulin"))) instanceof PrefixQuery);
+    response =  searchEngine.search("name:*fru?6?p", 0, SmallMolecule.class, null, null);
+    assertEquals(1, response.getSearchHit().size());
+    response =  searchEngine.search("*phosphate", 0, SmallMoleculeReference.class, null, null);
+    long numHits = response.getNumHits();
+    assertTrue(numHits > searchEngine.search("phosphate", 0, SmallMoleculeReference.class, null, null).getNumHits());
+    assertTrue(numHits <= searchEngine.search("*phosphate*", 0, SmallMoleculeReference.class, null, null).getNumHits());
+    assertNull(response.getPartial());
+
     // (hardly useful in practice) wildcards inside a quoted phrase - does not match -
     response =  searchEngine.search("name:\"b?D?fru?6?p\"", 0, SmallMolecule.class, null, null);
     assertTrue(response.getSearchHit().isEmpty());
@@ -208,6 +344,67 @@ public class SearchEngineTest {
     response =  searchEngine.search("name:fructose", 0, SmallMoleculeReference.class, null, null);
     assertFalse(response.getSearchHit().isEmpty());
     assertEquals(1, response.getSearchHit().size());
+
+    //re-index one data source only (its docs get replaced, no duplicates)
+    model.setXmlBase("http://identifiers.org/"); //datasource URI is xml:base + metadata identifier
+    Metadata kegg = new Metadata("kegg.pathway/", Collections.singletonList("KEGG"), "test", "", "",
+      "", METADATA_TYPE.BIOPAX, null, null, null, "free");
+    response = searchEngine.search("*", 0, null, new String[] {"kegg.pathway"}, null);
+    long numKeggHits = response.getNumHits();
+    assertTrue(numKeggHits > 0);
+    searchEngine.reindex(kegg, objects -> {});
+    response = searchEngine.search("*", 0, null, new String[] {"kegg.pathway"}, null);
+    assertEquals(numKeggHits, response.getNumHits().longValue());
+    response = searchEngine.search("*", 0, null, null, null);
+    assertEquals(23, response.getNumHits().intValue());
+    //a pathway moved to another data source is still there after re-indexing the previous one
+    Provenance keggPro = (Provenance) model.getByID("http://identifiers.org/kegg.pathway/");
+    Pathway moved = model.getObjects(Pathway.class).stream()
+      .filter(p -> p.getDataSource().contains(keggPro)).findFirst().get();
+    moved.removeDataSource(keggPro);
+    moved.addDataSource((Provenance) model.getByID("http://identifiers.org/reactome/"));
+    //the objects to re-index get their (id-mapping) IDs first, and so does the moved one
+    searchEngine.reindex(kegg, objects -> objects.forEach(bpe ->
+      bpe.getAnnotations().put(SearchEngine.FIELD_XREFID, new HashSet<>(Arrays.asList("MAPPED:" + bpe.getUri())))));
+    assertEquals(Collections.singleton(moved.getUri()),
+      searchEngine.resolve(Arrays.asList("MAPPED:" + moved.getUri()), Collections.emptyList())
+        .get("MAPPED:" + moved.getUri()));
+    response = searchEngine.search("*", 0, null, new String[] {"kegg.pathway"}, null);
+    assertEquals(numKeggHits - 1, response.getNumHits().longValue());
+    response = searchEngine.search("*", 0, null, null, null);
+    assertEquals(23, response.getNumHits().intValue());
+    assertFalse(searchEngine.suggest("glyco", null).isEmpty());
+
+    //over the visits limit - partial results
+    searchEngine.setSearchMaxVisits(2);
+    response = searchEngine.search("glucose", 0, null, null, null);
+    assertTrue(response.getPartial());
+    assertTrue(response.getSearchHit().size() <= 2);
+    searchEngine.setSearchMaxVisits(0);
+    assertNull(searchEngine.search("glucose", 0, null, null, null).getPartial()); //not from cache
+
+    //re-build the whole index (side by side, then swap) - the same engine keeps working;
+    //now - not merged (a few segments) and searched in parallel
+    searchEngine.setIndexMaxSegments(0);
+    searchEngine.setIndexThreads(4);
+    searchEngine.setSearchThreads(2);
+    searchEngine.index();
+    assertFalse(Files.exists(Paths.get(indexLocation + ".new")));
+    assertFalse(Files.exists(Paths.get(indexLocation + ".old")));
+    response = searchEngine.search("*", 0, null, null, null);
+    assertEquals(23, response.getNumHits().intValue());
+    assertFalse(searchEngine.suggest("glyco", null).isEmpty());
+    uris.clear();
+    response = searchEngine.searchAfter("*", null, null, null, null);
+    while (!response.isEmpty()) {
+      response.getSearchHit().forEach(h -> uris.add(h.getUri()));
+      if(response.getCursor() == null)
+        break;
+      response = searchEngine.searchAfter("*", response.getCursor(), null, null, null);
+    }
+    assertEquals(23, uris.size());
+    response = searchEngine.search("*", 0, null, null, null, null, true, false);
+    assertEquals(23L, response.getFacet().get(2).getFacetValue().stream().mapToLong(v -> v.getCount()).sum());
   }
 
 }
@@ -0,0 +1,112 @@
+package cpath.web;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import cpath.service.Settings;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class AdmissionControlTest {
+
+  @Test
+  public void rateLimit() throws Exception {
+    Settings settings = new Settings();
+    settings.getClientRate().put("get", 0.5); //a token every 2 s
+    settings.getClientBurst().put("get", 2);
+    AtomicLong clock = new AtomicLong();
+    AdmissionControl filter = new AdmissionControl(settings, clock::get);
+
+    assertEquals(200, call(filter, "/get", "10.0.0.1").getStatus());
+    assertEquals(200, call(filter, "/get", "10.0.0.1").getStatus());
+    MockHttpServletResponse res = call(filter, "/get", "10.0.0.1");
+    assertEquals(429, res.getStatus());
+    assertEquals("2", res.getHeader("Retry-After"));
+    //other clients, commands without a rate limit and non-command requests are not affected
+    assertEquals(200, call(filter, "/get", "10.0.0.2").getStatus());
+    assertEquals(200, call(filter, "/suggest", "10.0.0.1").getStatus());
+    assertEquals(200, call(filter, "/help", "10.0.0.1").getStatus());
+
+    clock.addAndGet(1500000000L); //1.5 s later
+    res = call(filter, "/get", "10.0.0.1");
+    assertEquals(429, res.getStatus());
+    assertEquals("1", res.getHeader("Retry-After"));
+    clock.addAndGet(500000000L);
+    assertEquals(200, call(filter, "/get", "10.0.0.1").getStatus());
+  }
+
+  @Test
+  public void concurrencyLimit() throws Exception {
+    Settings settings = new Settings();
+    settings.getClientConcurrency().put("graph", 1);
+    AdmissionControl filter = new AdmissionControl(settings);
+
+    //the first graph query is still being processed (async)
+    MockHttpServletRequest request = request("/graph", "10.0.0.1");
+    new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void service(HttpServletRequest req, HttpServletResponse resp) {
+        req.startAsync();
+      }
+    }, filter).doFilter(request, new MockHttpServletResponse());
+    AsyncContext async = request.getAsyncContext();
+
+    assertEquals(429, call(filter, "/graph", "10.0.0.1").getStatus());
+    assertEquals(200, call(filter, "/get", "10.0.0.1").getStatus());
+    assertEquals(200, call(filter, "/graph", "10.0.0.2").getStatus());
+
+    async.complete();
+    assertEquals(200, call(filter, "/graph", "10.0.0.1").getStatus());
+    assertEquals(200, call(filter, "/graph", "10.0.0.1").getStatus());
+
+    //a batch's graph sub-query counts too
+    Runnable release = filter.enter(request("/batch", "10.0.0.1"), "graph");
+    assertNotNull(release);
+    assertNull(filter.enter(request("/batch", "10.0.0.1"), "graph"));
+    assertEquals(429, call(filter, "/graph", "10.0.0.1").getStatus());
+    release.run();
+    release.run(); //once
+    assertEquals(200, call(filter, "/graph", "10.0.0.1").getStatus());
+    assertNotNull(filter.enter(request("/batch", "10.0.0.1"), "get")); //not limited
+  }
+
+  @Test
+  public void clientAddress() {
+    Settings settings = new Settings();
+    settings.getTrustedProxies().add("10.0.0.9");
+    AdmissionControl filter = new AdmissionControl(settings);
+
+    MockHttpServletRequest request = request("/get", "10.0.0.1");
+    request.addHeader("X-Forwarded-For", "1.2.3.4");
+    assertEquals("10.0.0.1", filter.clientAddress(request));
+    request = request("/get", "10.0.0.9");
+    assertEquals("10.0.0.9", filter.clientAddress(request));
+    request.addHeader("X-Forwarded-For", "6.6.6.6, 1.2.3.4, 10.0.0.9");
+    assertEquals("1.2.3.4", filter.clientAddress(request));
+  }
+
+  private static MockHttpServletRequest request(String path, String ip) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.setRemoteAddr(ip);
+    request.setAsyncSupported(true);
+    return request;
+  }
+
+  private static MockHttpServletResponse call(AdmissionControl filter, String path, String ip) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void service(HttpServletRequest req, HttpServletResponse resp) {
+      }
+    }, filter).doFilter(request(path, ip), response);
+    return response;
+  }
+}
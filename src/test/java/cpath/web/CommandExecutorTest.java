@@ -0,0 +1,44 @@
+package cpath.web;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CommandExecutorTest {
+
+  @Test
+  public void rejectWhenFull() throws Exception {
+    CommandExecutor executor = new CommandExecutor("test", 1, 1);
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      CommandExecutor.Task<String> running = executor.task(() -> {
+        try {
+          latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "done";
+      });
+      CommandExecutor.Task<String> queued = executor.task(() -> "next");
+      assertNotNull(running);
+      assertNotNull(queued);
+      running.start();
+      queued.start();
+      //one thread is busy and one task is waiting - no more
+      assertNull(executor.task(() -> "rejected"));
+      assertEquals(1, executor.getRejectedCount());
+
+      latch.countDown();
+      for(int i = 0; i < 100 && !queued.hasResult(); i++)
+        Thread.sleep(50);
+      assertEquals("done", running.getResult());
+      assertEquals("next", queued.getResult());
+      assertNotNull(executor.task(() -> "accepted"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -1,9 +1,17 @@
 package cpath.web;
 
+import cpath.service.CPathUtils;
 import cpath.service.Settings;
 import cpath.service.api.CPathService;
+import cpath.service.api.OutputFormat;
+import cpath.service.jaxb.DataResponse;
 import cpath.service.jaxb.SearchHit;
 import cpath.service.jaxb.SearchResponse;
+import cpath.service.jaxb.TraverseEntry;
+import cpath.service.jaxb.TraverseResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
 import org.biopax.paxtools.model.level3.Pathway;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,11 +25,34 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
-
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 //import static org.junit.Assert.*;
@@ -56,9 +87,24 @@ public class ControllersTest {
     mockRes.setPageNo(0);
     mockRes.setComment("mock search result");
 
-    given(service.search("Gly*",0, Pathway.class, null, null)).willReturn(mockRes);
+    given(service.search("Gly*",0, null, Pathway.class, null, null, false, false)).willReturn(mockRes);
+
+    //a new (temporary) result file and its gzipped copy for each request
+    given(service.fetch(eq(OutputFormat.TXT), anyMap(), anyBoolean(), any())).willAnswer(invocation -> {
+      Path file = Files.createTempFile("cpath2", ".txt");
+      Files.write(file, TXT.getBytes(StandardCharsets.UTF_8));
+      try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(CPathUtils.gzipped(file)))) {
+        os.write(TXT.getBytes(StandardCharsets.UTF_8));
+      }
+      DataResponse r = new DataResponse();
+      r.setFormat(OutputFormat.TXT);
+      r.setData(file);
+      return r;
+    });
   }
 
+  private static final String TXT = String.join("", java.util.Collections.nCopies(200, "A\tinteracts-with\tB\n"));
+
   @Test
 	public void testGetTypes() throws Exception {
     mvc.perform(get("/help/types").accept(MediaType.APPLICATION_JSON))
@@ -110,6 +156,79 @@ public class ControllersTest {
       .andExpect(status().isOk()).andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
     .andExpect(content().string(containsString("MockPathway")));
 	}
+
+  @Test
+  public void testGetFileRangeAndGzip() throws Exception {
+    perform(get("/get?uri=A&format=TXT"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Accept-Ranges", "bytes"))
+      .andExpect(content().string(TXT));
+
+    perform(get("/get?uri=A&format=TXT").header("Range", "bytes=2-15"))
+      .andExpect(status().isPartialContent())
+      .andExpect(header().string("Content-Range", "bytes 2-15/" + TXT.length()))
+      .andExpect(content().string(TXT.substring(2, 16)));
+
+    perform(get("/get?uri=A&format=TXT").header("Range", "bytes=" + TXT.length() + "-"))
+      .andExpect(status().isRequestedRangeNotSatisfiable());
+
+    MvcResult res = perform(get("/get?uri=A&format=TXT").header("Accept-Encoding", "gzip, deflate"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Encoding", "gzip"))
+      .andReturn();
+    assertEquals(TXT, IOUtils.toString(new GZIPInputStream(
+      new ByteArrayInputStream(res.getResponse().getContentAsByteArray())), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    TraverseResponse names = new TraverseResponse();
+    names.setPropertyPath("Protein/name");
+    TraverseEntry entry = new TraverseEntry();
+    entry.setUri("A");
+    entry.getValue().add("p53");
+    names.getTraverseEntry().add(entry);
+    given(service.traverse(eq("Protein/name"), any())).willReturn(names);
+    given(service.resolve(anyCollection())).willReturn(Collections.emptyMap());
+    given(service.withResolved(anyMap(), any())).willAnswer(invocation ->
+      ((Supplier<?>) invocation.getArgument(1)).get());
+
+    //too expensive
+    mvc.perform(post("/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"queries\":[{\"cmd\":\"graph\",\"kind\":\"neighborhood\",\"source\":[\"A\",\"B\"],\"limit\":1000}]}"))
+      .andExpect(status().isBadRequest());
+
+    MvcResult res = perform(post("/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"queries\":[{\"cmd\":\"get\",\"uri\":[\"A\"],\"format\":\"TXT\"}," +
+        "{\"cmd\":\"traverse\",\"path\":\"Protein/name\",\"uri\":\"A\"},{\"cmd\":\"get\"},{\"cmd\":\"foo\"}]}"))
+      .andExpect(status().isOk())
+      .andExpect(content().contentType("application/x-ndjson; charset=UTF-8"))
+      .andReturn();
+
+    //one line per query, in any order
+    Map<Integer, JsonNode> lines = new HashMap<>();
+    for(String line : res.getResponse().getContentAsString().split("\n")) {
+      JsonNode json = new ObjectMapper().readTree(line);
+      lines.put(json.get("index").asInt(), json);
+    }
+    assertEquals(4, lines.size());
+    assertEquals(200, lines.get(0).get("status").asInt());
+    assertEquals(TXT, lines.get(0).get("data").asText());
+    assertEquals(200, lines.get(1).get("status").asInt());
+    assertEquals("p53", lines.get(1).get("data").get("traverseEntry").get(0).get("value").get(0).asText());
+    assertEquals(400, lines.get(2).get("status").asInt());
+    assertEquals(400, lines.get(3).get("status").asInt());
+    //all the identifiers are resolved at once
+    verify(service, times(1)).resolve(anyCollection());
+  }
+
+  // the heavy commands (get, graph, traverse, batch) are processed asynchronously (in their thread pools)
+  private ResultActions perform(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+    MvcResult started = mvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+    started.getAsyncResult(10000);
+    return mvc.perform(asyncDispatch(started));
+  }
+
 //
 //	//HTTP GET
 //	@Test